@@ -0,0 +1,147 @@
+package fancytodoapp;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.text.DateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+/**
+ *
+ *  ArchiveDialog
+ *
+ *  Read-only "Archive" view of one tab: the most recently archived tasks,
+ *  filtered by a search field. The archive is read on the I/O executor each
+ *  time the query settles, so nothing of it stays in memory once closed.
+ *
+ */
+public class ArchiveDialog extends JDialog {
+
+    private static final int MAX_RESULTS = 500;
+    private static final int SEARCH_DELAY_MILLIS = 250;
+
+    private final TaskArchive archive;
+    private final JTextField searchField = new JTextField(24);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final ArchiveTableModel model = new ArchiveTableModel();
+    private final Timer searchTimer;
+    private int searchGeneration = 0; // Results of an older query are dropped
+
+    public ArchiveDialog(Frame owner, String tabName, TaskArchive archive) {
+        super(owner, "Archive - " + tabName, false);
+        this.archive = archive;
+
+        JTable table = new JTable(model);
+        table.setRowHeight(28);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(140);
+        table.getColumnModel().getColumn(1).setPreferredWidth(360);
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.add(new JLabel("Search:"), BorderLayout.WEST);
+        top.add(searchField, BorderLayout.CENTER);
+        top.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        setLayout(new BorderLayout());
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(3, 5, 3, 5));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        // Waits for typing to pause before reading the archive again
+        searchTimer = new Timer(SEARCH_DELAY_MILLIS, e -> search());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+
+        setSize(560, 420);
+        setLocationRelativeTo(owner);
+        search();
+    }
+
+    private void search() {
+        int generation = ++searchGeneration;
+        String query = searchField.getText();
+        statusLabel.setText("Searching...");
+        IoExecutor.supply(() -> archive.search(query, MAX_RESULTS)).whenCompleteAsync((tasks, error) -> {
+            if (generation != searchGeneration || !isDisplayable()) {
+                return;
+            }
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                statusLabel.setText("Could not read the archive.");
+                model.setTasks(Collections.emptyList());
+                return;
+            }
+            model.setTasks(tasks);
+            if (tasks.isEmpty()) {
+                statusLabel.setText(query.trim().isEmpty() ? "Nothing archived yet." : "No archived tasks match.");
+            } else {
+                statusLabel.setText(tasks.size() >= MAX_RESULTS ? "Showing the newest " + MAX_RESULTS + " matches."
+                        : tasks.size() + (tasks.size() == 1 ? " archived task." : " archived tasks."));
+            }
+        }, IoExecutor.edt());
+    }
+
+    @Override
+    public void dispose() {
+        searchTimer.stop();
+        super.dispose();
+    }
+
+    /**
+     *  ArchiveTableModel
+     *
+     *  Completion date and text of the archived tasks shown.
+     */
+    private static final class ArchiveTableModel extends AbstractTableModel {
+        private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+        private List<Task> tasks = Collections.emptyList();
+
+        void setTasks(List<Task> tasks) {
+            this.tasks = tasks;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return tasks.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Completed" : "Task";
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Task task = tasks.get(row);
+            if (column == 0) {
+                return task.completedAt != 0 ? dateFormat.format(new Date(task.completedAt)) : "";
+            }
+            return task.task;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package fancytodoapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+/**
+ *
+ *  BatchingSubscriber
+ *
+ *  Flow subscriber that hands events over in batches. A batch is delivered
+ *  once it holds maxBatch events or lingerMillis after its first event,
+ *  whichever comes first. Demand is only renewed after a batch has been
+ *  handled, so at most maxBatch events are ever buffered here.
+ *
+ */
+public abstract class BatchingSubscriber<T> implements Flow.Subscriber<T> {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fancytodo-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxBatch;
+    private final long lingerMillis;
+    private Flow.Subscription subscription;
+    private List<T> batch = new ArrayList<>();
+    private ScheduledFuture<?> pendingFlush;
+
+    protected BatchingSubscriber(int maxBatch, long lingerMillis) {
+        this.maxBatch = maxBatch;
+        this.lingerMillis = lingerMillis;
+    }
+
+    // Called with each batch, never concurrently
+    protected abstract void onBatch(List<T> events);
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(maxBatch);
+    }
+
+    @Override
+    public synchronized void onNext(T event) {
+        batch.add(event);
+        if (batch.size() >= maxBatch) {
+            flush();
+        } else if (pendingFlush == null) {
+            pendingFlush = TIMER.schedule(this::flushFromTimer, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flushFromTimer() {
+        pendingFlush = null;
+        flush();
+    }
+
+    private void flush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> events = batch;
+        batch = new ArrayList<>();
+        try {
+            onBatch(events);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        subscription.request(events.size());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        throwable.printStackTrace();
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        flush();
+    }
+
+    public void cancel() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+/**
+ *
+ *  Codec
+ *
+ *  Streaming compression for tab files and exports. Built in are "none",
+ *  "gzip" and "deflate" (zlib); others, e.g. a faster LZ codec, can be added
+ *  through ServiceLoader. See Codecs for how one is picked.
+ *
+ */
+public interface Codec {
+
+    String name();
+
+    // File name suffix used for exports, e.g. ".gz"; empty for "none"
+    String extension();
+
+    // True if data starting with these bytes was written by this codec
+    boolean matches(byte[] head, int length);
+
+    // Closing the returned stream finishes the data and closes out
+    OutputStream compress(OutputStream out) throws IOException;
+
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,221 @@
+package fancytodoapp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+/**
+ *
+ *  Codecs
+ *
+ *  The known codecs. Tab files are written with the one named by
+ *  -Dfancytodo.compression (none by default); exports pick theirs from the
+ *  file name. Reading JSON never needs to be told: the first bytes identify
+ *  the codec, and anything unrecognised, or that fails to decompress, is
+ *  read as plain JSON. Plain text can start with any bytes, so text imports
+ *  go by the file name instead. Every codec streams through fixed size
+ *  buffers, so memory stays bounded whatever the size of the list.
+ *
+ */
+public final class Codecs {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEAD_SIZE = 4; // Enough for every built in signature
+    private static final int PROBE_SIZE = 4096; // Decompressed before a signature match is trusted
+
+    public static final Codec NONE = new Codec() {
+        @Override
+        public String name() {
+            return "none";
+        }
+
+        @Override
+        public String extension() {
+            return "";
+        }
+
+        @Override
+        public boolean matches(byte[] head, int length) {
+            return false; // Whatever no other codec claims
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return in;
+        }
+    };
+
+    public static final Codec GZIP = new Codec() {
+        @Override
+        public String name() {
+            return "gzip";
+        }
+
+        @Override
+        public String extension() {
+            return ".gz";
+        }
+
+        @Override
+        public boolean matches(byte[] head, int length) {
+            return length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    };
+
+    public static final Codec DEFLATE = new Codec() {
+        @Override
+        public String name() {
+            return "deflate";
+        }
+
+        @Override
+        public String extension() {
+            return ".zz";
+        }
+
+        // zlib header: method 8 with a window of at most 32K, no preset dictionary, and a check value
+        // making the first two bytes a multiple of 31
+        @Override
+        public boolean matches(byte[] head, int length) {
+            return length >= 2 && (head[0] & 0x0F) == 8 && (head[0] & 0xFF) >> 4 <= 7 && (head[1] & 0x20) == 0
+                    && ((head[0] & 0xFF) << 8 | (head[1] & 0xFF)) % 31 == 0;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end(); // A deflater we passed in is not ended by the stream
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final List<Codec> ALL = loadCodecs();
+    private static final Codec CONFIGURED = forName(System.getProperty("fancytodo.compression", "none"));
+
+    private Codecs() {
+    }
+
+    private static List<Codec> loadCodecs() {
+        List<Codec> codecs = new ArrayList<>(List.of(GZIP, DEFLATE));
+        for (Codec codec : ServiceLoader.load(Codec.class)) {
+            codecs.add(codec);
+        }
+        return codecs;
+    }
+
+    // The codec tab files are written with
+    public static Codec configured() {
+        return CONFIGURED;
+    }
+
+    public static Codec forName(String name) {
+        if (name.equalsIgnoreCase(NONE.name())) {
+            return NONE;
+        }
+        for (Codec codec : ALL) {
+            if (codec.name().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        System.err.println("Unknown compression '" + name + "', writing uncompressed");
+        return NONE;
+    }
+
+    // Picks the codec from an export's file name, e.g. tasks.json.gz; plain when nothing matches
+    public static Codec forFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        for (Codec codec : ALL) {
+            if (!codec.extension().isEmpty() && lower.endsWith(codec.extension())) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+
+    // Wraps the stream so it reads decompressed data, whichever codec wrote it
+    public static InputStream open(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(HEAD_SIZE);
+        byte[] head = new byte[HEAD_SIZE];
+        int length = 0;
+        while (length < HEAD_SIZE) {
+            int read = buffered.read(head, length, HEAD_SIZE - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        buffered.reset();
+        for (Codec codec : ALL) {
+            if (codec.matches(head, length)) {
+                return decompressOrPlain(codec, buffered);
+            }
+        }
+        return buffered;
+    }
+
+    // The decompressed stream if its start decompresses, otherwise the data as it is
+    private static InputStream decompressOrPlain(Codec codec, BufferedInputStream in) throws IOException {
+        in.mark(BUFFER_SIZE); // A decompressor reads one buffer ahead, more than the probe takes
+        try {
+            InputStream decompressed = codec.decompress(in);
+            byte[] probe = decompressed.readNBytes(PROBE_SIZE);
+            return new SequenceInputStream(new ByteArrayInputStream(probe), decompressed);
+        } catch (ZipException | EOFException e) {
+            in.reset(); // Only looked like the codec's signature
+            return in;
+        }
+    }
+}
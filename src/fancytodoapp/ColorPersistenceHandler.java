@@ -1,7 +1,11 @@
 package fancytodoapp;
 
-import java.awt.Color;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 /**
  *
@@ -9,30 +13,63 @@ import java.nio.file.*;
  * 
  *  ColorPersistenceHandler
  * 
- *  Ensures theme colors load and save properly and consistenty.
+ *  Ensures theme colors load and save properly and consistenty. Color storage
+ *  of the json StorageProvider. Written as a one record RecordFile; the bare
+ *  int files of before are still read.
  * 
  */
-public class ColorPersistenceHandler {
+public class ColorPersistenceHandler implements StorageProvider.ColorStorage {
     private static final String COLOR_FILE = "fancytodo_data/theme_color.dat";
+    private final IoExecutor.WriteLane writeLane = new IoExecutor.WriteLane();
+    private final Gson gson = new Gson();
 
-    public void saveColor(Color color) {
-        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(COLOR_FILE))) {
-            dos.writeInt(color.getRGB());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public IoExecutor.WriteLane writeLane() {
+        return writeLane;
+    }
+
+    @Override
+    public void writeColorRGB(int rgb) throws IOException {
+        ThemeColor color = new ThemeColor();
+        color.rgb = rgb;
+        DurableFiles.replace(Paths.get(COLOR_FILE), temp -> {
+            try (RecordFile.RecordWriter writer = new RecordFile.RecordWriter(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), Migrations.COLOR, gson)) {
+                writer.write(color);
+                writer.finish();
+            }
+        });
     }
 
-    public Color loadColor() {
+    @Override
+    public Integer readColorRGB() throws IOException {
         Path path = Paths.get(COLOR_FILE);
         if (Files.exists(path)) {
-            try (DataInputStream dis = new DataInputStream(new FileInputStream(COLOR_FILE))) {
-                int rgb = dis.readInt();
-                return new Color(rgb);
-            } catch (IOException e) {
-                e.printStackTrace();
+            byte[] bytes = Files.readAllBytes(path);
+            if (bytes.length == Integer.BYTES) {
+                // Version 0, a bare int; upgraded like any other record
+                JsonElement legacy = new JsonPrimitive(ByteBuffer.wrap(bytes).getInt());
+                return gson.fromJson(Migrations.upgrade(Migrations.COLOR, 0).apply(legacy), ThemeColor.class).rgb;
+            }
+            ThemeColor[] color = new ThemeColor[1];
+            RecordFile.Damage damage = RecordFile.read(new ByteArrayInputStream(bytes), Migrations.COLOR,
+                    ThemeColor.class, gson, read -> color[0] = read);
+            if (damage.any()) {
+                RecordFile.quarantine(path, damage);
+            }
+            if (color[0] != null) {
+                return color[0].rgb;
             }
         }
         return null; // Default color
     }
+
+    /**
+     *  ThemeColor
+     *
+     *  The single record of the color file. JSON friendly.
+     */
+    private static final class ThemeColor {
+        int rgb;
+    }
 }
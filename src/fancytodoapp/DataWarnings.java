@@ -0,0 +1,44 @@
+package fancytodoapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+/**
+ *
+ *  DataWarnings
+ *
+ *  Problems with the data files that the user has to hear about, such as
+ *  damage that was skipped and kept in quarantine. Every warning goes to
+ *  stderr; the desktop app also shows it once it has set a listener, and
+ *  warnings from before that are delivered then. Any thread.
+ *
+ */
+final class DataWarnings {
+
+    private static final List<String> queued = new ArrayList<>();
+    private static Consumer<String> listener;
+
+    private DataWarnings() {
+    }
+
+    /**
+     * Sets where warnings go besides stderr. The listener runs on the thread
+     * that reported the warning and should hand off to the EDT itself.
+     */
+    static synchronized void setListener(Consumer<String> newListener) {
+        listener = newListener;
+        for (String message : queued) {
+            newListener.accept(message);
+        }
+        queued.clear();
+    }
+
+    static synchronized void report(String message) {
+        System.err.println(message);
+        if (listener != null) {
+            listener.accept(message);
+        } else {
+            queued.add(message);
+        }
+    }
+}
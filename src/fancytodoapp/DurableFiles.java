@@ -0,0 +1,132 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ *
+ *  DurableFiles
+ *
+ *  Crash-safe replacement of data files. The new content is written to a
+ *  temp file and forced to disk, moved over the old file, then the directory
+ *  is forced so the rename itself survives a power cut. A reader therefore
+ *  sees the old file or the new one, never a torn mix.
+ *
+ *  Forcing the directory is the slow step and covers every rename made in it
+ *  before the force began, so saves finishing together share one (group
+ *  commit): the first thread in forces for all that queued behind it.
+ *
+ */
+final class DurableFiles {
+
+    // Writes the new content to temp
+    @FunctionalInterface
+    interface Content {
+        void write(Path temp) throws IOException;
+    }
+
+    private static final Map<Path, DirectorySync> DIRECTORIES = new ConcurrentHashMap<>();
+    private static volatile boolean directorySyncSupported = true; // Windows cannot open directories
+
+    private DurableFiles() {
+    }
+
+    // Replaces the file with what content writes, for files without a VersionedFile lock
+    static void replace(Path file, Content content) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            content.write(temp);
+            commit(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Forces the finished temp file, moves it over the file and waits until the rename is durable
+    static void commit(Path temp, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path dir = file.toAbsolutePath().normalize().getParent();
+        if (dir != null && directorySyncSupported) {
+            DIRECTORIES.computeIfAbsent(dir, DirectorySync::new).sync();
+        }
+    }
+
+    /**
+     *  DirectorySync
+     *
+     *  Group commit of one directory. Each caller takes a ticket; a force that
+     *  started after the ticket was taken covers it.
+     */
+    private static final class DirectorySync {
+        private final Path dir;
+        private long requested; // Last ticket handed out
+        private long synced; // Every ticket up to this one is durable
+        private boolean syncing;
+
+        DirectorySync(Path dir) {
+            this.dir = dir;
+        }
+
+        void sync() throws IOException {
+            long target;
+            synchronized (this) {
+                long ticket = ++requested;
+                while (syncing && synced < ticket) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for " + dir + " to be forced");
+                    }
+                }
+                if (synced >= ticket) {
+                    return; // A leader forced the directory for us
+                }
+                syncing = true;
+                target = requested; // Renames of everyone queued so far are already done
+            }
+            boolean forced = false;
+            try {
+                force();
+                forced = true;
+            } finally {
+                synchronized (this) {
+                    syncing = false;
+                    if (forced) {
+                        synced = Math.max(synced, target);
+                    }
+                    notifyAll(); // After a failure the next waiter tries itself
+                }
+            }
+        }
+
+        private void force() throws IOException {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(dir, StandardOpenOption.READ);
+            } catch (IOException e) {
+                directorySyncSupported = false; // The file system orders the rename for us there
+                return;
+            }
+            try (channel) {
+                channel.force(true);
+            }
+        }
+    }
+}
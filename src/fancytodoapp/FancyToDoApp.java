@@ -4,25 +4,26 @@ import com.formdev.flatlaf.FlatDarkLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 import com.github.kwhat.jnativehook.GlobalScreen;
 import com.github.kwhat.jnativehook.NativeHookException;
-import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
-import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
-import com.google.gson.Gson;
+import com.github.kwhat.jnativehook.dispatcher.VoidDispatchService;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
 import static fancytodoapp.FancyToDoApp.DPIUtils.getScalingFactor;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.List;
@@ -37,31 +38,58 @@ import java.util.List;
  *  the fancytodoapp package.
  * 
  */
-public class FancyToDoApp extends JFrame implements NativeKeyListener {
+public class FancyToDoApp extends JFrame {
 
     private JTabbedPane tabbedPane;
     private JMenuBar menuBar;
 
-    private TrayIcon trayIcon;
+    private volatile TrayIcon trayIcon; // Null until the system tray has been set up
 
     private int cursorType = Cursor.DEFAULT_CURSOR;
 
     private boolean isDarkTheme = true;
     private Color themeColor = null; // Default theme color
-    private ColorPersistenceHandler colorPersistenceHandler;
+    private StorageProvider.ColorStorage colorPersistenceHandler;
     private Point initialClick;
     private Point startPos;
     private Rectangle startBounds;
     private boolean resizing = false;
     private static final int RESIZE_BORDER = 10;
+    private static final int MAINTENANCE_INITIAL_DELAY_MILLIS = 60_000;
+    private static final int MAINTENANCE_INTERVAL_MILLIS = 60 * 60_000;
     private JPanel titleBar;
     private JButton settingsButton;
     private JButton fileButton;
     private JButton closeButton;
+    private final StorageProvider.TabStorage tabRegistry = StorageProviders.current().tabStorage();
+    private final IoExecutor.WriteLane tabsWriteLane = new IoExecutor.WriteLane();
+    private boolean tabsLoaded = false; // tabs.json is not rewritten until it has been read
+    private final CompletableFuture<Void> tabsReady = new CompletableFuture<>();
+    private StartupSnapshot startupSnapshot; // Cleared once the live tabs replace it
+    private HotkeyDispatcher hotkeyDispatcher;
+    private final CompletableFuture<Void> hotkeyReady = new CompletableFuture<>();
+    private final CompletableFuture<Void> trayReady = new CompletableFuture<>();
+    private LocalApi localApi; // Only started with -Dfancytodo.api=true
+    private TaskFileWatcher taskFileWatcher;
+    private SyncEngine syncEngine; // Only started with -Dfancytodo.sync.dir=<shared folder>
+    private SingleInstance singleInstance; // Null when running without single instance protection
+    private javax.swing.Timer maintenanceTimer; // Archives old completed tasks, prunes history, collects orphans
     
     
     
     public FancyToDoApp() {
+        this(null);
+    }
+
+    /**
+     * @param snapshot state saved on the last exit, painted read-only until
+     *                 the saved tabs have loaded; may be null
+     */
+    public FancyToDoApp(StartupSnapshot snapshot) {
+        this.startupSnapshot = snapshot;
+        if (snapshot != null) {
+            isDarkTheme = snapshot.darkTheme;
+        }
         setTitle("FancyToDo");
         setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
         setSize(400, 300);
@@ -90,7 +118,7 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         closeButton.setBackground(Color.GRAY);
         closeButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
 
-        closeButton.addActionListener(e -> System.exit(0));
+        closeButton.addActionListener(e -> exitApplication());
 
         // Close button UX responsiveness
         closeButton.addMouseListener(new MouseAdapter() {
@@ -139,10 +167,11 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
 
         getContentPane().add(tabbedPane, BorderLayout.CENTER);
 
-        colorPersistenceHandler = new ColorPersistenceHandler();
-        themeColor = colorPersistenceHandler.loadColor();
+        colorPersistenceHandler = StorageProviders.current().colorStorage();
 
-        if (themeColor == null) {
+        if (snapshot != null) {
+            themeColor = new Color(snapshot.themeColorRGB);
+        } else {
             themeColor = UIManager.getColor("Panel.background");
             if (themeColor == null) {
                 themeColor = Color.DARK_GRAY;
@@ -153,20 +182,18 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
 
         addPlusTab();
 
-        loadTabs();
-        
-        // Default tab in case zero exist upon launch
-        if (tabbedPane.getTabCount() <= 1) {
-            addTodoTab("Default");
+        if (snapshot != null) {
+            showStartupSnapshot(snapshot);
         }
 
+        // Reads the saved theme color and tabs in the background and adds the tabs once parsed
+        loadTabs();
+
         addWindowDragListeners(titleBar);
 
         setMinimumSize(new Dimension(300, 200));
 
-        registerGlobalHotkey();
-
-        initializeSystemTray();
+        // The native hook and system tray are started by startIntegrations() once the frame is showing
 
         addTabContextMenu();
 
@@ -183,32 +210,191 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                try {
-                    GlobalScreen.unregisterNativeHook();
-                } catch (NativeHookException ex) {
-                    ex.printStackTrace();
-                }
-                trayIcon.displayMessage("FancyToDo", "Application exiting.", TrayIcon.MessageType.INFO);
-                System.exit(0);
+                unregisterNativeHook();
+                notifyTray("Application exiting.");
+                exitApplication();
             }
 
             @Override
             public void windowIconified(WindowEvent e) {
+                if (trayIcon == null) {
+                    return; // No tray icon to restore from yet, stay in the taskbar
+                }
                 setVisible(false);
-                trayIcon.displayMessage("FancyToDo", "Application minimized to tray.", TrayIcon.MessageType.INFO);
+                notifyTray("Application minimized to tray.");
             }
         });
     }
     
     private boolean useCustomCheckboxes = true; // Default to using custom checkboxes
+    private boolean useListView = false; // Lightweight row painting instead of the table, for very large tabs
+
+    /**
+     * Starts the native hook and the system tray in parallel on background
+     * threads. Called after the frame is visible so neither delays first paint.
+     *
+     * @return a future completing when both integrations have settled
+     */
+    public CompletableFuture<Void> startIntegrations() {
+        Logger logger = Logger.getLogger(FancyToDoApp.class.getName());
+        long start = System.nanoTime();
+
+        hotkeyDispatcher = new HotkeyDispatcher();
+        hotkeyDispatcher.registerAction("toggleWindow", "F9", this::toggleWindowVisibility);
+        hotkeyDispatcher.registerAction("quickAddTask", "", this::showAndAddTask);
+        hotkeyDispatcher.applyDefaults();
+
+        IoExecutor.run(this::registerGlobalHotkey).whenComplete((result, error) -> {
+            reportReadiness(logger, "Native hook", start, error);
+            completeReadiness(hotkeyReady, error);
+        });
+        IoExecutor.run(this::initializeSystemTray).whenComplete((result, error) -> {
+            reportReadiness(logger, "System tray", start, error);
+            completeReadiness(trayReady, error);
+        });
+        if (Boolean.getBoolean("fancytodo.api")) {
+            startLocalApi(logger);
+        }
+        // Well after startup, then hourly; completed tasks age while the app stays open
+        maintenanceTimer = new javax.swing.Timer(MAINTENANCE_INTERVAL_MILLIS, e -> runMaintenance());
+        maintenanceTimer.setInitialDelay(MAINTENANCE_INITIAL_DELAY_MILLIS);
+        tabsReady.thenRunAsync(maintenanceTimer::start, IoExecutor.edt());
+        if (StorageProviders.current() instanceof JsonStorageProvider) { // Only the JSON files are edited from outside
+            tabsReady.thenRunAsync(() -> startFileWatcher(logger), IoExecutor.edt());
+        }
+        String syncDir = System.getProperty("fancytodo.sync.dir");
+        if (syncDir != null && !syncDir.isEmpty()) {
+            startSync(logger, new FileDropTransport(java.nio.file.Paths.get(syncDir)));
+        }
+        return CompletableFuture.allOf(hotkeyReady, trayReady).handle((result, error) -> null);
+    }
+
+    // Picks up edits other processes make to the tab files while we are running
+    private void startFileWatcher(Logger logger) {
+        TaskFileWatcher watcher = new TaskFileWatcher(this::applyExternalChange);
+        IoExecutor.run(watcher::start).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                logger.log(Level.WARNING, "File watcher unavailable", IoExecutor.rootCause(error));
+            } else {
+                taskFileWatcher = watcher;
+            }
+        }, IoExecutor.edt());
+    }
+
+    private void applyExternalChange(String tabId, List<Task> tasks, long version) {
+        for (TodoPanel panel : tabHost().todoPanels()) {
+            if (panel.getTabId().equals(tabId)) {
+                panel.applyExternalTasks(tasks, version);
+            }
+        }
+    }
+
+    private void startSync(Logger logger, SyncTransport transport) {
+        SyncEngine engine = new SyncEngine(tabHost(), transport, tabsReady);
+        IoExecutor.run(engine::start).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                logger.log(Level.WARNING, "Sync unavailable", IoExecutor.rootCause(error));
+            } else {
+                syncEngine = engine;
+            }
+        }, IoExecutor.edt());
+    }
+
+    private void startLocalApi(Logger logger) {
+        LocalApi api = new LocalApi(tabHost(), tabsReady);
+        IoExecutor.run(api::start).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                logger.log(Level.WARNING, "Local API unavailable", IoExecutor.rootCause(error));
+            } else {
+                localApi = api;
+            }
+        }, IoExecutor.edt());
+    }
+
+    public CompletableFuture<Void> hotkeyReady() {
+        return hotkeyReady;
+    }
+
+    public CompletableFuture<Void> trayReady() {
+        return trayReady;
+    }
+
+    private static void reportReadiness(Logger logger, String name, long start, Throwable error) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (error == null) {
+            logger.log(Level.INFO, "{0} ready after {1} ms", new Object[]{name, millis});
+        } else {
+            logger.log(Level.WARNING, name + " unavailable after " + millis + " ms", IoExecutor.rootCause(error));
+        }
+    }
+
+    private static void completeReadiness(CompletableFuture<Void> readiness, Throwable error) {
+        if (error == null) {
+            readiness.complete(null);
+        } else {
+            readiness.completeExceptionally(IoExecutor.rootCause(error));
+        }
+    }
+
+    private void notifyTray(String message) {
+        TrayIcon icon = trayIcon;
+        if (icon != null) {
+            icon.displayMessage("FancyToDo", message, TrayIcon.MessageType.INFO);
+        }
+    }
+
+    private void unregisterNativeHook() {
+        if (!hotkeyReady.isDone() || hotkeyReady.isCompletedExceptionally()) {
+            return;
+        }
+        try {
+            GlobalScreen.unregisterNativeHook();
+        } catch (NativeHookException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Lets queued background writes reach disk before the JVM goes away
+    private void exitApplication() {
+        if (localApi != null) {
+            localApi.stop();
+        }
+        if (taskFileWatcher != null) {
+            taskFileWatcher.stop();
+        }
+        if (syncEngine != null) {
+            syncEngine.stop();
+        }
+        if (maintenanceTimer != null) {
+            maintenanceTimer.stop();
+        }
+        saveStartupSnapshot();
+        if (!IoExecutor.awaitPending(2000)) {
+            System.err.println("Exiting with writes still pending.");
+        }
+        if (singleInstance != null) {
+            singleInstance.close(); // After the writes, so a new launch never reads half saved files
+        }
+        System.exit(0);
+    }
     
     private void toggleCheckboxStyle() {
         useCustomCheckboxes = !useCustomCheckboxes;
         // Update all TodoPanels
         for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) {
-            Component comp = tabbedPane.getComponentAt(i);
-            if (comp instanceof TodoPanel) {
-                ((TodoPanel) comp).setUseCustomCheckboxes(useCustomCheckboxes);
+            TodoPanel panel = todoPanelAt(i);
+            if (panel != null) {
+                panel.setUseCustomCheckboxes(useCustomCheckboxes);
+            }
+        }
+    }
+    
+    private void toggleListView() {
+        useListView = !useListView;
+        for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) {
+            TodoPanel panel = todoPanelAt(i);
+            if (panel != null) {
+                panel.setUseListView(useListView);
             }
         }
     }
@@ -225,7 +411,7 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
 
             // Apply theme to title bar and components
             applyThemeToTitleBar();
-            SwingUtilities.updateComponentTreeUI(this);
+            updateLookAndFeel();
         } catch (UnsupportedLookAndFeelException ex) {
             ex.printStackTrace();
         }
@@ -249,7 +435,10 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
     if (selectedColor != null) {
         themeColor = selectedColor;
         applyThemeColor(themeColor);
-        colorPersistenceHandler.saveColor(themeColor);
+        colorPersistenceHandler.saveColorAsync(themeColor).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return null;
+        });
         saveTabs();
     }
 }
@@ -260,15 +449,44 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         tabbedPane.setBackground(color.darker());
         tabbedPane.setForeground(getContrastingColor(color));
 
-        // Update colors in all TodoPanels
+        // Update colors in all TodoPanels, hidden ones restyle when first shown
         for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) { // Exclude "+" tab
-            Component comp = tabbedPane.getComponentAt(i);
-            if (comp instanceof TodoPanel) {
-                ((TodoPanel) comp).applyThemeColor(color);
+            TodoPanel panel = todoPanelAt(i);
+            if (panel != null) {
+                panel.setThemeColor(color);
+            }
+        }
+        repaint();
+    }
+
+    // Like SwingUtilities.updateComponentTreeUI on the frame, but hidden tabs wait until they are shown
+    private void updateLookAndFeel() {
+        Set<Component> hidden = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TodoPanel panel : tabHost().todoPanels()) {
+            panel.lookAndFeelChanged();
+            hidden.add(panel); // Showing ones were just updated
+        }
+        updateTreeUI(getRootPane(), hidden);
+        getRootPane().invalidate();
+        validate();
+        repaint();
+    }
+
+    private static void updateTreeUI(Component component, Set<Component> skip) {
+        if (skip.contains(component)) {
+            return;
+        }
+        if (component instanceof JComponent) {
+            ((JComponent) component).updateUI();
+            if (component instanceof JMenu) {
+                updateTreeUI(((JMenu) component).getPopupMenu(), skip);
+            }
+        }
+        if (component instanceof Container) {
+            for (Component child : ((Container) component).getComponents()) {
+                updateTreeUI(child, skip);
             }
         }
-        // Update the UI
-        SwingUtilities.updateComponentTreeUI(this);
     }
     private Color getContrastingColor(Color color) {
         int d = 0;
@@ -287,7 +505,7 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
             JOptionPane.showMessageDialog(this, "Cannot save the '+' tab.", "Save As", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        TodoPanel currentPanel = (TodoPanel) tabbedPane.getComponentAt(selectedIndex);
+        TodoPanel currentPanel = todoPanelAt(selectedIndex);
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Todo List As");
         int userSelection = fileChooser.showSaveDialog(this);
@@ -322,15 +540,7 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
                 }
             }
             if (!exists) {
-                addTodoTab(tabName.trim());
-                // Get the newly added tab
-                TodoPanel newPanel = (TodoPanel) tabbedPane.getComponentAt(tabbedPane.getTabCount() - 2);
-                try {
-                    newPanel.loadTasksFromFile(fileToOpen);
-                } catch (IOException ex) {
-                    Logger.getLogger(FancyToDoApp.class.getName()).log(Level.SEVERE, null, ex);
-                }
-                saveTabs(); // Update the saved tabs
+                openTabFromFile(fileToOpen, tabName.trim());
             } else {
                 JOptionPane.showMessageDialog(
                     this,
@@ -350,93 +560,242 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
     }
 }
 
-    private void saveTabs() {
+    private void openTabFromFile(File fileToOpen, String tabName) {
+        addTodoTab(tabName);
+        // Get the newly added tab
+        TodoPanel newPanel = (TodoPanel) tabbedPane.getComponentAt(tabbedPane.getTabCount() - 2);
+        newPanel.loadTasksFromFile(fileToOpen).exceptionally(error -> {
+            Logger.getLogger(FancyToDoApp.class.getName()).log(Level.SEVERE, null, IoExecutor.rootCause(error));
+            return null;
+        });
+        saveTabs(); // Update the saved tabs
+    }
+
+    // The tab's TodoPanel, also while a snapshot covers it; null for the "+" tab
+    private TodoPanel todoPanelAt(int index) {
+        Component comp = tabbedPane.getComponentAt(index);
+        if (comp instanceof SnapshotPanel) {
+            return ((SnapshotPanel) comp).getLivePanel();
+        }
+        return comp instanceof TodoPanel ? (TodoPanel) comp : null;
+    }
+
+    private int indexOfTodoTab(String tabName) {
+        for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) { // Exclude "+" tab
+            if (tabbedPane.getTitleAt(i).equalsIgnoreCase(tabName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Acts on launch arguments, either this process's own or ones forwarded
+     * by a second launch. Waits for the saved tabs to be loaded first.
+     *
+     *   --show          bring the window to the front (default with no arguments)
+     *   --open FILE     open FILE in a new tab named after it
+     *   --tab NAME      target tab for the following --add, default is the selected tab
+     *   --add TEXT      add a task
+     */
+    public void handleLaunchArguments(List<String> args) {
+        tabsReady.thenRunAsync(() -> {
+            boolean show = args.isEmpty();
+            String targetTab = null;
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                boolean hasValue = i + 1 < args.size();
+                if (arg.equals("--show")) {
+                    show = true;
+                } else if (arg.equals("--tab") && hasValue) {
+                    targetTab = args.get(++i);
+                } else if (arg.equals("--open") && hasValue) {
+                    File file = new File(args.get(++i));
+                    String baseName = file.getName().replaceFirst("\\.[^.]*$", "");
+                    String tabName = baseName.isEmpty() ? "Opened" : baseName;
+                    for (int n = 2; indexOfTodoTab(tabName) != -1; n++) {
+                        tabName = baseName + " (" + n + ")";
+                    }
+                    openTabFromFile(file, tabName);
+                    show = true;
+                } else if (arg.equals("--add") && hasValue) {
+                    int tabIndex = targetTab != null ? indexOfTodoTab(targetTab) : tabbedPane.getSelectedIndex();
+                    TodoPanel panel = tabIndex >= 0 ? todoPanelAt(tabIndex) : null;
+                    if (panel != null) {
+                        panel.addNewTask(args.get(++i));
+                    } else {
+                        System.err.println("No tab named '" + targetTab + "' for --add");
+                        i++;
+                    }
+                } else {
+                    System.err.println("Ignoring launch argument: " + arg);
+                }
+            }
+            if (show) {
+                setVisible(true);
+                setExtendedState(JFrame.NORMAL);
+                toFront();
+            }
+        }, IoExecutor.edt());
+    }
+
+    // Saves every open tab concurrently, then reports the outcome on the EDT
+    private void saveAllTabs() {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) { // Exclude "+" tab
+            TodoPanel panel = todoPanelAt(i);
+            if (panel != null) {
+                writes.add(panel.saveTasksAsync());
+            }
+        }
+        writes.add(saveTabs());
+        writes.add(colorPersistenceHandler.saveColorAsync(themeColor));
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error saving tabs.", "Save All", JOptionPane.ERROR_MESSAGE);
+            }
+        }, IoExecutor.edt());
+    }
+
+    private CompletableFuture<Void> saveTabs() {
+       if (!tabsLoaded) {
+           return CompletableFuture.completedFuture(null);
+       }
        java.util.List<TabInfo> tabs = new ArrayList<>();
        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
            if (!isPlusTab(i)) {
                String name = tabbedPane.getTitleAt(i);
                Color color = tabbedPane.getBackgroundAt(i);
-               tabs.add(new TabInfo(name, color));
+               tabs.add(TabInfo.of(todoPanelAt(i).getTabId(), name, color));
            }
        }
-       Gson gson = new Gson();
-       String json = gson.toJson(tabs);
-       try (BufferedWriter writer = new BufferedWriter(new FileWriter("fancytodo_data/tabs.json"))) {
-           writer.write(json);
-       } catch (IOException e) {
-           e.printStackTrace();
-       }
+       CompletableFuture<Void> write = tabsWriteLane.submit(() -> tabRegistry.save(tabs));
+       write.exceptionally(error -> {
+           IoExecutor.rootCause(error).printStackTrace();
+           return null;
+       });
+       return write;
    }
+
     private void loadTabs() {
-        File tabsFile = new File("fancytodo_data/tabs.json");
-        if (tabsFile.exists()) {
-            boolean loadedSuccessfully = false;
-            try (BufferedReader reader = new BufferedReader(new FileReader(tabsFile))) {
-                Gson gson = new Gson();
-                java.lang.reflect.Type listType = new TypeToken<List<TabInfo>>() {}.getType();
-                List<TabInfo> tabs = gson.fromJson(reader, listType);
-                if (tabs != null && !tabs.isEmpty()) {
-                    for (TabInfo tabInfo : tabs) {
-                        addTodoTab(tabInfo.getName(), tabInfo.getColor());
-                    }
-                    loadedSuccessfully = true;
-                }
-            } catch (JsonSyntaxException e) {
-                System.err.println("Failed to parse tabs.json in new format. Attempting old format.");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-            if (!loadedSuccessfully) {
-                // Try to load in old format
-                try (BufferedReader reader = new BufferedReader(new FileReader(tabsFile))) {
-                    Gson gson = new Gson();
-                    java.lang.reflect.Type listType = new TypeToken<List<String>>() {}.getType();
-                    List<String> tabNames = gson.fromJson(reader, listType);
-                    if (tabNames != null && !tabNames.isEmpty()) {
-                        for (String tabName : tabNames) {
-                            addTodoTab(tabName, null); // No color information in old format
-                        }
-                        // Save tabs in new format
-                        saveTabs();
-                        loadedSuccessfully = true;
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+        CompletableFuture<Color> savedColor = colorPersistenceHandler.loadColorAsync();
+        IoExecutor.supply(tabRegistry::load).thenAcceptBothAsync(savedColor, (tabs, color) -> {
+            if (color != null && !color.equals(themeColor)) {
+                themeColor = color;
+                applyThemeColor(themeColor);
+            }
+            SnapshotPanel snapshotView = removeStartupSnapshot();
+            if (tabs != null) {
+                for (TabInfo tabInfo : tabs) {
+                    addTodoTab(tabInfo.getId(), tabInfo.getName(), tabInfo.getColor(), true);
                 }
+            } else {
+                addTodoTab("Main");
             }
+            tabsLoaded = true;
 
-            if (!loadedSuccessfully) {
-                // If all attempts fail, delete the corrupted file and start fresh
-                System.err.println("Failed to load tabs. Deleting corrupted tabs.json file.");
-                tabsFile.delete();
-                addTodoTab("Main");
+            // Default tab in case zero exist upon launch
+            if (tabbedPane.getTabCount() <= 1) {
+                addTodoTab("Default");
+            }
+            saveTabs();
+            restoreSnapshotSelection(snapshotView);
+            tabsReady.complete(null);
+        }, IoExecutor.edt()).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return null;
+        });
+    }
+
+    // Paints the tabs from the last session read-only while the real ones load
+    private void showStartupSnapshot(StartupSnapshot snapshot) {
+        for (int i = 0; i < snapshot.tabNames.size(); i++) {
+            boolean selected = i == snapshot.selectedIndex;
+            SnapshotPanel panel = new SnapshotPanel(selected ? snapshot.rows : null, themeColor);
+            tabbedPane.insertTab(snapshot.tabNames.get(i), null, panel, null, tabbedPane.getTabCount() - 1);
+            int color = snapshot.tabColorsRGB.get(i);
+            if (color != -1) {
+                tabbedPane.setBackgroundAt(i, new Color(color, true));
             }
-        } else {
-            addTodoTab("Main");
+        }
+        if (snapshot.selectedIndex >= 0 && snapshot.selectedIndex < tabbedPane.getTabCount() - 1) {
+            tabbedPane.setSelectedIndex(snapshot.selectedIndex);
         }
     }
 
-    private void handleOldTabFormat(File tabsFile) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(tabsFile))) {
-            Gson gson = new Gson();
-            java.lang.reflect.Type listType = new TypeToken<List<String>>() {}.getType();
-            List<String> tabNames = gson.fromJson(reader, listType);
-            if (tabNames != null && !tabNames.isEmpty()) {
-                for (String tabName : tabNames) {
-                    addTodoTab(tabName, null); // No color information in old format
+    // Drops the snapshot tabs, returning the one that was showing so it can cover its tab until loaded
+    private SnapshotPanel removeStartupSnapshot() {
+        if (startupSnapshot == null) {
+            return null;
+        }
+        SnapshotPanel selected = null;
+        int selectedIndex = tabbedPane.getSelectedIndex();
+        for (int i = tabbedPane.getTabCount() - 1; i >= 0; i--) {
+            Component comp = tabbedPane.getComponentAt(i);
+            if (comp instanceof SnapshotPanel) {
+                if (i == selectedIndex) {
+                    selected = (SnapshotPanel) comp;
                 }
-                // After successfully migrating, save the tabs in new format
-                saveTabs();
-            } else {
-                // If no tabs found, add a default tab
-                addTodoTab("Main");
+                tabbedPane.removeTabAt(i);
+            }
+        }
+        return selected;
+    }
+
+    // Selects the tab that was open last time; its snapshot stays up until its tasks are in
+    private void restoreSnapshotSelection(SnapshotPanel snapshotView) {
+        StartupSnapshot snapshot = startupSnapshot;
+        startupSnapshot = null;
+        if (snapshot == null || snapshot.selectedIndex < 0 || snapshot.selectedIndex >= snapshot.tabNames.size()) {
+            return;
+        }
+        int index = indexOfTodoTab(snapshot.tabNames.get(snapshot.selectedIndex));
+        if (index == -1) {
+            return;
+        }
+        tabbedPane.setSelectedIndex(index);
+        TodoPanel livePanel = (TodoPanel) tabbedPane.getComponentAt(index);
+        if (snapshotView == null || livePanel.whenLoadAttempted().isDone()) {
+            return;
+        }
+        snapshotView.setLivePanel(livePanel);
+        tabbedPane.setComponentAt(index, snapshotView);
+        // Also swapped out when the load fails, so the panel can show why
+        livePanel.whenLoadAttempted().thenRun(() -> {
+            int current = tabbedPane.indexOfComponent(snapshotView);
+            if (current != -1) {
+                livePanel.setThemeColor(themeColor); // Applied as it is shown
+                tabbedPane.setComponentAt(current, livePanel);
+            }
+        });
+    }
+
+    // Records the visible state for the next launch. Called on the EDT while exiting
+    private void saveStartupSnapshot() {
+        if (!tabsLoaded) {
+            return; // Nothing new to record, keep the previous snapshot
+        }
+        List<String> names = new ArrayList<>();
+        List<Integer> colors = new ArrayList<>();
+        int selected = -1;
+        List<Task> rows = new ArrayList<>();
+        for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) { // Exclude "+" tab
+            names.add(tabbedPane.getTitleAt(i));
+            Color color = tabbedPane.getBackgroundAt(i);
+            colors.add(color != null ? color.getRGB() : -1);
+            TodoPanel panel = todoPanelAt(i);
+            if (i == tabbedPane.getSelectedIndex() && panel != null) {
+                selected = i;
+                TaskSnapshot tasks = panel.getTaskStore().snapshot();
+                rows.addAll(tasks.subList(0, Math.min(tasks.size(), StartupSnapshot.MAX_ROWS)));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            // If parsing fails, add a default tab
-            addTodoTab("Main");
         }
+        StartupSnapshot snapshot = new StartupSnapshot(isDarkTheme, themeColor.getRGB(), selected, names, colors, rows);
+        IoExecutor.run(snapshot::write).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return null;
+        });
     }
 
     private void positionWindowNearSystemTray() {
@@ -468,7 +827,9 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         String newTabName = JOptionPane.showInputDialog(this, "Enter new tab name:", "Add New Tab", JOptionPane.PLAIN_MESSAGE);
         if (newTabName != null) {
             newTabName = newTabName.trim();
-            if (!newTabName.isEmpty()) {
+            if (newTabName.length() > TabInfo.MAX_NAME_LENGTH) {
+                JOptionPane.showMessageDialog(this, "Tab names can be at most " + TabInfo.MAX_NAME_LENGTH + " characters.", "Invalid Name", JOptionPane.WARNING_MESSAGE);
+            } else if (!newTabName.isEmpty()) {
                 // Check for duplicate tab names
                 boolean exists = false;
                 for (int i = 0; i < tabbedPane.getTabCount() - 1; i++) { // Exclude "+" tab
@@ -492,11 +853,18 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         addTodoTab(title, null);
     }
 
-    private void addTodoTab(String title, Color tabColor) {
+    private TodoPanel addTodoTab(String title, Color tabColor) {
+        return addTodoTab(TabInfo.newId(), title, tabColor, true);
+    }
+
+    private TodoPanel addTodoTab(String tabId, String title, Color tabColor, boolean select) {
         if (themeColor == null){
             themeColor = Color.WHITE;
         }
-        TodoPanel todoPanel = new TodoPanel(title, themeColor); // Pass themeColor
+        TodoPanel todoPanel = new TodoPanel(tabId, title, themeColor); // Pass themeColor
+        if (useListView) {
+            todoPanel.setUseListView(true);
+        }
 
         // Insert the new tab before the "+" tab
         int plusTabIndex = tabbedPane.indexOfTab("+");
@@ -507,46 +875,88 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         if (tabColor != null) {
             tabbedPane.setBackgroundAt(tabbedPane.indexOfComponent(todoPanel), tabColor);
         }
-        tabbedPane.setSelectedComponent(todoPanel);
+        if (select) {
+            tabbedPane.setSelectedComponent(todoPanel);
+        }
         saveTabs();
+        TaskEventPublisher.publish(TaskChangeEvent.tabAdded(todoPanel.getTabId(), title));
+        return todoPanel;
     }
 
-    private void registerGlobalHotkey() {
-        try {
-            // Disable JNativeHook logging
-            Logger logger = Logger.getLogger(GlobalScreen.class.getPackage().getName());
-            logger.setLevel(Level.OFF);
-            logger.setUseParentHandlers(false);
-
-            GlobalScreen.registerNativeHook();
-            GlobalScreen.addNativeKeyListener(this);
-        } catch (NativeHookException ex) {
-            ex.printStackTrace();
-        }
+    // Runs on a background thread, loading the native library is slow
+    private void registerGlobalHotkey() throws NativeHookException {
+        // Disable JNativeHook logging
+        Logger logger = Logger.getLogger(GlobalScreen.class.getPackage().getName());
+        logger.setLevel(Level.OFF);
+        logger.setUseParentHandlers(false);
+
+        // Deliver events on the hook thread itself, the dispatcher only does a table lookup there
+        GlobalScreen.setEventDispatcher(new VoidDispatchService());
+        GlobalScreen.registerNativeHook();
+        GlobalScreen.addNativeKeyListener(hotkeyDispatcher);
+
+        IoExecutor.supply(hotkeyDispatcher::loadBindings).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return null;
+        });
     }
 
-    // Implement NativeKeyListener methods
-    @Override
-    public void nativeKeyPressed(NativeKeyEvent nativeKeyEvent) {
-        if (nativeKeyEvent.getKeyCode() == NativeKeyEvent.VC_F9) {
-            // Toggle visibility
-            SwingUtilities.invokeLater(() -> {
-                setVisible(!isVisible());
-                if (isVisible()) {
-                    setExtendedState(JFrame.NORMAL);
-                }
-            });
+    private void toggleWindowVisibility() {
+        setVisible(!isVisible());
+        if (isVisible()) {
+            setExtendedState(JFrame.NORMAL);
         }
     }
 
-    @Override
-    public void nativeKeyReleased(NativeKeyEvent nativeKeyEvent) {
-        // Not needed
+    // Brings the window up and asks for a task for the selected tab
+    private void showAndAddTask() {
+        setVisible(true);
+        setExtendedState(JFrame.NORMAL);
+        toFront();
+        int selectedIndex = tabbedPane.getSelectedIndex();
+        TodoPanel panel = selectedIndex >= 0 ? todoPanelAt(selectedIndex) : null;
+        if (panel != null) {
+            panel.promptNewTask();
+        }
     }
 
-    @Override
-    public void nativeKeyTyped(NativeKeyEvent nativeKeyEvent) {
-        // Not needed
+    private void configureHotkeys() {
+        if (hotkeyDispatcher == null) {
+            return;
+        }
+        IoExecutor.supply(hotkeyDispatcher::loadBindings).whenCompleteAsync((chords, error) -> {
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error reading hotkeys.", "Hotkeys", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JPanel form = new JPanel(new GridLayout(0, 2, 5, 5));
+            Map<String, JTextField> fields = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : chords.entrySet()) {
+                JTextField field = new JTextField(entry.getValue(), 12);
+                fields.put(entry.getKey(), field);
+                form.add(new JLabel(entry.getKey()));
+                form.add(field);
+            }
+            int result = JOptionPane.showConfirmDialog(this, form, "Configure Hotkeys", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (result != JOptionPane.OK_OPTION) {
+                return;
+            }
+            Map<String, String> updated = new LinkedHashMap<>();
+            for (Map.Entry<String, JTextField> entry : fields.entrySet()) {
+                String chord = entry.getValue().getText().trim();
+                if (!chord.isEmpty() && HotkeyDispatcher.parseChord(chord) < 0) {
+                    JOptionPane.showMessageDialog(this, "Unknown hotkey: " + chord, "Hotkeys", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                updated.put(entry.getKey(), chord);
+            }
+            hotkeyDispatcher.applyBindings(updated);
+            IoExecutor.run(() -> hotkeyDispatcher.saveBindings(updated)).exceptionally(saveError -> {
+                IoExecutor.rootCause(saveError).printStackTrace();
+                return null;
+            });
+        }, IoExecutor.edt());
     }
 
 
@@ -575,24 +985,102 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
     JMenuItem deleteItem = new JMenuItem("Delete Tab");
     JMenuItem changeColorItem = new JMenuItem("Change Tab Color");
     JMenuItem changeCheckboxColorItem = new JMenuItem("Change Checkbox Color"); // New item
+    JMenuItem archiveItem = new JMenuItem("View Archive");
+    JMenuItem restoreItem = new JMenuItem("Restore Tab To...");
 
     renameItem.addActionListener(e -> renameTab(tabIndex));
     deleteItem.addActionListener(e -> deleteTab(tabIndex));
     changeColorItem.addActionListener(e -> changeTabColor(tabIndex));
     changeCheckboxColorItem.addActionListener(e -> changeTabCheckboxColor(tabIndex)); // New action
+    archiveItem.addActionListener(e -> showArchive(tabIndex));
+    restoreItem.addActionListener(e -> restoreTab(tabIndex));
 
     tabMenu.add(renameItem);
     tabMenu.add(deleteItem);
     tabMenu.add(changeColorItem);
     tabMenu.add(changeCheckboxColorItem); // Add new item to menu
+    tabMenu.add(archiveItem);
+    tabMenu.add(restoreItem);
 
     tabMenu.show(invoker, x, y);
 }
 
+    private void showArchive(int tabIndex) {
+        TodoPanel panel = todoPanelAt(tabIndex);
+        if (panel != null) {
+            new ArchiveDialog(this, tabbedPane.getTitleAt(tabIndex), panel.getArchive()).setVisible(true);
+        }
+    }
+
+    private void runMaintenance() {
+        archiveCompletedTasks();
+        IoExecutor.supply(TaskHistory::applyRetention).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return 0;
+        });
+        List<String> openTabIds = new ArrayList<>();
+        for (TodoPanel panel : tabHost().todoPanels()) {
+            openTabIds.add(panel.getTabId());
+        }
+        IoExecutor.supply(() -> OrphanCollector.collect(StorageProviders.current(), openTabIds)).exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return 0;
+        });
+    }
+
+    private void restoreTab(int tabIndex) {
+        TodoPanel panel = todoPanelAt(tabIndex);
+        if (panel == null) {
+            return;
+        }
+        String tabName = tabbedPane.getTitleAt(tabIndex);
+        IoExecutor.supply(panel.getHistory()::versions).whenCompleteAsync((versions, error) -> {
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error reading the tab's history.", "Restore Tab", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (versions.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No earlier versions of '" + tabName + "' have been saved yet.", "Restore Tab", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            JList<TaskHistory.Version> list = new JList<>(versions.toArray(new TaskHistory.Version[0]));
+            list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            list.setSelectedIndex(0);
+            list.setVisibleRowCount(12);
+            int result = JOptionPane.showConfirmDialog(this, new JScrollPane(list), "Restore '" + tabName + "' To",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            TaskHistory.Version version = list.getSelectedValue();
+            if (result != JOptionPane.OK_OPTION || version == null) {
+                return;
+            }
+            panel.restoreVersion(version).whenCompleteAsync((ignored, restoreError) -> {
+                if (restoreError != null) {
+                    IoExecutor.rootCause(restoreError).printStackTrace();
+                    JOptionPane.showMessageDialog(this, "Error restoring the tab.", "Restore Tab", JOptionPane.ERROR_MESSAGE);
+                }
+            }, IoExecutor.edt());
+        }, IoExecutor.edt());
+    }
+
+    // Moves old completed tasks of every loaded tab into its archive
+    private void archiveCompletedTasks() {
+        long cutoff = TaskArchive.cutoff();
+        if (cutoff == Long.MIN_VALUE) {
+            return; // Archiving turned off
+        }
+        for (TodoPanel panel : tabHost().todoPanels()) {
+            panel.archiveCompletedTasks(cutoff).exceptionally(error -> {
+                IoExecutor.rootCause(error).printStackTrace();
+                return 0;
+            });
+        }
+    }
+
     private void changeTabCheckboxColor(int tabIndex) {
-    Component comp = tabbedPane.getComponentAt(tabIndex);
-    if (comp instanceof TodoPanel) {
-        ((TodoPanel) comp).changeCheckboxColor();
+    TodoPanel panel = todoPanelAt(tabIndex);
+    if (panel != null) {
+        panel.changeCheckboxColor();
     }
 }
 
@@ -610,21 +1098,10 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         String newName = JOptionPane.showInputDialog(this, "Enter new name for the tab:", currentName);
         if (newName != null) {
             newName = newName.trim();
-            if (!newName.isEmpty()) {
-                // Check for duplicate tab names
-                boolean exists = false;
-                for (int i = 0; i < tabbedPane.getTabCount(); i++) {
-                    if (i != tabIndex && tabbedPane.getTitleAt(i).equalsIgnoreCase(newName)) {
-                        exists = true;
-                        break;
-                    }
-                }
-                if (!exists) {
-                    tabbedPane.setTitleAt(tabIndex, newName);
-                    saveTabs();
-                    // Optionally, rename the persistence file
-                    // Implement renaming logic in GsonPersistenceHandler if needed
-                } else {
+            if (newName.length() > TabInfo.MAX_NAME_LENGTH) {
+                JOptionPane.showMessageDialog(this, "Tab names can be at most " + TabInfo.MAX_NAME_LENGTH + " characters.", "Invalid Name", JOptionPane.WARNING_MESSAGE);
+            } else if (!newName.isEmpty()) {
+                if (!applyTabRename(tabIndex, newName)) { // Storage is keyed by the tab's id, so no file moves
                     JOptionPane.showMessageDialog(this, "A tab with this name already exists.", "Duplicate Tab", JOptionPane.ERROR_MESSAGE);
                 }
             } else {
@@ -633,6 +1110,25 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         }
     }
 
+    // Renames the tab unless another tab already has the name
+    private boolean applyTabRename(int tabIndex, String newName) {
+        String currentName = tabbedPane.getTitleAt(tabIndex);
+        // Check for duplicate tab names
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            if (i != tabIndex && tabbedPane.getTitleAt(i).equalsIgnoreCase(newName)) {
+                return false;
+            }
+        }
+        tabbedPane.setTitleAt(tabIndex, newName);
+        TodoPanel panel = todoPanelAt(tabIndex);
+        if (panel != null) {
+            panel.getTaskStore().setTabName(newName);
+            TaskEventPublisher.publish(TaskChangeEvent.tabRenamed(panel.getTabId(), currentName, newName));
+        }
+        saveTabs();
+        return true;
+    }
+
     private void deleteTab(int tabIndex) {
         String tabName = tabbedPane.getTitleAt(tabIndex);
         if (tabbedPane.getTabCount() <= 2) { // At least one todo tab and the "+" tab
@@ -641,26 +1137,76 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         }
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete the tab '" + tabName + "'?", "Delete Tab", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            tabbedPane.removeTabAt(tabIndex);
-            saveTabs();
-            // Optionally, delete the persistence file
-            // Implement deletion logic in GsonPersistenceHandler if needed
+            removeTab(tabIndex); // Its files are left to the OrphanCollector
+        }
+    }
+
+    private void removeTab(int tabIndex) {
+        String tabName = tabbedPane.getTitleAt(tabIndex);
+        TodoPanel panel = todoPanelAt(tabIndex);
+        tabbedPane.removeTabAt(tabIndex);
+        saveTabs();
+        if (panel != null) {
+            TaskEventPublisher.publish(TaskChangeEvent.tabDeleted(panel.getTabId(), tabName));
         }
     }
+
+    // Tab access for the local API and sync, always called on the EDT
+    private TabHost tabHost() {
+        return new TabHost() {
+            @Override
+            public List<TodoPanel> todoPanels() {
+                List<TodoPanel> panels = new ArrayList<>();
+                for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+                    TodoPanel panel = todoPanelAt(i);
+                    if (panel != null) {
+                        panels.add(panel);
+                    }
+                }
+                return panels;
+            }
+
+            @Override
+            public TodoPanel findTodoPanel(String tabName) {
+                int index = indexOfTodoTab(tabName);
+                return index != -1 ? todoPanelAt(index) : null;
+            }
+
+            @Override
+            public TodoPanel createTodoTab(String tabId, String tabName) {
+                return addTodoTab(tabId, tabName, null, false); // Leave the user's selection alone
+            }
+
+            @Override
+            public boolean renameTodoTab(String tabName, String newName) {
+                int index = indexOfTodoTab(tabName);
+                return index != -1 && !newName.isEmpty() && applyTabRename(index, newName);
+            }
+
+            @Override
+            public boolean deleteTodoTab(String tabName) {
+                int index = indexOfTodoTab(tabName);
+                if (index == -1 || tabbedPane.getTabCount() <= 2) { // Keep the last todo tab
+                    return false;
+                }
+                removeTab(index);
+                return true;
+            }
+        };
+    }
     
     // Helper methods
     
-    private void initializeSystemTray() {
+    // Runs on a background thread; the menu actions themselves are delivered on the EDT
+    private void initializeSystemTray() throws AWTException {
         if (!SystemTray.isSupported()) {
-            System.err.println("System tray not supported!");
-            return;
+            throw new AWTException("System tray not supported!");
         }
 
         SystemTray tray = SystemTray.getSystemTray();
         URL trayIconURL = getClass().getResource("/icons/trayIcon.png");
         if (trayIconURL == null) {
-            System.err.println("trayIcon.png not found!");
-            return;
+            throw new AWTException("trayIcon.png not found!");
         }
         Image image = Toolkit.getDefaultToolkit().getImage(trayIconURL);
 
@@ -670,46 +1216,36 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         openItem.addActionListener(e -> {
             setVisible(true);
             setExtendedState(JFrame.NORMAL);
-            trayIcon.displayMessage("FancyToDo", "Application opened.", TrayIcon.MessageType.INFO);
+            notifyTray("Application opened.");
         });
         popup.add(openItem);
 
         MenuItem addTabItem = new MenuItem("Add New Tab");
         addTabItem.addActionListener(e -> {
             addNewTab();
-            trayIcon.displayMessage("FancyToDo", "New tab added.", TrayIcon.MessageType.INFO);
+            notifyTray("New tab added.");
         });
         popup.add(addTabItem);
 
         MenuItem exitItem = new MenuItem("Exit");
         exitItem.addActionListener(e -> {
-            try {
-                GlobalScreen.unregisterNativeHook();
-            } catch (NativeHookException ex) {
-                ex.printStackTrace();
-            }
-            trayIcon.displayMessage("FancyToDo", "Application exiting.", TrayIcon.MessageType.INFO);
-            System.exit(0);
+            unregisterNativeHook();
+            notifyTray("Application exiting.");
+            exitApplication();
         });
         popup.add(exitItem);
 
-        trayIcon = new TrayIcon(image, "FancyToDo", popup);
-        trayIcon.setImageAutoSize(true);
-        trayIcon.setToolTip("FancyToDo - Your Persistent Todo List");
-        trayIcon.addActionListener(e -> {
+        TrayIcon icon = new TrayIcon(image, "FancyToDo", popup);
+        icon.setImageAutoSize(true);
+        icon.setToolTip("FancyToDo - Your Persistent Todo List");
+        icon.addActionListener(e -> {
             setVisible(true);
             setExtendedState(JFrame.NORMAL);
-            trayIcon.displayMessage("FancyToDo", "Application opened.", TrayIcon.MessageType.INFO);
+            notifyTray("Application opened.");
         });
 
-        try {
-            tray.add(trayIcon);
-        } catch (AWTException e) {
-            e.printStackTrace();
-        }
-
-        // Hide window instead of exiting when the close button is clicked
-        setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+        tray.add(icon);
+        trayIcon = icon;
     }
     
     private void addWindowDragListeners(JPanel titleBar) {
@@ -802,12 +1338,15 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
     private JPopupMenu createFileMenuPopup() {
         JPopupMenu fileMenuPopup = new JPopupMenu();
         JMenuItem saveAsItem = new JMenuItem("Save Tab As");
+        JMenuItem saveAllItem = new JMenuItem("Save All Tabs");
         JMenuItem openItem = new JMenuItem("Open");
 
         saveAsItem.addActionListener(e -> saveTabAs());
+        saveAllItem.addActionListener(e -> saveAllTabs());
         openItem.addActionListener(e -> openTabFromFile());
 
         fileMenuPopup.add(saveAsItem);
+        fileMenuPopup.add(saveAllItem);
         fileMenuPopup.add(openItem);
 
         return fileMenuPopup;
@@ -818,7 +1357,9 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
         JMenuItem toggleAlwaysOnTopItem = new JMenuItem("Toggle Always on Top");
         JMenuItem switchThemeItem = new JMenuItem("Switch Theme");
         JMenuItem toggleCheckboxStyleItem = new JMenuItem("Toggle Checkbox Style");
+        JMenuItem toggleListViewItem = new JMenuItem("Toggle Fast List View");
         JMenuItem chooseColorItem = new JMenuItem("Choose Theme Color");
+        JMenuItem hotkeysItem = new JMenuItem("Configure Hotkeys");
 
         toggleAlwaysOnTopItem.addActionListener(e -> {
             boolean isAlwaysOnTop = isAlwaysOnTop();
@@ -828,34 +1369,20 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
 
         switchThemeItem.addActionListener(e -> switchTheme());
         toggleCheckboxStyleItem.addActionListener(e -> toggleCheckboxStyle());
+        toggleListViewItem.addActionListener(e -> toggleListView());
         chooseColorItem.addActionListener(e -> chooseThemeColor());
+        hotkeysItem.addActionListener(e -> configureHotkeys());
 
         settingsMenuPopup.add(toggleAlwaysOnTopItem);
         settingsMenuPopup.add(switchThemeItem);
         settingsMenuPopup.add(toggleCheckboxStyleItem);
+        settingsMenuPopup.add(toggleListViewItem);
         settingsMenuPopup.add(chooseColorItem);
+        settingsMenuPopup.add(hotkeysItem);
 
         return settingsMenuPopup;
     }
 
-    public class TabInfo {
-        private String name;
-        private int colorRGB;
-
-        public TabInfo(String name, Color color) {
-            this.name = name;
-            this.colorRGB = color != null ? color.getRGB() : -1; // Use -1 for default color
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public Color getColor() {
-            return colorRGB != -1 ? new Color(colorRGB, true) : null;
-        }
-    }
-
     public class DPIUtils {
         /**
          * Estimates the scaling factor based on the screen DPI.
@@ -870,22 +1397,63 @@ public class FancyToDoApp extends JFrame implements NativeKeyListener {
             AffineTransform at = gc.getDefaultTransform();
             return at.getScaleX(); // Assuming uniform scaling for X and Y
         }
+
+        /**
+         * Scaling factors of every attached screen, which differ on mixed-DPI
+         * setups. Empty when there is no display.
+         */
+        public static double[] getScaleFactors() {
+            try {
+                GraphicsDevice[] screens = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+                double[] scales = new double[screens.length];
+                for (int i = 0; i < screens.length; i++) {
+                    scales[i] = screens[i].getDefaultConfiguration().getDefaultTransform().getScaleX();
+                }
+                return scales;
+            } catch (HeadlessException e) {
+                return new double[0];
+            }
+        }
     }
 
     
-    // Main method (run this class)
-    public static void main(String[] args) {
+    /**
+     * Starts the app once FancyToDoLauncher has settled that this process is
+     * the primary. primary is null when running without single instance
+     * protection.
+     */
+    static void start(SingleInstance primary, List<String> launchArgs) {
+        // Small binary file, read before the look and feel so the theme matches the last session
+        StartupSnapshot snapshot = StartupSnapshot.read();
+        // Checkbox rasters for every screen scale are made while the look and feel loads
+        TodoPanel.preloadIcons();
+
         try {
             // Apply FlatLaf theme
-            UIManager.setLookAndFeel(new FlatDarkLaf());
+            if (snapshot != null && !snapshot.darkTheme) {
+                UIManager.setLookAndFeel(new FlatLightLaf());
+            } else {
+                UIManager.setLookAndFeel(new FlatDarkLaf());
+            }
             getScalingFactor();
         } catch (UnsupportedLookAndFeelException ex) {
             ex.printStackTrace();
         }
 
         SwingUtilities.invokeLater(() -> {
-            FancyToDoApp app = new FancyToDoApp();
+            FancyToDoApp app = new FancyToDoApp(snapshot);
             app.setVisible(true);
+            DataWarnings.setListener(message -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                    app, message, "Damaged Data", JOptionPane.WARNING_MESSAGE)));
+            // Queued behind the first paint, so native setup never delays the window
+            SwingUtilities.invokeLater(app::startIntegrations);
+            if (primary != null) {
+                app.singleInstance = primary;
+                primary.setHandler(app::handleLaunchArguments);
+            }
+            if (!launchArgs.isEmpty()) {
+                app.handleLaunchArguments(launchArgs);
+            }
         });
     }
 }
@@ -0,0 +1,40 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+/**
+ *
+ *  FancyToDoLauncher
+ *
+ *  Entry point of the desktop app. Settles which process owns fancytodo_data
+ *  first: a launch that finds another instance running forwards its
+ *  arguments through SingleInstance and exits. This class references no AWT
+ *  or Swing type, and FancyToDoApp (a JFrame) is loaded only once this
+ *  process is known to be the primary, so a forwarding launch never pays for
+ *  the toolkit's startup.
+ *
+ */
+public final class FancyToDoLauncher {
+
+    private FancyToDoLauncher() {
+    }
+
+    public static void main(String[] args) {
+        List<String> launchArgs = Arrays.asList(args);
+
+        SingleInstance primary = null;
+        try {
+            primary = SingleInstance.acquire(launchArgs);
+            if (primary == null) {
+                return; // Arguments went to the running instance
+            }
+        } catch (IllegalStateException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        } catch (IOException ex) {
+            ex.printStackTrace(); // Run without single instance protection
+        }
+        FancyToDoApp.start(primary, launchArgs);
+    }
+}
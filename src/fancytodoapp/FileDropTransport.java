@@ -0,0 +1,207 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+/**
+ *
+ *  FileDropTransport
+ *
+ *  Exchanges deltas through a shared folder: a synced cloud drive, a network
+ *  share, or a local directory for trying two instances on one machine.
+ *  Every delta is a small gzipped file "<node>-<seq>.delta" written once and
+ *  never changed; each node polls the folder for files it has not read yet.
+ *  Each node also keeps its latest snapshot there as "<node>.snapshot", and
+ *  deletes its own delta files once every snapshot in the folder covers
+ *  them, so the folder, and what a start reads, stays bounded.
+ *
+ */
+public class FileDropTransport implements SyncTransport {
+
+    private static final String SUFFIX = ".delta";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final long POLL_MILLIS = 2000; // Watch events are unreliable on network and cloud folders
+
+    private final Path directory;
+    private final Gson gson = new Gson();
+    private final Set<String> seen = new HashSet<>(); // Poll thread only
+    private final Map<String, Long> lastSeq = new ConcurrentHashMap<>();
+    private final Map<String, SyncSnapshot> snapshots = new ConcurrentHashMap<>(); // By node
+    private final Map<String, FileTime> snapshotTimes = new HashMap<>(); // By file name, guarded like seen
+    private ScheduledExecutorService poller;
+    private Consumer<SyncDelta> receiver;
+
+    public FileDropTransport(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void start(String node, Consumer<SyncDelta> receiver) throws IOException {
+        this.receiver = receiver;
+        Files.createDirectories(directory);
+        poll(); // Everything already there, before returning
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fancytodo-sync-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void poll() throws IOException {
+        pollSnapshots();
+        List<String> fresh = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!seen.contains(name)) {
+                    fresh.add(name);
+                }
+            }
+        }
+        // Per node in seq order; zero padded seqs make that the name order
+        fresh.sort(null);
+        for (String name : fresh) {
+            SyncDelta delta;
+            try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(directory.resolve(name))),
+                    StandardCharsets.UTF_8)) {
+                delta = gson.fromJson(reader, SyncDelta.class);
+            } catch (IOException | RuntimeException e) {
+                continue; // Still being copied in by the sync tool, try again next poll
+            }
+            seen.add(name);
+            if (delta != null && delta.node != null && delta.ops != null) {
+                lastSeq.merge(delta.node, delta.seq, Math::max);
+                receiver.accept(delta);
+            }
+        }
+    }
+
+    // Reads the snapshots that are new or changed since the last poll
+    private void pollSnapshots() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                FileTime modified;
+                SyncSnapshot snapshot;
+                try {
+                    modified = Files.getLastModifiedTime(file);
+                    if (modified.equals(snapshotTimes.get(name))) {
+                        continue;
+                    }
+                    try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)),
+                            StandardCharsets.UTF_8)) {
+                        snapshot = gson.fromJson(reader, SyncSnapshot.class);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    continue; // Still being copied in, try again next poll
+                }
+                snapshotTimes.put(name, modified);
+                if (snapshot != null && snapshot.node != null && snapshot.applied != null && snapshot.ops != null) {
+                    snapshots.put(snapshot.node, snapshot);
+                    lastSeq.merge(snapshot.node, snapshot.covered(snapshot.node), Math::max); // Its deltas may be gone
+                }
+            }
+        }
+    }
+
+    @Override
+    public void publish(SyncSnapshot snapshot) throws IOException {
+        String name = snapshot.node + SNAPSHOT_SUFFIX;
+        Path temp = directory.resolve(name + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot, writer);
+        }
+        Files.move(temp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        snapshots.put(snapshot.node, snapshot);
+        synchronized (this) {
+            snapshotTimes.put(name, Files.getLastModifiedTime(directory.resolve(name))); // Not read back
+            prune(snapshot.node);
+        }
+    }
+
+    // Deletes the node's delta files that every snapshot covers; only their writer deletes them
+    private synchronized void prune(String node) throws IOException {
+        long covered = Long.MAX_VALUE;
+        for (SyncSnapshot snapshot : snapshots.values()) {
+            covered = Math.min(covered, snapshot.covered(node));
+        }
+        String prefix = node + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long seq;
+                try {
+                    seq = Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (seq <= covered) {
+                    Files.deleteIfExists(file);
+                    seen.remove(name);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<SyncSnapshot> snapshots() {
+        return new ArrayList<>(snapshots.values());
+    }
+
+    @Override
+    public void send(SyncDelta delta) throws IOException {
+        String name = String.format("%s-%012d%s", delta.node, delta.seq, SUFFIX);
+        Path temp = directory.resolve(name + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8)) {
+            gson.toJson(delta, writer);
+        }
+        // Other nodes only ever see complete files
+        Files.move(temp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        lastSeq.merge(delta.node, delta.seq, Math::max);
+        synchronized (this) {
+            seen.add(name); // Already applied locally
+        }
+    }
+
+    @Override
+    public long lastSentSeq(String node) {
+        return lastSeq.getOrDefault(node, 0L);
+    }
+
+    @Override
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
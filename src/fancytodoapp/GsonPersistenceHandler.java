@@ -1,12 +1,20 @@
 package fancytodoapp;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
-import java.lang.reflect.Type;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 /**
  *
  *  Kameron Dangleben 12/3/24
@@ -14,17 +22,32 @@ import java.util.List;
  *  GsonPersistenceHandler
  * 
  *  Handler which manages GSON serialization of data. Tasks are broken into JSON
- *  friendly data which can be saved and loaded.
+ *  friendly data which can be saved and loaded. Task storage of the json
+ *  StorageProvider. The streaming variants visit one task at a time so very
+ *  large tabs never sit in memory.
+ *  Writes go through VersionedFile; if another process saved the tab since we
+ *  last read it, its changes are merged with ours instead of overwritten.
+ *  Files are compressed with the configured Codec and read whatever codec
+ *  wrote them. Inside, tasks are checksummed records (see RecordFile), so a
+ *  damaged task is quarantined while the rest of the tab loads.
  * 
  */
-public class GsonPersistenceHandler {
+public class GsonPersistenceHandler implements StorageProvider.TaskStorage {
 
     private static final String DATA_DIR = "fancytodo_data";
-    private String tabName;
+    private String tabId;
     private Gson gson;
+    private final IoExecutor.WriteLane writeLane = new IoExecutor.WriteLane();
+    private final Codec codec = Codecs.configured(); // Files keep their .json name whatever the codec
 
-    public GsonPersistenceHandler(String tabName) {
-        this.tabName = tabName;
+    // The file content our tasks derive from and its version, the base for merging
+    private volatile VersionedFile.Versioned<List<Task>> base = new VersionedFile.Versioned<>(null, VersionedFile.UNKNOWN_VERSION);
+
+    // CRC32 of what this process last wrote or accepted per file, so the watcher skips our own writes
+    private static final Map<Path, Long> knownContent = new ConcurrentHashMap<>();
+
+    public GsonPersistenceHandler(String tabId) {
+        this.tabId = tabId;
         this.gson = new Gson();
         ensureDataDirExists();
     }
@@ -40,26 +63,175 @@ public class GsonPersistenceHandler {
         }
     }
 
-    public void saveTasks(List<Task> tasks) {
-        String json = gson.toJson(tasks);
-        Path filePath = Paths.get(DATA_DIR, tabName + ".json");
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
-            writer.write(json);
-        } catch (IOException e) {
-            e.printStackTrace();
+    @Override
+    public IoExecutor.WriteLane writeLane() {
+        return writeLane;
+    }
+
+    @Override
+    public void writeTasks(List<Task> tasks) throws IOException {
+        Path filePath = Paths.get(DATA_DIR, tabId + ".json");
+        CRC32 crc = new CRC32();
+        VersionedFile.Versioned<List<Task>> from = base;
+        List<List<Task>> written = new ArrayList<>(1);
+        long version = VersionedFile.write(filePath, (currentVersion, file, temp) -> {
+            List<Task> content = tasks;
+            if (currentVersion != from.version && Files.exists(file)) {
+                // Someone else wrote since we last looked, fold their changes in
+                List<Task> theirs = parseTasks(file);
+                if (theirs != null) {
+                    List<Task> merged = ThreeWayMerge.merge(from.value, tasks, theirs,
+                            task -> task.task == null ? "" : task.task, GsonPersistenceHandler::sameTask);
+                    if (!sameTasks(merged, tasks)) {
+                        content = merged;
+                    }
+                }
+            }
+            // The CRC covers the bytes on disk, which is what the watcher sees
+            try (RecordFile.RecordWriter writer = new RecordFile.RecordWriter(new BufferedOutputStream(
+                    codec.compress(new CheckedOutputStream(Files.newOutputStream(temp), crc))), Migrations.TASKS, gson)) {
+                for (Task task : content) {
+                    writer.write(task); // Stream straight to disk instead of building a String
+                }
+                writer.finish();
+            }
+            written.add(content);
+        });
+        if (written.get(0) == tasks) {
+            base = new VersionedFile.Versioned<>(copyOf(tasks), version);
+            rememberContent(filePath, crc.getValue());
+        } else {
+            // The file now holds changes our tasks lack, so the next save merges again. The watcher
+            // brings them to the screen and calls acceptExternal
+            base = new VersionedFile.Versioned<>(copyOf(tasks), VersionedFile.UNKNOWN_VERSION);
         }
     }
 
-    public List<Task> loadTasks() {
-        Path filePath = Paths.get(DATA_DIR, tabName + ".json");
-        if (Files.exists(filePath)) {
-            try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-                Type listType = new TypeToken<List<Task>>() {}.getType();
-                return gson.fromJson(reader, listType);
-            } catch (IOException e) {
-                e.printStackTrace();
+    // Called once the tasks read from the file at the given version are what the user sees
+    @Override
+    public void acceptExternal(List<Task> tasks, long version) {
+        base = new VersionedFile.Versioned<>(copyOf(tasks), version);
+    }
+
+    // Folds the edits local made since the base into external, the way the next write would
+    @Override
+    public List<Task> mergeExternal(List<Task> local, List<Task> external) {
+        List<Task> from = base.value;
+        if (from != null && sameTasks(local, from)) {
+            return external; // Nothing of ours unsaved
+        }
+        return ThreeWayMerge.merge(from, local, external, task -> task.task == null ? "" : task.task,
+                GsonPersistenceHandler::sameTask);
+    }
+
+    static boolean sameTasks(List<Task> a, List<Task> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!sameTask(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean sameTask(Task a, Task b) {
+        return a.status == b.status && a.checkboxColorRGB == b.checkboxColorRGB && Objects.equals(a.task, b.task);
+    }
+
+    static List<Task> copyOf(List<Task> tasks) {
+        List<Task> copy = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (task != null) {
+                copy.add(new Task(task));
             }
         }
+        return copy;
+    }
+
+    public static void rememberContent(Path file, long crc) {
+        knownContent.put(file.toAbsolutePath().normalize(), crc);
+    }
+
+    public static boolean isKnownContent(Path file, long crc) {
+        Long known = knownContent.get(file.toAbsolutePath().normalize());
+        return known != null && known == crc;
+    }
+
+    @Override
+    public List<Task> readTasks() throws IOException {
+        Path filePath = Paths.get(DATA_DIR, tabId + ".json");
+        VersionedFile.Versioned<List<Task>> read = VersionedFile.read(filePath, this::parseTasks);
+        // The caller may edit the tasks it gets, so the base keeps copies
+        base = new VersionedFile.Versioned<>(read.value != null ? copyOf(read.value) : null, read.version);
+        return read.value;
+    }
+
+    private List<Task> parseTasks(Path filePath) throws IOException {
+        if (Files.exists(filePath)) {
+            List<Task> tasks = new ArrayList<>();
+            readRecords(filePath, tasks::add);
+            return tasks;
+        }
         return null; // No saved tasks
     }
+
+    // Reads plain or compressed files alike, the codec is recognised from the first bytes
+    private void readRecords(Path filePath, Consumer<Task> visitor) throws IOException {
+        RecordFile.Damage damage;
+        try (InputStream in = Codecs.open(Files.newInputStream(filePath))) {
+            damage = RecordFile.read(in, Migrations.TASKS, Task.class, gson, visitor);
+        }
+        if (damage.any()) {
+            RecordFile.quarantine(filePath, damage);
+        }
+    }
+
+    // Hands each saved task to the visitor in order, without building the list
+    @Override
+    public void streamTasks(Consumer<Task> visitor) throws IOException {
+        Path filePath = Paths.get(DATA_DIR, tabId + ".json");
+        if (Files.exists(filePath)) {
+            readRecords(filePath, visitor);
+        }
+    }
+
+    /**
+     * Rewrites the tab in a single streaming pass: every saved task goes through
+     * the mapper (null drops it), then the appended tasks are written after them.
+     * The new file is written next to the old one and moved into place.
+     *
+     * @return the number of tasks in the rewritten file
+     */
+    @Override
+    public int rewriteTasks(UnaryOperator<Task> mapper, Iterator<Task> appended) throws IOException {
+        Path filePath = Paths.get(DATA_DIR, tabId + ".json");
+        int[] count = {0};
+        // Reading and writing both happen under the lock, so no other writer can slip in between
+        VersionedFile.write(filePath, (currentVersion, file, temp) -> {
+            try (RecordFile.RecordWriter writer = new RecordFile.RecordWriter(new BufferedOutputStream(
+                    codec.compress(Files.newOutputStream(temp))), Migrations.TASKS, gson)) {
+                streamTasks(task -> {
+                    Task mapped = mapper.apply(task);
+                    if (mapped != null) {
+                        try {
+                            writer.write(mapped);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        count[0]++;
+                    }
+                });
+                while (appended.hasNext()) {
+                    writer.write(appended.next());
+                    count[0]++;
+                }
+                writer.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+        return count[0];
+    }
 }
@@ -0,0 +1,282 @@
+package fancytodoapp;
+
+import com.github.kwhat.jnativehook.NativeInputEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+/**
+ *
+ *  HotkeyDispatcher
+ *
+ *  Global hotkey handling. Every system wide key press reaches nativeKeyPressed
+ *  on the native hook thread, so the lookup there is a single probe into a
+ *  primitive hash table keyed by (keycode, modifiers) and allocates nothing.
+ *  Only a matching chord is handed to the EDT. Chords are configured in
+ *  fancytodo_data/hotkeys.properties, e.g. toggleWindow=Ctrl+Shift+F9.
+ *
+ */
+public class HotkeyDispatcher implements NativeKeyListener {
+
+    private static final Path CONFIG_FILE = Paths.get("fancytodo_data", "hotkeys.properties");
+    private static final long DEBOUNCE_NANOS = 150_000_000L; // Ignores key repeat and bouncing
+
+    // Canonical modifier bits, left and right keys are treated the same
+    private static final int MOD_SHIFT = 1;
+    private static final int MOD_CTRL = 2;
+    private static final int MOD_ALT = 4;
+    private static final int MOD_META = 8;
+
+    private static final Map<String, Integer> KEY_CODES = readKeyCodes();
+
+    private final Map<String, Runnable> actions = new LinkedHashMap<>();
+    private final Map<String, String> defaults = new LinkedHashMap<>();
+    private volatile Bindings bindings = new Bindings(0);
+
+    // Registers an action the user can bind, with the chord used when none is configured
+    public void registerAction(String name, String defaultChord, Runnable action) {
+        actions.put(name, action);
+        defaults.put(name, defaultChord);
+    }
+
+    public Map<String, Runnable> getActions() {
+        return actions;
+    }
+
+    // Binds the default chords, used until the configuration file has been read
+    public void applyDefaults() {
+        applyBindings(defaults);
+    }
+
+    // Reads the configured chords and swaps in a new lookup table. Runs off the EDT
+    public Map<String, String> loadBindings() throws IOException {
+        Map<String, String> chords = new LinkedHashMap<>(defaults);
+        if (Files.exists(CONFIG_FILE)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(CONFIG_FILE)) {
+                properties.load(reader);
+            }
+            for (String name : actions.keySet()) {
+                String chord = properties.getProperty(name);
+                if (chord != null) {
+                    chords.put(name, chord.trim());
+                }
+            }
+        } else {
+            saveBindings(chords);
+        }
+        applyBindings(chords);
+        return chords;
+    }
+
+    public void saveBindings(Map<String, String> chords) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(chords);
+        Files.createDirectories(CONFIG_FILE.getParent());
+        try (Writer writer = Files.newBufferedWriter(CONFIG_FILE)) {
+            properties.store(writer, "FancyToDo global hotkeys, e.g. Ctrl+Shift+F9. Leave empty to disable.");
+        }
+    }
+
+    // Builds the lookup table; chords that fail to parse are reported and skipped
+    public void applyBindings(Map<String, String> chords) {
+        Bindings table = new Bindings(chords.size());
+        for (Map.Entry<String, String> entry : chords.entrySet()) {
+            Runnable action = actions.get(entry.getKey());
+            if (action == null || entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            int chord = parseChord(entry.getValue());
+            if (chord < 0) {
+                System.err.println("Ignoring unknown hotkey '" + entry.getValue() + "' for " + entry.getKey());
+                continue;
+            }
+            table.put(chord, action);
+        }
+        bindings = table;
+    }
+
+    /**
+     * Parses a chord such as "Ctrl+Alt+N" into the packed lookup key.
+     *
+     * @return the packed chord, or -1 if a part is not recognised
+     */
+    public static int parseChord(String chord) {
+        int modifiers = 0;
+        int keyCode = -1;
+        for (String part : chord.split("\\+")) {
+            String name = part.trim().toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "SHIFT":
+                    modifiers |= MOD_SHIFT;
+                    break;
+                case "CTRL":
+                case "CONTROL":
+                    modifiers |= MOD_CTRL;
+                    break;
+                case "ALT":
+                    modifiers |= MOD_ALT;
+                    break;
+                case "META":
+                case "WIN":
+                case "CMD":
+                    modifiers |= MOD_META;
+                    break;
+                default:
+                    Integer code = KEY_CODES.get(name);
+                    if (code == null || keyCode != -1) {
+                        return -1;
+                    }
+                    keyCode = code;
+            }
+        }
+        return keyCode < 0 ? -1 : pack(keyCode, modifiers);
+    }
+
+    private static int pack(int keyCode, int modifiers) {
+        return (keyCode << 4) | modifiers;
+    }
+
+    private static int canonicalModifiers(int nativeModifiers) {
+        int modifiers = 0;
+        if ((nativeModifiers & NativeInputEvent.SHIFT_MASK) != 0) {
+            modifiers |= MOD_SHIFT;
+        }
+        if ((nativeModifiers & NativeInputEvent.CTRL_MASK) != 0) {
+            modifiers |= MOD_CTRL;
+        }
+        if ((nativeModifiers & NativeInputEvent.ALT_MASK) != 0) {
+            modifiers |= MOD_ALT;
+        }
+        if ((nativeModifiers & NativeInputEvent.META_MASK) != 0) {
+            modifiers |= MOD_META;
+        }
+        return modifiers;
+    }
+
+    // Maps key names (F9, N, SPACE, ...) to their VC_ codes
+    private static Map<String, Integer> readKeyCodes() {
+        Map<String, Integer> codes = new HashMap<>();
+        for (Field field : NativeKeyEvent.class.getFields()) {
+            if (field.getName().startsWith("VC_") && field.getType() == int.class
+                    && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    codes.put(field.getName().substring(3), field.getInt(null));
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return codes;
+    }
+
+    // Called on the native hook thread for every key press on the system
+    @Override
+    public void nativeKeyPressed(NativeKeyEvent nativeKeyEvent) {
+        Bindings table = bindings;
+        if (table.size == 0) {
+            return;
+        }
+        int slot = table.find(pack(nativeKeyEvent.getKeyCode(), canonicalModifiers(nativeKeyEvent.getModifiers())));
+        if (slot < 0 || table.held[slot]) {
+            return;
+        }
+        table.held[slot] = true;
+        long now = System.nanoTime();
+        if (now - table.lastFired[slot] < DEBOUNCE_NANOS) {
+            return;
+        }
+        table.lastFired[slot] = now;
+        SwingUtilities.invokeLater(table.actions[slot]);
+    }
+
+    @Override
+    public void nativeKeyReleased(NativeKeyEvent nativeKeyEvent) {
+        Bindings table = bindings;
+        if (table.size == 0) {
+            return;
+        }
+        // Releasing the key re-arms every chord on it, whatever modifiers are still down
+        int keyCode = nativeKeyEvent.getKeyCode();
+        for (int modifiers = 0; modifiers < 16; modifiers++) {
+            int slot = table.find(pack(keyCode, modifiers));
+            if (slot >= 0) {
+                table.held[slot] = false;
+            }
+        }
+    }
+
+    /**
+     *  Bindings
+     *
+     *  Open addressing table from packed chord to action. Built once per
+     *  configuration change and only read afterwards, except for the per-slot
+     *  repeat state which is touched by the hook thread alone.
+     */
+    private static final class Bindings {
+        private static final int EMPTY = -1;
+
+        final int[] keys;
+        final Runnable[] actions;
+        final boolean[] held;
+        final long[] lastFired;
+        final int mask;
+        int size;
+
+        Bindings(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 4) - 1) << 1;
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            actions = new Runnable[capacity];
+            held = new boolean[capacity];
+            lastFired = new long[capacity];
+            Arrays.fill(lastFired, Long.MIN_VALUE / 2);
+            mask = capacity - 1;
+        }
+
+        void put(int key, Runnable action) {
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = key;
+            actions[slot] = action;
+        }
+
+        int find(int key) {
+            int slot = mix(key) & mask;
+            while (true) {
+                int current = keys[slot];
+                if (current == key) {
+                    return slot;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
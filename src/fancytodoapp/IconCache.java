@@ -0,0 +1,213 @@
+package fancytodoapp;
+
+import org.imgscalr.Scalr;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.awt.image.MultiResolutionImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ *
+ *  IconCache
+ *
+ *  Checkbox icons shared by every tab: the base icons, read and scaled once
+ *  per size, and their tinted variants per base icon and color. A theme
+ *  change only changes which base icon and color a tab asks for, so tints
+ *  made for an earlier theme are still there when it comes back. Tints are
+ *  bounded, the least recently used go first.
+ *
+ *  Icons are multi-resolution: one raster per common scale factor and per
+ *  scale of the attached screens, all at the same logical size. Painting on
+ *  any monitor picks the matching raster, so moving the window between
+ *  screens never resamples. The rasters are made once, on the I/O executor
+ *  by preload() at startup.
+ *
+ *  Tints are made on the I/O executor too: preloadTints() makes those of
+ *  the colors a tab is about to paint in, and tinted() only looks them up.
+ *  A tint asked for before it is made is started in the background, and
+ *  the caller hears when it is ready, so painting never tints a raster.
+ *
+ */
+final class IconCache {
+
+    private static final int MAX_TINTED = 256;
+    private static final double[] COMMON_SCALES = {1.0, 1.25, 1.5, 1.75, 2.0, 2.5, 3.0};
+
+    // Filled from any thread by preload, hence the futures
+    private static final Map<String, CompletableFuture<ImageIcon>> SCALED = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private static final Map<TintKey, CompletableFuture<ImageIcon>> TINTED = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TintKey, CompletableFuture<ImageIcon>> eldest) {
+            return size() > MAX_TINTED;
+        }
+    };
+
+    private IconCache() {
+    }
+
+    // Makes the icons' rasters in the background so the first tab finds them ready
+    static void preload(int size, URL... iconURLs) {
+        for (URL iconURL : iconURLs) {
+            if (iconURL != null) {
+                SCALED.computeIfAbsent(cacheKey(iconURL, size),
+                        key -> CompletableFuture.supplyAsync(() -> createScaled(iconURL, size), IoExecutor.executor()));
+            }
+        }
+    }
+
+    // The icon at size x size logical pixels, a gray placeholder if it cannot be read
+    static ImageIcon scaled(URL iconURL, int size) {
+        CompletableFuture<ImageIcon> icon = SCALED.computeIfAbsent(cacheKey(iconURL, size),
+                key -> CompletableFuture.completedFuture(createScaled(iconURL, size)));
+        return icon.join(); // Waits for a preload still running rather than doing its work twice
+    }
+
+    private static String cacheKey(URL iconURL, int size) {
+        return iconURL + "@" + size;
+    }
+
+    private static ImageIcon createScaled(URL iconURL, int size) {
+        double[] scales = scales();
+        Image[] variants = new Image[scales.length];
+        try {
+            BufferedImage originalImage = ImageIO.read(iconURL);
+            for (int i = 0; i < scales.length; i++) {
+                int pixels = (int) Math.round(size * scales[i]);
+                // Use Scalr to perform more high-quality scaling than java alone
+                variants[i] = Scalr.resize(originalImage, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC,
+                        pixels, pixels, Scalr.OP_ANTIALIAS);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            for (int i = 0; i < scales.length; i++) {
+                int pixels = (int) Math.round(size * scales[i]);
+                variants[i] = createDefaultImage(pixels, pixels);
+            }
+        }
+        return new ImageIcon(new BaseMultiResolutionImage(variants));
+    }
+
+    // Common scales plus those of the attached screens, ascending; the first is 1, the logical size
+    private static double[] scales() {
+        TreeSet<Double> scales = new TreeSet<>();
+        for (double scale : COMMON_SCALES) {
+            scales.add(scale);
+        }
+        for (double scale : FancyToDoApp.DPIUtils.getScaleFactors()) {
+            scales.add(Math.round(scale * 100) / 100.0);
+        }
+        return scales.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    // Tints the base icons in each color in the background, so painting finds them ready. Any thread
+    static void preloadTints(Collection<Color> colors, ImageIcon... bases) {
+        for (Color color : colors) {
+            for (ImageIcon base : bases) {
+                tintLater(base, color);
+            }
+        }
+    }
+
+    /**
+     * The base icon painted over in the color, keeping its shape, if it is
+     * made. Otherwise it is made in the background and null returned;
+     * whenMade then runs on the EDT once it is ready.
+     */
+    static ImageIcon tinted(ImageIcon base, Color color, Runnable whenMade) {
+        CompletableFuture<ImageIcon> icon = tintLater(base, color);
+        if (icon.isDone() && !icon.isCompletedExceptionally()) {
+            return icon.join();
+        }
+        icon.thenRunAsync(whenMade, IoExecutor.edt());
+        return null;
+    }
+
+    private static CompletableFuture<ImageIcon> tintLater(ImageIcon base, Color color) {
+        TintKey key = new TintKey(base, color.getRGB());
+        synchronized (TINTED) {
+            return TINTED.computeIfAbsent(key,
+                    k -> CompletableFuture.supplyAsync(() -> tint(base, color), IoExecutor.executor()));
+        }
+    }
+
+    // Tints every raster of the base icon, which stays multi-resolution
+    private static ImageIcon tint(ImageIcon originalIcon, Color color) {
+        List<Image> variants = ((MultiResolutionImage) originalIcon.getImage()).getResolutionVariants();
+        Image[] tinted = new Image[variants.size()];
+        for (int i = 0; i < tinted.length; i++) {
+            Image variant = variants.get(i);
+            BufferedImage img = new BufferedImage(
+                    variant.getWidth(null),
+                    variant.getHeight(null),
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = img.createGraphics();
+
+            // Apply anti-aliasing to improve icon rendering quality
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+            g2d.drawImage(variant, 0, 0, null);
+            g2d.setComposite(AlphaComposite.SrcAtop);
+            g2d.setColor(color);
+            g2d.fillRect(0, 0, img.getWidth(), img.getHeight());
+            g2d.dispose();
+            tinted[i] = img;
+        }
+        return new ImageIcon(new BaseMultiResolutionImage(tinted));
+    }
+
+    private static BufferedImage createDefaultImage(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = img.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+
+        g2.setColor(Color.GRAY);
+        g2.fillOval(0, 0, width, height); // Example: Draw a gray circle as a placeholder
+        g2.dispose();
+        return img;
+    }
+
+    /**
+     *  TintKey
+     *
+     *  Base icon, by identity since SCALED keeps each one, and tint color.
+     */
+    private static final class TintKey {
+        private final ImageIcon base;
+        private final int rgb;
+
+        TintKey(ImageIcon base, int rgb) {
+            this.base = base;
+            this.rgb = rgb;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TintKey && ((TintKey) other).base == base && ((TintKey) other).rgb == rgb;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(base) * 31 + rgb;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package fancytodoapp;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.font.TextAttribute;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.swing.UIManager;
+/**
+ *
+ *  InlineMarkdown
+ *
+ *  The inline markdown tasks may use: **bold** (or __bold__), `code`,
+ *  [links](https://...) and bare http(s) links, and a leading "[ ]" or
+ *  "[x]" checklist box, optionally after "- ". A backslash keeps the next
+ *  character literal, and markers without a partner stay as typed. Only
+ *  http, https and mailto targets become links, since a click opens them;
+ *  a link to anything else, like file: or smb:, stays plain text as typed.
+ *
+ *  A task's text is parsed once into a Parsed: the text as shown plus a
+ *  flat array of styled runs. Parsed texts are cached by their source, so an
+ *  edit reparses only the text that changed and everything else, including
+ *  the same text in other tabs, is parsed already. EDT only.
+ *
+ */
+final class InlineMarkdown {
+
+    static final int BOLD = 1;
+    static final int CODE = 2;
+    static final int LINK = 4;
+    static final int DONE = 8; // Text after a ticked checklist box
+
+    private static final int MAX_PARSED = 8192;
+    private static final int RUN_INTS = 4; // start, end, style, link index
+    private static final char UNCHECKED_BOX = '\u2610'; // Ballot box
+    private static final char CHECKED_BOX = '\u2611'; // Ballot box with check
+
+    private static final Map<String, Parsed> PARSED = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Parsed> eldest) {
+            return size() > MAX_PARSED;
+        }
+    };
+
+    private InlineMarkdown() {
+    }
+
+    /**
+     *  Parsed
+     *
+     *  Text as shown, without markers, and its runs: each RUN_INTS ints are
+     *  the start, end, style bits and link index (-1 for none) of a run.
+     *  Only styled runs are listed.
+     */
+    static final class Parsed {
+        final String text;
+        final int[] runs;
+        final String[] links;
+        final int checkbox; // Offset of the checklist box in text, -1 for none
+
+        Parsed(String text, int[] runs, String[] links, int checkbox) {
+            this.text = text;
+            this.runs = runs;
+            this.links = links;
+            this.checkbox = checkbox;
+        }
+
+        // Link target at the offset of text, or null
+        String linkAt(int offset) {
+            for (int i = 0; i < runs.length; i += RUN_INTS) {
+                if (offset >= runs[i] && offset < runs[i + 1] && runs[i + 3] >= 0) {
+                    return links[runs[i + 3]];
+                }
+            }
+            return null;
+        }
+
+        // The text with its runs as attributes, on top of the base font
+        AttributedString attributed(Font font) {
+            AttributedString attributed = new AttributedString(text);
+            if (text.isEmpty()) {
+                return attributed;
+            }
+            attributed.addAttribute(TextAttribute.FONT, font);
+            if (checkbox >= 0 && !font.canDisplay(text.charAt(checkbox))) {
+                // Dialog falls back on the platform's fonts for the box glyph
+                attributed.addAttribute(TextAttribute.FONT, new Font(Font.DIALOG, font.getStyle(), font.getSize()),
+                        checkbox, checkbox + 1);
+            }
+            Font bold = null;
+            Font code = null;
+            for (int i = 0; i < runs.length; i += RUN_INTS) {
+                int start = runs[i];
+                int end = runs[i + 1];
+                int style = runs[i + 2];
+                // Font replaces the other font attributes, so styles are derived fonts
+                if ((style & CODE) != 0) {
+                    if (code == null) {
+                        code = new Font(Font.MONOSPACED, font.getStyle(), font.getSize());
+                    }
+                    attributed.addAttribute(TextAttribute.FONT, code, start, end);
+                    attributed.addAttribute(TextAttribute.BACKGROUND, new Color(128, 128, 128, 64), start, end);
+                } else if ((style & BOLD) != 0) {
+                    if (bold == null) {
+                        bold = font.deriveFont(font.getStyle() | Font.BOLD);
+                    }
+                    attributed.addAttribute(TextAttribute.FONT, bold, start, end);
+                }
+                if ((style & LINK) != 0) {
+                    attributed.addAttribute(TextAttribute.FOREGROUND, linkColor(), start, end);
+                    attributed.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON, start, end);
+                }
+                if ((style & DONE) != 0) {
+                    attributed.addAttribute(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON, start, end);
+                }
+            }
+            return attributed;
+        }
+    }
+
+    private static Color linkColor() {
+        Color color = UIManager.getColor("Component.linkColor");
+        return color != null ? color : new Color(0x2675BF);
+    }
+
+    // True for the link targets a click may open
+    static boolean isOpenableLink(String url) {
+        String lower = url.trim().toLowerCase(Locale.ROOT);
+        return lower.startsWith("http://") || lower.startsWith("https://") || lower.startsWith("mailto:");
+    }
+
+    // The parsed text, from the cache unless this text was never seen
+    static Parsed parse(String source) {
+        if (source == null) {
+            source = "";
+        }
+        Parsed parsed = PARSED.get(source);
+        if (parsed == null) {
+            parsed = new Parser(source).parse();
+            PARSED.put(source, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     *  Parser
+     *
+     *  One left to right pass over the source.
+     */
+    private static final class Parser {
+        private final String source;
+        private final StringBuilder text;
+        private int[] runs = new int[4 * RUN_INTS];
+        private int runCount;
+        private final List<String> links = new ArrayList<>();
+        private int checkbox = -1;
+        private int style; // Bits in effect at the current position
+        private int runStart;
+        private int link = -1;
+
+        Parser(String source) {
+            this.source = source;
+            this.text = new StringBuilder(source.length());
+        }
+
+        Parsed parse() {
+            int i = parseChecklist();
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (c == '\\' && i + 1 < source.length() && isMarker(source.charAt(i + 1))) {
+                    text.append(source.charAt(i + 1));
+                    i += 2;
+                } else if (c == '`' && source.indexOf('`', i + 1) > i + 1) {
+                    int close = source.indexOf('`', i + 1);
+                    setStyle(style | CODE);
+                    text.append(source, i + 1, close); // Literal inside
+                    setStyle(style & ~CODE);
+                    i = close + 1;
+                } else if ((source.startsWith("**", i) || source.startsWith("__", i))
+                        && ((style & BOLD) != 0 || source.indexOf(source.substring(i, i + 2), i + 2) > i + 2)) {
+                    setStyle(style ^ BOLD); // Opens only with a partner ahead
+                    i += 2;
+                } else if (c == '[') {
+                    i = parseLink(i);
+                } else if (source.startsWith("http://", i) || source.startsWith("https://", i)) {
+                    int end = i;
+                    while (end < source.length() && !Character.isWhitespace(source.charAt(end))) {
+                        end++;
+                    }
+                    while (end > i && ".,;:!?)".indexOf(source.charAt(end - 1)) >= 0) {
+                        end--; // Sentence punctuation is not part of the link
+                    }
+                    String url = source.substring(i, end);
+                    startLink(url);
+                    text.append(url);
+                    endLink();
+                    i = end;
+                } else {
+                    text.append(c);
+                    i++;
+                }
+            }
+            setStyle(0);
+            return new Parsed(text.toString(), Arrays.copyOf(runs, runCount * RUN_INTS),
+                    links.toArray(new String[0]), checkbox);
+        }
+
+        // "[ ] ", "[x] " or either after "- " or "* " at the very start; returns where the rest begins
+        private int parseChecklist() {
+            int i = source.startsWith("- ") || source.startsWith("* ") ? 2 : 0;
+            if (source.length() < i + 3 || source.charAt(i) != '[' || source.charAt(i + 2) != ']') {
+                return 0;
+            }
+            char mark = source.charAt(i + 1);
+            if (mark != ' ' && mark != 'x' && mark != 'X') {
+                return 0;
+            }
+            checkbox = 0;
+            text.append(mark == ' ' ? UNCHECKED_BOX : CHECKED_BOX);
+            runStart = text.length();
+            if (mark != ' ') {
+                style = DONE;
+            }
+            return i + 3;
+        }
+
+        // "[text](url)" at i; returns the index after it, or appends the '[' literally
+        private int parseLink(int i) {
+            int close = source.indexOf(']', i + 1);
+            if (close > i + 1 && source.startsWith("(", close + 1)) {
+                int end = source.indexOf(')', close + 2);
+                if (end > close + 2 && !isOpenableLink(source.substring(close + 2, end))) {
+                    text.append(source, i, end + 1); // Not a link, shown as typed
+                    return end + 1;
+                }
+                if (end > close + 2) {
+                    startLink(source.substring(close + 2, end).trim());
+                    text.append(source, i + 1, close);
+                    endLink();
+                    return end + 1;
+                }
+            }
+            text.append('[');
+            return i + 1;
+        }
+
+        private void startLink(String url) {
+            links.add(url);
+            link = links.size() - 1;
+            setStyle(style | LINK);
+        }
+
+        private void endLink() {
+            setStyle(style & ~LINK);
+            link = -1;
+        }
+
+        // Closes the run so far if the style changes
+        private void setStyle(int newStyle) {
+            if (newStyle == style) {
+                return;
+            }
+            int end = text.length();
+            if (style != 0 && end > runStart) {
+                if ((runCount + 1) * RUN_INTS > runs.length) {
+                    runs = Arrays.copyOf(runs, runs.length * 2);
+                }
+                int at = runCount++ * RUN_INTS;
+                runs[at] = runStart;
+                runs[at + 1] = end;
+                runs[at + 2] = style;
+                runs[at + 3] = (style & LINK) != 0 ? link : -1;
+            }
+            style = newStyle;
+            runStart = end;
+        }
+
+        private static boolean isMarker(char c) {
+            return c == '*' || c == '_' || c == '`' || c == '[' || c == ']' || c == '\\';
+        }
+    }
+}
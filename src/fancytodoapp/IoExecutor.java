@@ -0,0 +1,161 @@
+package fancytodoapp;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+/**
+ *
+ *  IoExecutor
+ *
+ *  Shared executor for blocking file I/O. Work submitted here never runs on the
+ *  EDT; results are handed back to Swing with the edt() executor. Uses virtual
+ *  threads when the running JDK provides them, otherwise daemon platform threads.
+ *
+ */
+public final class IoExecutor {
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final Executor EDT = SwingUtilities::invokeLater;
+
+    // Futures for writes that have not finished yet, awaited on exit
+    private static final Set<CompletableFuture<?>> PENDING = ConcurrentHashMap.newKeySet();
+
+    private IoExecutor() {
+    }
+
+    // A unit of blocking I/O work that may fail
+    @FunctionalInterface
+    public interface IoTask {
+        void run() throws Exception;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads are still a preview API on the JDK 20 target, so look them up reflectively
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Fall through to platform threads
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fancytodo-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    // Executor which runs callbacks on the Event Dispatch Thread
+    public static Executor edt() {
+        return EDT;
+    }
+
+    public static <T> CompletableFuture<T> supply(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    public static CompletableFuture<Void> run(IoTask task) {
+        return track(CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR));
+    }
+
+    // Unwraps the CompletionException layers added by CompletableFuture
+    public static Throwable rootCause(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        PENDING.add(future);
+        future.whenComplete((result, error) -> PENDING.remove(future));
+        return future;
+    }
+
+    /**
+     * Waits for outstanding writes to finish. Called before the JVM exits so
+     * the last snapshot of every tab reaches disk.
+     *
+     * @return true if every write finished within the timeout
+     */
+    public static boolean awaitPending(long timeoutMillis) {
+        CompletableFuture<?>[] pending = PENDING.toArray(new CompletableFuture<?>[0]);
+        if (pending.length == 0) {
+            return true;
+        }
+        try {
+            CompletableFuture.allOf(pending).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return true; // Failures were already reported by the callers
+        }
+    }
+
+    /**
+     *  WriteLane
+     *
+     *  Serializes writes to one target. A write that is still queued is replaced
+     *  by a newer one, so a burst of edits costs a single write of the latest
+     *  snapshot and an older snapshot can never land after a newer one.
+     */
+    public static final class WriteLane {
+        private IoTask latest;
+        private CompletableFuture<Void> queued;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        public synchronized CompletableFuture<Void> submit(IoTask write) {
+            latest = write;
+            if (queued == null) {
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                queued = result;
+                tail = tail.thenRunAsync(() -> drain(result), EXECUTOR);
+                track(result);
+            }
+            return queued;
+        }
+
+        private void drain(CompletableFuture<Void> result) {
+            IoTask write;
+            synchronized (this) {
+                write = latest;
+                latest = null;
+                queued = null;
+            }
+            try {
+                write.run();
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+/**
+ *
+ *  JsonStorageProvider
+ *
+ *  The original layout in fancytodo_data: <tab id>.json per tab, tabs.json and
+ *  theme_color.dat. Files can be edited or synced by other programs, which is
+ *  why only this layout is watched for outside changes.
+ *
+ */
+public class JsonStorageProvider implements StorageProvider {
+
+    private static final Path DATA_DIR = Paths.get("fancytodo_data");
+
+    private final TabRegistry tabRegistry = new TabRegistry();
+    private final ColorPersistenceHandler colorPersistenceHandler = new ColorPersistenceHandler();
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public TaskStorage taskStorage(String tabId) {
+        return new GsonPersistenceHandler(tabId);
+    }
+
+    @Override
+    public TabStorage tabStorage() {
+        return tabRegistry;
+    }
+
+    @Override
+    public ColorStorage colorStorage() {
+        return colorPersistenceHandler;
+    }
+
+    @Override
+    public int collectOrphans(Set<String> liveTabIds, long idleBefore) throws IOException {
+        Set<String> keep = new HashSet<>(liveTabIds);
+        keep.add("tabs"); // tabs.json sits among the tab files
+        return OrphanCollector.collectFiles(DATA_DIR, ".json", keep, idleBefore);
+    }
+}
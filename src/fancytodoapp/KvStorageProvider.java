@@ -0,0 +1,530 @@
+package fancytodoapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+/**
+ *
+ *  KvStorageProvider
+ *
+ *  Keeps everything in one KvStore file, fancytodo_data/fancytodo.kv. A tab's
+ *  tasks are split into pages of TaskSnapshot.CHUNK_SIZE tasks stored under
+ *  "page:<n>:<tab id>" and described by "meta:<tab id>" (version, size and a CRC
+ *  per page). Saving an edit therefore writes only the pages that changed,
+ *  and pages backed by a snapshot chunk the last save already wrote are not
+ *  even encoded again. The tab list and theme color live under "tabs" and
+ *  "color". The JSON files are imported the first time the store is opened.
+ *  Tab lists written before tab ids keep working: their tabs' pages are
+ *  keyed by name, which becomes the tab's id.
+ *
+ */
+public class KvStorageProvider implements StorageProvider {
+
+    private static final Path STORE_FILE = Paths.get("fancytodo_data", "fancytodo.kv");
+    private static final String TABS_KEY = "tabs";
+    private static final String COLOR_KEY = "color";
+    private static final String META_PREFIX = "meta:";
+    private static final int PAGE_SIZE = TaskSnapshot.CHUNK_SIZE;
+    private static final int FLAG_STATUS = 1;
+    private static final int FLAG_TEXT = 2;
+    private static final int FLAG_COMPLETED_AT = 4;
+    private static final int TABS_WITH_IDS = -2; // In place of the count, which used to come first
+
+    private final KvTabStorage tabStorage = new KvTabStorage();
+    private final KvColorStorage colorStorage = new KvColorStorage();
+    private KvStore store;
+    private volatile Set<String> suspectedOrphans = Set.of(); // Unlisted at the last collectOrphans
+
+    @Override
+    public String name() {
+        return "kv";
+    }
+
+    @Override
+    public TaskStorage taskStorage(String tabId) {
+        return new KvTaskStorage(tabId);
+    }
+
+    @Override
+    public TabStorage tabStorage() {
+        return tabStorage;
+    }
+
+    @Override
+    public ColorStorage colorStorage() {
+        return colorStorage;
+    }
+
+    // Keys carry no time, so a tab is removed once two calls in a row find it unlisted
+    @Override
+    public int collectOrphans(Set<String> liveTabIds, long idleBefore) throws IOException {
+        Set<String> suspected = suspectedOrphans;
+        Set<String> orphans = new HashSet<>();
+        int removed = store().write(transaction -> {
+            VersionedFile.Versioned<List<TabInfo>> tabs = decodeTabs(transaction.get(TABS_KEY));
+            if (tabs.value == null) {
+                return 0;
+            }
+            Set<String> live = new HashSet<>(liveTabIds);
+            for (TabInfo tab : tabs.value) {
+                live.add(tab.getId().toLowerCase(Locale.ROOT));
+            }
+            int count = 0;
+            for (String key : transaction.keys(META_PREFIX)) {
+                String tabId = key.substring(META_PREFIX.length());
+                if (live.contains(tabId.toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                if (!suspected.contains(tabId)) {
+                    orphans.add(tabId);
+                    continue;
+                }
+                Meta meta = Meta.decode(transaction.get(key));
+                for (int page = 0; page < meta.pageCrcs.length; page++) {
+                    transaction.delete(pageKey(page, tabId));
+                }
+                transaction.delete(key);
+                count++;
+            }
+            return count;
+        });
+        suspectedOrphans = orphans;
+        return removed;
+    }
+
+    // Opens the store on first use, importing the JSON files while it is still empty
+    private synchronized KvStore store() throws IOException {
+        if (store == null) {
+            KvStore opened = new KvStore(STORE_FILE);
+            try {
+                opened.write(transaction -> {
+                    if (transaction.get(TABS_KEY) == null) {
+                        importJson(transaction);
+                    }
+                    return null;
+                });
+            } catch (IOException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+            store = opened;
+        }
+        return store;
+    }
+
+    private static void importJson(KvStore.Transaction transaction) throws IOException {
+        JsonStorageProvider json = new JsonStorageProvider();
+        List<TabInfo> tabs = json.tabStorage().load();
+        if (tabs == null) {
+            return; // Fresh install
+        }
+        for (TabInfo tab : tabs) {
+            List<Task> tasks = json.taskStorage(tab.getId()).readTasks();
+            if (tasks != null) {
+                writePages(transaction, tab.getId(), null, tasks, null);
+            }
+        }
+        Integer colorRGB = json.colorStorage().readColorRGB();
+        if (colorRGB != null) {
+            transaction.put(COLOR_KEY, encodeInt(colorRGB));
+        }
+        transaction.put(TABS_KEY, encodeTabs(tabs, 1));
+        System.err.println("Imported " + tabs.size() + " tabs into " + STORE_FILE);
+    }
+
+    private static String metaKey(String tabId) {
+        return META_PREFIX + tabId;
+    }
+
+    private static String pageKey(int page, String tabId) {
+        return "page:" + page + ":" + tabId;
+    }
+
+    // Writes the pages whose content differs from what is stored and returns the new meta
+    private static Meta writePages(KvStore.Transaction transaction, String tabId, Meta old,
+                                   List<Task> tasks, Task[][] savedChunks) throws IOException {
+        int pageCount = (tasks.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        int[] pageCrcs = new int[pageCount];
+        Task[][] chunks = tasks instanceof TaskSnapshot ? ((TaskSnapshot) tasks).chunks() : null;
+        for (int page = 0; page < pageCount; page++) {
+            boolean stored = old != null && page < old.pageCrcs.length;
+            if (stored && chunks != null && savedChunks != null && page < savedChunks.length
+                    && chunks[page] == savedChunks[page]) {
+                pageCrcs[page] = old.pageCrcs[page]; // Same chunk as the last save, so same bytes
+                continue;
+            }
+            int from = page * PAGE_SIZE;
+            byte[] bytes = encodePage(tasks.subList(from, Math.min(from + PAGE_SIZE, tasks.size())));
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            pageCrcs[page] = (int) crc.getValue();
+            String key = pageKey(page, tabId);
+            // The CRC only filters, a match is confirmed against the stored bytes
+            if (!stored || old.pageCrcs[page] != pageCrcs[page] || !Arrays.equals(bytes, transaction.get(key))) {
+                transaction.put(key, bytes);
+            }
+        }
+        if (old != null) {
+            for (int page = pageCount; page < old.pageCrcs.length; page++) {
+                transaction.delete(pageKey(page, tabId));
+            }
+        }
+        Meta meta = new Meta(old != null ? old.version + 1 : 1, tasks.size(), pageCrcs);
+        transaction.put(metaKey(tabId), meta.encode());
+        return meta;
+    }
+
+    private static void readPages(KvStore.Transaction transaction, String tabId, Meta meta,
+                                  Consumer<Task> visitor) throws IOException {
+        for (int page = 0; page < meta.pageCrcs.length; page++) {
+            byte[] bytes = transaction.get(pageKey(page, tabId));
+            if (bytes == null) {
+                throw new IOException("Page " + page + " of tab '" + tabId + "' is missing");
+            }
+            decodePage(bytes, visitor);
+        }
+    }
+
+    private static byte[] encodePage(List<Task> tasks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(tasks.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(tasks.size());
+        for (Task task : tasks) {
+            out.writeByte((task.status ? FLAG_STATUS : 0) | (task.task != null ? FLAG_TEXT : 0)
+                    | (task.completedAt != 0 ? FLAG_COMPLETED_AT : 0));
+            out.writeInt(task.checkboxColorRGB);
+            if (task.task != null) {
+                byte[] text = task.task.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+            }
+            if (task.completedAt != 0) {
+                out.writeLong(task.completedAt);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void decodePage(byte[] bytes, Consumer<Task> visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int flags = in.readByte();
+            int colorRGB = in.readInt();
+            String text = null;
+            if ((flags & FLAG_TEXT) != 0) {
+                byte[] textBytes = new byte[in.readInt()];
+                in.readFully(textBytes);
+                text = new String(textBytes, StandardCharsets.UTF_8);
+            }
+            Task task = new Task((flags & FLAG_STATUS) != 0, text);
+            task.checkboxColorRGB = colorRGB;
+            if ((flags & FLAG_COMPLETED_AT) != 0) {
+                task.completedAt = in.readLong();
+            }
+            visitor.accept(task);
+        }
+    }
+
+    private static byte[] encodeTabs(List<TabInfo> tabs, long version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(version);
+        out.writeInt(TABS_WITH_IDS);
+        out.writeInt(tabs.size());
+        for (TabInfo tab : tabs) {
+            out.writeUTF(tab.getId());
+            out.writeUTF(tab.getName());
+            out.writeInt(tab.getColorRGB());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static VersionedFile.Versioned<List<TabInfo>> decodeTabs(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return new VersionedFile.Versioned<>(null, VersionedFile.UNKNOWN_VERSION);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long version = in.readLong();
+        int count = in.readInt();
+        boolean withIds = count == TABS_WITH_IDS; // Otherwise the count of a list from before ids
+        if (withIds) {
+            count = in.readInt();
+        }
+        List<TabInfo> tabs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = withIds ? in.readUTF() : null;
+            String name = in.readUTF();
+            tabs.add(new TabInfo(id != null ? id : name, name, in.readInt())); // Pages are already keyed by the name
+        }
+        return new VersionedFile.Versioned<>(tabs.isEmpty() ? null : tabs, version);
+    }
+
+    private static byte[] encodeInt(int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static int decodeInt(byte[] bytes) {
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    /**
+     *  Meta
+     *
+     *  Version, size and page CRCs of one tab. The version counts saves and is
+     *  what a save compares to notice another process saved in between.
+     */
+    private static final class Meta {
+        final long version;
+        final int size;
+        final int[] pageCrcs;
+
+        Meta(long version, int size, int[] pageCrcs) {
+            this.version = version;
+            this.size = size;
+            this.pageCrcs = pageCrcs;
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + pageCrcs.length * 4);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(version);
+            out.writeInt(size);
+            out.writeInt(pageCrcs.length);
+            for (int crc : pageCrcs) {
+                out.writeInt(crc);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        // Returns null when the tab has nothing saved
+        static Meta decode(byte[] bytes) throws IOException {
+            if (bytes == null) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            long version = in.readLong();
+            int size = in.readInt();
+            int[] pageCrcs = new int[in.readInt()];
+            for (int i = 0; i < pageCrcs.length; i++) {
+                pageCrcs[i] = in.readInt();
+            }
+            return new Meta(version, size, pageCrcs);
+        }
+    }
+
+    /**
+     *  KvTaskStorage
+     *
+     *  The pages of one tab. Like the JSON handler it remembers what it last
+     *  read or wrote so a save can merge with one made by another process.
+     */
+    private final class KvTaskStorage implements TaskStorage {
+        private final String tabId;
+        private final IoExecutor.WriteLane writeLane = new IoExecutor.WriteLane();
+        private volatile VersionedFile.Versioned<List<Task>> base = new VersionedFile.Versioned<>(null, VersionedFile.UNKNOWN_VERSION);
+        private Task[][] savedChunks; // Chunks of the snapshot last saved, at savedVersion
+        private long savedVersion = VersionedFile.UNKNOWN_VERSION;
+
+        KvTaskStorage(String tabId) {
+            this.tabId = tabId;
+        }
+
+        @Override
+        public IoExecutor.WriteLane writeLane() {
+            return writeLane;
+        }
+
+        @Override
+        public List<Task> readTasks() throws IOException {
+            VersionedFile.Versioned<List<Task>> read = store().read(transaction -> {
+                Meta meta = Meta.decode(transaction.get(metaKey(tabId)));
+                if (meta == null) {
+                    return new VersionedFile.Versioned<List<Task>>(null, VersionedFile.UNKNOWN_VERSION);
+                }
+                List<Task> tasks = new ArrayList<>(meta.size);
+                readPages(transaction, tabId, meta, tasks::add);
+                return new VersionedFile.Versioned<>(tasks, meta.version);
+            });
+            // The caller may edit the tasks it gets, so the base keeps copies
+            base = new VersionedFile.Versioned<>(read.value != null ? GsonPersistenceHandler.copyOf(read.value) : null, read.version);
+            return read.value;
+        }
+
+        @Override
+        public synchronized void writeTasks(List<Task> tasks) throws IOException {
+            VersionedFile.Versioned<List<Task>> from = base;
+            List<List<Task>> written = new ArrayList<>(1);
+            long version = store().write(transaction -> {
+                Meta meta = Meta.decode(transaction.get(metaKey(tabId)));
+                List<Task> content = tasks;
+                if (meta != null && meta.version != from.version) {
+                    // Someone else saved since we last looked, fold their changes in
+                    List<Task> theirs = new ArrayList<>(meta.size);
+                    readPages(transaction, tabId, meta, theirs::add);
+                    List<Task> merged = ThreeWayMerge.merge(from.value, tasks, theirs,
+                            task -> task.task == null ? "" : task.task, GsonPersistenceHandler::sameTask);
+                    if (!GsonPersistenceHandler.sameTasks(merged, tasks)) {
+                        content = merged;
+                    }
+                }
+                boolean unchangedSinceSave = meta != null && meta.version == savedVersion;
+                Meta updated = writePages(transaction, tabId, meta, content,
+                        content == tasks && unchangedSinceSave ? savedChunks : null);
+                written.add(content);
+                return updated.version;
+            });
+            // A snapshot never changes, so it can serve as the base without a copy
+            List<Task> kept = tasks instanceof TaskSnapshot ? tasks : GsonPersistenceHandler.copyOf(tasks);
+            if (written.get(0) == tasks) {
+                base = new VersionedFile.Versioned<>(kept, version);
+                savedChunks = tasks instanceof TaskSnapshot ? ((TaskSnapshot) tasks).chunks() : null;
+                savedVersion = version;
+            } else {
+                // The store now holds changes our tasks lack, so the next save merges again
+                base = new VersionedFile.Versioned<>(kept, VersionedFile.UNKNOWN_VERSION);
+                savedChunks = null;
+                savedVersion = VersionedFile.UNKNOWN_VERSION;
+            }
+        }
+
+        @Override
+        public void acceptExternal(List<Task> tasks, long version) {
+            base = new VersionedFile.Versioned<>(GsonPersistenceHandler.copyOf(tasks), version);
+        }
+
+        // Decodes one page at a time, so only a page of tasks is built at once
+        @Override
+        public void streamTasks(Consumer<Task> visitor) throws IOException {
+            store().read(transaction -> {
+                Meta meta = Meta.decode(transaction.get(metaKey(tabId)));
+                if (meta != null) {
+                    readPages(transaction, tabId, meta, visitor);
+                }
+                return null;
+            });
+        }
+
+        // Runs as one transaction, so it cannot interleave with a save of another process
+        @Override
+        public int rewriteTasks(UnaryOperator<Task> mapper, Iterator<Task> appended) throws IOException {
+            return store().write(transaction -> {
+                Meta meta = Meta.decode(transaction.get(metaKey(tabId)));
+                List<Task> tasks = new ArrayList<>(meta != null ? meta.size : 0);
+                if (meta != null) {
+                    readPages(transaction, tabId, meta, task -> {
+                        Task mapped = mapper.apply(task);
+                        if (mapped != null) {
+                            tasks.add(mapped);
+                        }
+                    });
+                }
+                appended.forEachRemaining(tasks::add);
+                writePages(transaction, tabId, meta, tasks, null);
+                return tasks.size();
+            });
+        }
+    }
+
+    /**
+     *  KvTabStorage
+     *
+     *  The tab list, merged with another process's save the same way
+     *  TabRegistry merges tabs.json.
+     */
+    private final class KvTabStorage implements TabStorage {
+        private volatile VersionedFile.Versioned<List<TabInfo>> base = new VersionedFile.Versioned<>(null, VersionedFile.UNKNOWN_VERSION);
+
+        @Override
+        public List<TabInfo> load() {
+            try {
+                VersionedFile.Versioned<List<TabInfo>> read = store().read(transaction -> decodeTabs(transaction.get(TABS_KEY)));
+                base = read;
+                return read.value;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        public List<TabInfo> peek() {
+            try {
+                return store().read(transaction -> decodeTabs(transaction.get(TABS_KEY))).value;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        public void save(List<TabInfo> tabs) throws IOException {
+            VersionedFile.Versioned<List<TabInfo>> from = base;
+            List<List<TabInfo>> written = new ArrayList<>(1);
+            long version = store().write(transaction -> {
+                VersionedFile.Versioned<List<TabInfo>> current = decodeTabs(transaction.get(TABS_KEY));
+                List<TabInfo> content = tabs;
+                if (current.value != null && current.version != from.version) {
+                    List<TabInfo> merged = ThreeWayMerge.merge(from.value, tabs, current.value,
+                            TabInfo::getId, TabRegistry::sameTab);
+                    if (merged.size() != tabs.size() || !TabRegistry.allSame(merged, tabs)) {
+                        content = merged;
+                    }
+                }
+                long next = Math.max(current.version, 0) + 1;
+                transaction.put(TABS_KEY, encodeTabs(content, next));
+                written.add(content);
+                return next;
+            });
+            // After a merge the store holds tabs our list lacks, so the next save merges again
+            boolean merged = written.get(0) != tabs;
+            base = new VersionedFile.Versioned<>(new ArrayList<>(tabs), merged ? VersionedFile.UNKNOWN_VERSION : version);
+        }
+    }
+
+    /**
+     *  KvColorStorage
+     *
+     *  The theme color, a single int.
+     */
+    private final class KvColorStorage implements ColorStorage {
+        private final IoExecutor.WriteLane writeLane = new IoExecutor.WriteLane();
+
+        @Override
+        public IoExecutor.WriteLane writeLane() {
+            return writeLane;
+        }
+
+        @Override
+        public Integer readColorRGB() throws IOException {
+            byte[] bytes = store().read(transaction -> transaction.get(COLOR_KEY));
+            return bytes != null ? decodeInt(bytes) : null;
+        }
+
+        @Override
+        public void writeColorRGB(int rgb) throws IOException {
+            store().write(transaction -> {
+                transaction.put(COLOR_KEY, encodeInt(rgb));
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package fancytodoapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+/**
+ *
+ *  KvStore
+ *
+ *  Embedded single-file key-value store behind the "kv" storage. Each commit
+ *  is appended as one record (length, CRC32, then its puts and deletes), so a
+ *  transaction is either wholly in the file or ignored. A torn tail left by a
+ *  crash, a last record that runs past the end of the file or fails its
+ *  check, is kept under fancytodo_data/quarantine and cut off by the next
+ *  writer. A damaged record with more after it is not a crash but damage:
+ *  it is skipped, by its length when that leads to a whole record and else
+ *  by searching for the next one, so reads still see every newer value. A
+ *  copy of the damaged file goes to quarantine, the user is told, and the
+ *  next writer rebuilds the file from the records that could be read. An
+ *  in-memory index maps every key to where its latest value sits and a
+ *  byte-bounded LRU cache keeps hot values, so a point read costs one
+ *  positioned read at most.
+ *
+ *  Other processes share the file through the same sidecar lock as
+ *  VersionedFile and pick up records they have not seen at the start of every
+ *  transaction. Superseded values are reclaimed by compacting in place once
+ *  they outweigh the live ones; the compacted copy is kept next to the file
+ *  until it has been copied back, so a crash midway is redone on next use.
+ *
+ */
+final class KvStore {
+
+    private static final int MAGIC = 0x46544b56; // "FTKV"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 16; // Magic, format, generation
+    private static final int RECORD_HEADER_SIZE = 8; // Payload length, CRC32
+    private static final byte OP_DELETE = 0;
+    private static final byte OP_PUT = 1;
+    private static final long LOCK_TIMEOUT_MILLIS = 5000;
+    private static final long CACHE_BYTES = 8L << 20;
+    private static final long COMPACT_MIN_GARBAGE = 1L << 20;
+    private static final long TORN = -1; // From scan: the last record is not whole
+    private static final long DAMAGED = -2; // From scan: a record with more after it failed its check
+
+    /**
+     *  Transaction
+     *
+     *  Reads see the committed state plus the transaction's own changes.
+     *  Returned arrays are shared with the cache and must not be modified.
+     */
+    interface Transaction {
+        // Returns null when the key is absent
+        byte[] get(String key) throws IOException;
+
+        // The value must not be modified afterwards
+        void put(String key, byte[] value);
+
+        void delete(String key);
+
+        // Keys starting with the prefix, in no particular order
+        List<String> keys(String prefix);
+    }
+
+    interface Work<T> {
+        T run(Transaction transaction) throws IOException;
+    }
+
+    private final Path file;
+    private final Path compactFile;
+    private final FileChannel channel;
+    private final FileChannel lockChannel;
+    private final Map<String, long[]> index = new HashMap<>(); // Key to {offset, length} of its value
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+    private long generation = -1; // Bumped by every compaction, a change means our index is stale
+    private long end; // Everything before this offset is in the index
+    private boolean damaged; // A record before end was skipped as damaged, the next writer rebuilds the file
+    private long liveBytes;
+
+    KvStore(Path file) throws IOException {
+        this.file = file;
+        this.compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lockChannel = VersionedFile.openLockFile(file);
+    }
+
+    // Runs the work against a consistent view, other processes cannot commit meanwhile
+    synchronized <T> T read(Work<T> work) throws IOException {
+        if (Files.exists(compactFile)) {
+            return write(work); // An interrupted compaction has to be finished first
+        }
+        FileLock lock = lock(true);
+        try {
+            refresh();
+            return work.run(new Staged(false));
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Runs the work and commits its changes as one record, or none if it throws
+    synchronized <T> T write(Work<T> work) throws IOException {
+        FileLock lock = lock(false);
+        try {
+            if (Files.exists(compactFile)) {
+                copyBack();
+            }
+            refresh();
+            if (damaged) {
+                compact(); // Rewrites the file from what was read; the damaged copy is in quarantine
+                System.err.println("Rebuilt " + file + " without its damaged records");
+            }
+            if (channel.size() > end) {
+                quarantineTail(); // Torn record of a writer that crashed
+                channel.truncate(end);
+            }
+            Staged transaction = new Staged(true);
+            T result = work.run(transaction);
+            if (!transaction.changes.isEmpty()) {
+                append(transaction.changes);
+                if (end - HEADER_SIZE - liveBytes > Math.max(COMPACT_MIN_GARBAGE, liveBytes)) {
+                    compact();
+                }
+            }
+            return result;
+        } finally {
+            lock.release();
+        }
+    }
+
+    synchronized void close() {
+        try {
+            channel.close();
+            lockChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private FileLock lock(boolean shared) throws IOException {
+        FileLock lock = VersionedFile.acquire(lockChannel, shared, LOCK_TIMEOUT_MILLIS);
+        if (lock == null) {
+            throw new IOException("Timed out waiting for the lock on " + file);
+        }
+        return lock;
+    }
+
+    // Indexes records other processes appended, or everything after a compaction
+    private void refresh() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            if (size > 0) {
+                throw new IOException(file + " is not a FancyToDo store");
+            }
+            // Only a writer may create the header, a reader sees an empty store
+            generation = 0;
+            end = 0;
+            return;
+        }
+        ByteBuffer header = readFully(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT) {
+            throw new IOException(file + " is not a FancyToDo store");
+        }
+        long current = header.getLong();
+        if (current != generation || end < HEADER_SIZE) {
+            index.clear();
+            clearCache();
+            liveBytes = 0;
+            generation = current;
+            end = HEADER_SIZE;
+            damaged = false;
+        }
+        while (end < size) {
+            long next = scan(end, size);
+            if (next == TORN) {
+                break; // Torn tail of a writer that crashed
+            }
+            if (next == DAMAGED) {
+                long resume = nextWholeRecord(end, size);
+                if (!damaged) {
+                    damaged = true;
+                    quarantineDamaged(end);
+                }
+                next = resume >= 0 ? resume : size; // Nothing after it could be read
+            }
+            end = next;
+        }
+    }
+
+    /**
+     * Where reading goes on after the damaged record at the offset: right
+     * after it if its length leads to a whole record, else the next offset
+     * where a whole record starts, or -1 if there is none.
+     */
+    private long nextWholeRecord(long offset, long size) throws IOException {
+        ByteBuffer rest = readFully(offset, (int) Math.min(size - offset, Integer.MAX_VALUE));
+        int length = rest.getInt(0);
+        if (length >= 4 && length <= rest.limit() - RECORD_HEADER_SIZE && isWholeRecord(rest, RECORD_HEADER_SIZE + length)) {
+            return offset + RECORD_HEADER_SIZE + length;
+        }
+        for (int at = 1; at <= rest.limit() - RECORD_HEADER_SIZE; at++) {
+            if (isWholeRecord(rest, at)) {
+                return offset + at;
+            }
+        }
+        return -1;
+    }
+
+    // True if a record that passes its check starts at the position
+    private static boolean isWholeRecord(ByteBuffer bytes, int at) {
+        if (bytes.limit() - at < RECORD_HEADER_SIZE + 4) {
+            return false;
+        }
+        int length = bytes.getInt(at);
+        int count = bytes.getInt(at + RECORD_HEADER_SIZE);
+        if (length < 4 || length > bytes.limit() - at - RECORD_HEADER_SIZE || count < 0 || count > length) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), at + RECORD_HEADER_SIZE, length);
+        return crc.getValue() == (bytes.getInt(at + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Indexes the record at the offset and returns where the next one starts.
+     * A record that runs past the end of the file, or fails its check as the
+     * last one in it, is TORN; so is a run of zeros to the end, which is how
+     * some file systems leave an append cut short. One that fails its check
+     * with more after it is DAMAGED.
+     */
+    private long scan(long offset, long size) throws IOException {
+        if (size - offset < RECORD_HEADER_SIZE) {
+            return TORN;
+        }
+        ByteBuffer header = readFully(offset, RECORD_HEADER_SIZE);
+        int length = header.getInt();
+        long checksum = header.getInt() & 0xFFFFFFFFL;
+        if (length >= 0 && size - offset - RECORD_HEADER_SIZE < length) {
+            return TORN;
+        }
+        long next = offset + RECORD_HEADER_SIZE + length;
+        if (length < 4) {
+            return zerosFrom(offset, size) ? TORN : DAMAGED; // No append writes such a header
+        }
+        ByteBuffer payload = readFully(offset + RECORD_HEADER_SIZE, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length);
+        if (crc.getValue() != checksum) {
+            return next == size || zerosFrom(offset, size) ? TORN : DAMAGED;
+        }
+        long payloadOffset = offset + RECORD_HEADER_SIZE;
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            byte op = payload.get();
+            byte[] keyBytes = new byte[payload.getShort() & 0xFFFF];
+            payload.get(keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (op == OP_PUT) {
+                int valueLength = payload.getInt();
+                index(key, payloadOffset + payload.position(), valueLength);
+                payload.position(payload.position() + valueLength);
+            } else {
+                unindex(key);
+            }
+            uncache(key);
+        }
+        return payloadOffset + length;
+    }
+
+    // True if every byte from the offset to the end of the file is zero
+    private boolean zerosFrom(long offset, long size) throws IOException {
+        while (offset < size) {
+            ByteBuffer chunk = readFully(offset, (int) Math.min(size - offset, 64 * 1024));
+            while (chunk.hasRemaining()) {
+                if (chunk.get() != 0) {
+                    return false;
+                }
+            }
+            offset += chunk.limit();
+        }
+        return true;
+    }
+
+    // Keeps a copy of the whole file before a writer rebuilds it, and tells the user
+    private void quarantineDamaged(long offset) {
+        Path target = RecordFile.QUARANTINE_DIR.resolve(
+                file.getFileName() + "." + System.currentTimeMillis() + "." + offset + ".damaged");
+        try {
+            Files.createDirectories(RecordFile.QUARANTINE_DIR);
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long copied = 0;
+                while (copied < size) {
+                    copied += channel.transferTo(copied, size - copied, out);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // The warning below still goes out
+        }
+        DataWarnings.report("Part of " + file + " is damaged, starting at offset " + offset + ". It was skipped, so"
+                + " some recent changes may be missing; a copy of the file is kept in " + target + ".");
+    }
+
+    // Keeps the bytes past the last whole record before a writer cuts them off
+    private void quarantineTail() {
+        try {
+            Files.createDirectories(RecordFile.QUARANTINE_DIR);
+            Path target = RecordFile.QUARANTINE_DIR.resolve(
+                    file.getFileName() + "." + System.currentTimeMillis() + "." + end + ".tail");
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long copied = 0;
+                while (copied < size - end) {
+                    copied += channel.transferTo(end + copied, size - end - copied, out);
+                }
+            }
+            System.err.println("Cut a torn record off " + file + ", kept in " + target);
+        } catch (IOException e) {
+            e.printStackTrace(); // The torn record is lost either way, the write goes on
+        }
+    }
+
+    private void append(Map<String, byte[]> changes) throws IOException {
+        if (end < HEADER_SIZE) {
+            writeHeader(channel, generation);
+            channel.truncate(HEADER_SIZE);
+            end = HEADER_SIZE;
+        }
+        Map<String, Long> valueOffsets = new HashMap<>();
+        ByteBuffer record = encodeRecord(changes, valueOffsets);
+        writeFully(channel, record, end);
+        channel.force(false);
+
+        long payloadOffset = end + RECORD_HEADER_SIZE;
+        end += record.limit();
+        for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+            String key = change.getKey();
+            uncache(key);
+            if (change.getValue() != null) {
+                index(key, payloadOffset + valueOffsets.get(key), change.getValue().length);
+                cache(key, change.getValue());
+            } else {
+                unindex(key);
+            }
+        }
+    }
+
+    // Writes the live values to the side file, then copies it over the store
+    private void compact() throws IOException {
+        Path temp = compactFile.resolveSibling(compactFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out, generation + 1);
+            long position = HEADER_SIZE;
+            // One record per batch of values keeps memory bounded on large stores
+            List<String> keys = new ArrayList<>(index.keySet());
+            int from = 0;
+            while (from < keys.size()) {
+                Map<String, byte[]> batch = new LinkedHashMap<>();
+                long batchBytes = 0;
+                while (from < keys.size() && (batch.isEmpty() || batchBytes < CACHE_BYTES)) {
+                    String key = keys.get(from++);
+                    byte[] value = value(key);
+                    batch.put(key, value);
+                    batchBytes += value.length;
+                }
+                ByteBuffer record = encodeRecord(batch, new HashMap<>());
+                writeFully(out, record, position);
+                position += record.limit();
+            }
+            out.force(true);
+        }
+        Files.move(temp, compactFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        copyBack();
+        refresh();
+    }
+
+    // Replaces the store's content with the compacted copy; safe to repeat after a crash
+    private void copyBack() throws IOException {
+        try (FileChannel in = FileChannel.open(compactFile, StandardOpenOption.READ)) {
+            long size = in.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += in.transferTo(copied, size - copied, channel.position(copied));
+            }
+            channel.truncate(size);
+            channel.force(true);
+        }
+        Files.delete(compactFile);
+    }
+
+    // Lays out one record; the offsets of the values within the payload go into valueOffsets
+    private static ByteBuffer encodeRecord(Map<String, byte[]> changes, Map<String, Long> valueOffsets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(changes.size());
+        for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+            byte[] keyBytes = change.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(change.getValue() != null ? OP_PUT : OP_DELETE);
+            out.writeShort(keyBytes.length);
+            out.write(keyBytes);
+            if (change.getValue() != null) {
+                out.writeInt(change.getValue().length);
+                valueOffsets.put(change.getKey(), (long) out.size());
+                out.write(change.getValue());
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    private static void writeHeader(FileChannel out, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT).putLong(generation).flip();
+        writeFully(out, header, 0);
+    }
+
+    private byte[] value(String key) throws IOException {
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long[] location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        byte[] value = readFully(location[0], (int) location[1]).array();
+        cache(key, value);
+        return value;
+    }
+
+    private void index(String key, long offset, long length) {
+        unindex(key);
+        index.put(key, new long[] {offset, length});
+        liveBytes += length;
+    }
+
+    private void unindex(String key) {
+        long[] old = index.remove(key);
+        if (old != null) {
+            liveBytes -= old[1];
+        }
+    }
+
+    private void cache(String key, byte[] value) {
+        if (value.length > CACHE_BYTES / 4) {
+            return; // Would push out everything else
+        }
+        cache.put(key, value);
+        cacheBytes += value.length;
+        Iterator<byte[]> eldest = cache.values().iterator();
+        while (cacheBytes > CACHE_BYTES && eldest.hasNext()) {
+            cacheBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    private void uncache(String key) {
+        byte[] old = cache.remove(key);
+        if (old != null) {
+            cacheBytes -= old.length;
+        }
+    }
+
+    private void clearCache() {
+        cache.clear();
+        cacheBytes = 0;
+    }
+
+    private ByteBuffer readFully(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     *  Staged
+     *
+     *  Buffers a transaction's changes until it commits; null marks a delete.
+     */
+    private final class Staged implements Transaction {
+        private final boolean writable;
+        private final Map<String, byte[]> changes = new LinkedHashMap<>();
+
+        Staged(boolean writable) {
+            this.writable = writable;
+        }
+
+        @Override
+        public byte[] get(String key) throws IOException {
+            if (changes.containsKey(key)) {
+                return changes.get(key);
+            }
+            return value(key);
+        }
+
+        @Override
+        public void put(String key, byte[] value) {
+            checkWritable();
+            changes.put(key, value);
+        }
+
+        @Override
+        public void delete(String key) {
+            checkWritable();
+            changes.put(key, null);
+        }
+
+        @Override
+        public List<String> keys(String prefix) {
+            List<String> keys = new ArrayList<>();
+            for (String key : index.keySet()) {
+                if (key.startsWith(prefix) && !changes.containsKey(key)) {
+                    keys.add(key);
+                }
+            }
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                if (change.getValue() != null && change.getKey().startsWith(prefix)) {
+                    keys.add(change.getKey());
+                }
+            }
+            return keys;
+        }
+
+        private void checkWritable() {
+            if (!writable) {
+                throw new IllegalStateException("Read-only transaction");
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+/**
+ *
+ *  LocalApi
+ *
+ *  Loopback HTTP API for other tools on this machine. The port and an access
+ *  token are written to fancytodo_data/api.port; every request must send
+ *  "Authorization: Bearer <token>".
+ *
+ *    GET  /v1/tabs               tab names with task counts
+ *    GET  /v1/tabs/{tab}/tasks   tasks of a tab, read from its snapshot
+ *    POST /v1/batch              {"ops": [{"op": "add", "tab": "Work", "text": "..."}, ...]}
+ *
+ *  Ops are add, update, remove, createTab, renameTab and deleteTab. Batches
+ *  from all clients are queued and applied together in one EDT hop, with one
+ *  save per touched tab. Batches apply in the order they arrived and ops in
+ *  their batch's order; a failing op is reported and skipped, the others
+ *  still apply. Tab names are trimmed and checked as in the add-tab dialog.
+ *
+ */
+public class LocalApi {
+
+    private static final Path PORT_FILE = Paths.get("fancytodo_data", "api.port");
+    private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_OPS = 100_000;
+    private static final long EDT_BUDGET_NANOS = 8_000_000L; // Leaves the EDT free to paint between slices
+
+    private final TabHost host;
+    private final CompletableFuture<Void> ready;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final ConcurrentLinkedQueue<PendingBatch> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private boolean waiting; // The batch at the head of the queue waits for a tab to load, EDT only
+    private HttpServer server;
+    private byte[] token;
+
+    // ready completes once the saved tabs are in, batches wait for it
+    public LocalApi(TabHost host, CompletableFuture<Void> ready) {
+        this.host = host;
+        this.ready = ready;
+    }
+
+    public void start() throws IOException {
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : secret) {
+            hex.append(String.format("%02x", b));
+        }
+        token = hex.toString().getBytes(StandardCharsets.US_ASCII);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/", this::handle);
+        server.setExecutor(IoExecutor.executor());
+        server.start();
+        Files.createDirectories(PORT_FILE.getParent());
+        Files.write(PORT_FILE, (server.getAddress().getPort() + "\n" + hex + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        try {
+            Files.deleteIfExists(PORT_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                reply(exchange, 401, error("Missing or wrong token"));
+                return;
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/v1/tabs") && method.equals("GET")) {
+                reply(exchange, 200, listTabs().join());
+            } else if (path.startsWith("/v1/tabs/") && path.endsWith("/tasks") && method.equals("GET")) {
+                String tabName = URLDecoder.decode(path.substring(9, path.length() - 6), StandardCharsets.UTF_8);
+                Object tasks = listTasks(tabName).join();
+                reply(exchange, tasks != null ? 200 : 404, tasks != null ? tasks : error("No tab named '" + tabName + "'"));
+            } else if (path.equals("/v1/batch") && method.equals("POST")) {
+                BatchRequest request = gson.fromJson(new String(readBody(exchange), StandardCharsets.UTF_8), BatchRequest.class);
+                if (request == null || request.ops == null) {
+                    reply(exchange, 400, error("Expected {\"ops\": [...]}"));
+                } else if (request.ops.size() > MAX_OPS) {
+                    reply(exchange, 413, error("At most " + MAX_OPS + " ops per batch"));
+                } else {
+                    reply(exchange, 200, submit(request.ops).join());
+                }
+            } else {
+                reply(exchange, 404, error("Unknown endpoint " + method + " " + path));
+            }
+        } catch (JsonParseException | IllegalArgumentException e) {
+            reply(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            IoExecutor.rootCause(e).printStackTrace();
+            reply(exchange, 500, error(String.valueOf(IoExecutor.rootCause(e).getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(token, header.substring(7).trim().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Only the store references are taken on the EDT, the snapshots are read on the I/O executor
+    private CompletableFuture<List<Map<String, Object>>> listTabs() {
+        return ready.thenApplyAsync(ignored -> {
+            List<TaskStore> stores = new ArrayList<>();
+            for (TodoPanel panel : host.todoPanels()) {
+                stores.add(panel.getTaskStore());
+            }
+            return stores;
+        }, IoExecutor.edt()).thenApplyAsync(stores -> {
+            List<Map<String, Object>> tabs = new ArrayList<>();
+            for (TaskStore store : stores) {
+                TaskSnapshot snapshot = store.snapshot();
+                Map<String, Object> tab = new LinkedHashMap<>();
+                tab.put("name", store.getTabName());
+                tab.put("size", snapshot.size());
+                tab.put("version", snapshot.getVersion());
+                tabs.add(tab);
+            }
+            return tabs;
+        }, IoExecutor.executor());
+    }
+
+    private CompletableFuture<List<Map<String, Object>>> listTasks(String tabName) {
+        return ready.thenApplyAsync(ignored -> {
+            TodoPanel panel = host.findTodoPanel(tabName);
+            return panel != null ? panel.getTaskStore() : null;
+        }, IoExecutor.edt()).thenApplyAsync(store -> {
+            if (store == null) {
+                return null;
+            }
+            TaskSnapshot snapshot = store.snapshot();
+            List<Map<String, Object>> tasks = new ArrayList<>(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                Task task = snapshot.get(i);
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("index", i);
+                item.put("status", task.status);
+                item.put("text", task.task);
+                item.put("color", task.checkboxColorRGB);
+                tasks.add(item);
+            }
+            return tasks;
+        }, IoExecutor.executor());
+    }
+
+    // Queues the ops; one EDT runnable drains everything queued by then
+    private CompletableFuture<BatchResult> submit(List<Op> ops) {
+        PendingBatch batch = new PendingBatch(ops);
+        queue.add(batch);
+        scheduleDrain();
+        return batch.result;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    /**
+     * Applies queued batches in the order they arrived. A batch that has to
+     * wait, for the saved tabs or for a tab it addresses to load, stops the
+     * drain with everything behind it, so no batch ever overtakes another.
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        if (waiting) {
+            return; // Drained again once the head batch can go
+        }
+        long start = System.nanoTime();
+        Set<TodoPanel> touched = new LinkedHashSet<>();
+        PendingBatch batch;
+        while ((batch = queue.peek()) != null) {
+            CompletableFuture<Void> blocker = ready.isDone() ? loadingPanels(batch.ops) : ready;
+            if (blocker != null) {
+                waiting = true;
+                blocker.whenCompleteAsync((result, error) -> {
+                    waiting = false;
+                    scheduleDrain();
+                }, IoExecutor.edt());
+                break;
+            }
+            queue.poll();
+            batch.result.complete(apply(batch.ops, touched));
+            if (System.nanoTime() - start > EDT_BUDGET_NANOS) {
+                scheduleDrain(); // The rest in a later slice
+                break;
+            }
+        }
+        for (TodoPanel panel : touched) {
+            panel.saveTasksAsync();
+        }
+    }
+
+    // Non-null while a tab the batch addresses by index is still reading its file
+    private CompletableFuture<Void> loadingPanels(List<Op> ops) {
+        List<CompletableFuture<Void>> loading = new ArrayList<>();
+        for (Op op : ops) {
+            String tab = TabInfo.cleanName(op.tab);
+            TodoPanel panel = tab != null ? host.findTodoPanel(tab) : null;
+            if (panel != null && !panel.whenLoaded().isDone()) {
+                loading.add(panel.whenLoaded());
+            }
+        }
+        return loading.isEmpty() ? null : CompletableFuture.allOf(loading.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private BatchResult apply(List<Op> ops, Set<TodoPanel> touched) {
+        BatchResult result = new BatchResult();
+        int i = 0;
+        while (i < ops.size()) {
+            Op op = ops.get(i);
+            if (op == null || op.op == null) {
+                result.fail(i++, "Missing op");
+                continue;
+            }
+            if (!isTaskOp(op.op)) {
+                applyTabOp(i++, op, result);
+                continue;
+            }
+            // A run of task ops on one tab goes out as a single snapshot and table refresh
+            int end = i + 1;
+            while (end < ops.size() && ops.get(end) != null && ops.get(end).op != null
+                    && isTaskOp(ops.get(end).op) && sameTab(op.tab, ops.get(end).tab)) {
+                end++;
+            }
+            String tab = TabInfo.cleanName(op.tab);
+            TodoPanel panel = tab != null ? host.findTodoPanel(tab) : null;
+            if (panel == null && tab != null && op.op.equals("add")) {
+                panel = host.createTodoTab(TabInfo.newId(), tab);
+            }
+            if (panel == null) {
+                String reason = tab == null ? "Tab names must be 1 to " + TabInfo.MAX_NAME_LENGTH + " characters"
+                        : "No tab named '" + tab + "'";
+                for (int j = i; j < end; j++) {
+                    result.fail(j, reason);
+                }
+            } else {
+                int first = i;
+                int last = end;
+                panel.applyMutations(store -> {
+                    for (int j = first; j < last; j++) {
+                        applyTaskOp(j, ops.get(j), store, result);
+                    }
+                });
+                touched.add(panel);
+            }
+            i = end;
+        }
+        return result;
+    }
+
+    private static boolean isTaskOp(String op) {
+        return op.equals("add") || op.equals("update") || op.equals("remove");
+    }
+
+    private static boolean sameTab(String a, String b) {
+        return a != null && b != null && a.trim().equalsIgnoreCase(b.trim());
+    }
+
+    private void applyTaskOp(int position, Op op, TaskStore store, BatchResult result) {
+        switch (op.op) {
+            case "add": {
+                if (op.text == null) {
+                    result.fail(position, "add needs text");
+                    return;
+                }
+                int index = op.index != null ? op.index : store.size();
+                if (index < 0 || index > store.size()) {
+                    result.fail(position, "Index " + index + " out of range");
+                    return;
+                }
+                Task task = new Task(op.status != null && op.status, op.text);
+                if (op.color != null) {
+                    task.checkboxColorRGB = op.color;
+                }
+                store.add(index, task);
+                result.applied++;
+                return;
+            }
+            case "update": {
+                if (op.index == null || op.index < 0 || op.index >= store.size()) {
+                    result.fail(position, "Index " + op.index + " out of range");
+                    return;
+                }
+                if (op.text != null) {
+                    store.setText(op.index, op.text);
+                }
+                if (op.status != null) {
+                    store.setStatus(op.index, op.status);
+                }
+                if (op.color != null) {
+                    store.setCheckboxColor(op.index, op.color != -1 ? new Color(op.color, true) : null);
+                }
+                result.applied++;
+                return;
+            }
+            default: { // remove
+                if (op.index == null || op.index < 0 || op.index >= store.size()) {
+                    result.fail(position, "Index " + op.index + " out of range");
+                    return;
+                }
+                store.remove(op.index);
+                result.applied++;
+            }
+        }
+    }
+
+    private void applyTabOp(int position, Op op, BatchResult result) {
+        String tab = TabInfo.cleanName(op.tab);
+        if (tab == null) {
+            result.fail(position, op.op + " needs a tab name of 1 to " + TabInfo.MAX_NAME_LENGTH + " characters");
+            return;
+        }
+        boolean ok;
+        switch (op.op) {
+            case "createTab":
+                ok = host.findTodoPanel(tab) == null && host.createTodoTab(TabInfo.newId(), tab) != null;
+                break;
+            case "renameTab": {
+                String name = TabInfo.cleanName(op.name);
+                ok = name != null && host.renameTodoTab(tab, name);
+                break;
+            }
+            case "deleteTab":
+                ok = host.deleteTodoTab(tab);
+                break;
+            default:
+                result.fail(position, "Unknown op '" + op.op + "'");
+                return;
+        }
+        if (ok) {
+            result.applied++;
+        } else {
+            result.fail(position, op.op + " failed for tab '" + op.tab + "'");
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_BYTES) {
+                    throw new IllegalArgumentException("Request body too large");
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private void reply(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> error(String message) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("error", message);
+        return body;
+    }
+
+    // JSON shapes
+
+    private static final class BatchRequest {
+        List<Op> ops;
+    }
+
+    private static final class Op {
+        String op;
+        String tab;
+        Integer index;
+        String text;
+        Boolean status;
+        Integer color; // ARGB, -1 for the default color
+        String name; // New name for renameTab
+    }
+
+    private static final class OpError {
+        final int op;
+        final String error;
+
+        OpError(int op, String error) {
+            this.op = op;
+            this.error = error;
+        }
+    }
+
+    private static final class BatchResult {
+        int applied;
+        final List<OpError> errors = new ArrayList<>();
+
+        void fail(int op, String error) {
+            errors.add(new OpError(op, error));
+        }
+    }
+
+    private static final class PendingBatch {
+        final List<Op> ops;
+        final CompletableFuture<BatchResult> result = new CompletableFuture<>();
+
+        PendingBatch(List<Op> ops) {
+            this.ops = ops;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package fancytodoapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+/**
+ *
+ *  LoopbackTransport
+ *
+ *  In-memory transport connecting engines in the same JVM through a shared
+ *  Hub. For experiments and checks without touching the disk.
+ *
+ */
+public class LoopbackTransport implements SyncTransport {
+
+    /**
+     *  Hub
+     *
+     *  Keeps every delta sent and fans each out to all connected transports.
+     */
+    public static final class Hub {
+        private final List<SyncDelta> log = new ArrayList<>();
+        private final List<LoopbackTransport> members = new ArrayList<>();
+        private final Map<String, SyncSnapshot> snapshots = new HashMap<>();
+
+        synchronized void join(LoopbackTransport member) {
+            for (SyncDelta delta : log) {
+                member.deliver(delta);
+            }
+            members.add(member);
+        }
+
+        synchronized void publish(SyncDelta delta) {
+            log.add(delta);
+            for (LoopbackTransport member : members) {
+                member.deliver(delta);
+            }
+        }
+
+        synchronized void leave(LoopbackTransport member) {
+            members.remove(member);
+        }
+
+        synchronized void keep(SyncSnapshot snapshot) {
+            snapshots.put(snapshot.node, snapshot);
+            long covered = Long.MAX_VALUE;
+            for (SyncSnapshot kept : snapshots.values()) {
+                covered = Math.min(covered, kept.covered(snapshot.node));
+            }
+            long upTo = covered;
+            log.removeIf(delta -> delta.node.equals(snapshot.node) && delta.seq <= upTo);
+        }
+
+        synchronized List<SyncSnapshot> snapshots() {
+            return new ArrayList<>(snapshots.values());
+        }
+    }
+
+    private final Hub hub;
+    private final Map<String, Long> lastSeq = new ConcurrentHashMap<>();
+    private Consumer<SyncDelta> receiver;
+
+    public LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(String node, Consumer<SyncDelta> receiver) {
+        this.receiver = receiver;
+        hub.join(this);
+    }
+
+    private void deliver(SyncDelta delta) {
+        lastSeq.merge(delta.node, delta.seq, Math::max);
+        receiver.accept(delta);
+    }
+
+    @Override
+    public void send(SyncDelta delta) {
+        hub.publish(delta);
+    }
+
+    @Override
+    public long lastSentSeq(String node) {
+        long last = lastSeq.getOrDefault(node, 0L);
+        for (SyncSnapshot snapshot : hub.snapshots()) {
+            last = Math.max(last, snapshot.covered(node)); // Its deltas may have been dropped
+        }
+        return last;
+    }
+
+    @Override
+    public void publish(SyncSnapshot snapshot) {
+        hub.keep(snapshot);
+    }
+
+    @Override
+    public List<SyncSnapshot> snapshots() {
+        return hub.snapshots();
+    }
+
+    @Override
+    public void stop() {
+        hub.leave(this);
+    }
+}
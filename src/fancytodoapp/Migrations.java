@@ -0,0 +1,127 @@
+package fancytodoapp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+/**
+ *
+ *  Migrations
+ *
+ *  Format versions of the persisted files and the upgrades between them.
+ *  Every file starts with a header naming its kind and version (see
+ *  RecordFile), so a reader knows what it holds from the first line instead
+ *  of trying one full parse after another. Upgrades work on one record at a
+ *  time and are chained while the records stream by, so a file of any older
+ *  version is upgraded in the same single pass that reads it; the next save
+ *  writes it at the current version.
+ *
+ *  Version 0 is the layout from before headers. A format change bumps the
+ *  kind's version and registers the step from the previous one; a change to
+ *  the file around the records, like the end record, bumps it without one.
+ *
+ */
+final class Migrations {
+
+    static final String TASKS = "tasks";
+    static final String TABS = "tabs";
+    static final String COLOR = "color";
+
+    private static final Map<String, Integer> CURRENT = new HashMap<>();
+    private static final Map<String, Integer> END_RECORD_SINCE = new HashMap<>();
+    // kind -> version -> step to the next version; versions without a step keep their records as they are
+    private static final Map<String, Map<Integer, UnaryOperator<JsonElement>>> STEPS = new HashMap<>();
+
+    static {
+        // Tasks were a JSON array of the same objects
+        define(TASKS, 2);
+        endRecordSince(TASKS, 2);
+
+        // Tabs started as an array of bare names
+        define(TABS, 3);
+        endRecordSince(TABS, 3);
+        register(TABS, 0, element -> {
+            if (!element.isJsonPrimitive()) {
+                return element;
+            }
+            JsonObject tab = new JsonObject();
+            tab.addProperty("name", element.getAsString());
+            tab.addProperty("colorRGB", -1); // No color information in old format
+            return tab;
+        });
+        // Tabs gained ids; an existing tab keeps the name its files are stored under
+        register(TABS, 1, element -> {
+            JsonObject tab = element.getAsJsonObject();
+            if (!tab.has("id") && tab.has("name")) {
+                tab.add("id", tab.get("name"));
+            }
+            return tab;
+        });
+
+        // The theme color was a bare big-endian int, which ColorPersistenceHandler reads as a number
+        define(COLOR, 2);
+        endRecordSince(COLOR, 2);
+        register(COLOR, 0, element -> {
+            JsonObject color = new JsonObject();
+            color.add("rgb", element);
+            return color;
+        });
+    }
+
+    private Migrations() {
+    }
+
+    private static void define(String kind, int currentVersion) {
+        CURRENT.put(kind, currentVersion);
+        STEPS.put(kind, new HashMap<>());
+    }
+
+    // Registers the step from version to version + 1
+    private static void register(String kind, int version, UnaryOperator<JsonElement> step) {
+        STEPS.get(kind).put(version, step);
+    }
+
+    // Files of the kind from this version on close with an end record (see RecordFile)
+    private static void endRecordSince(String kind, int version) {
+        END_RECORD_SINCE.put(kind, version);
+    }
+
+    static boolean hasEndRecord(String kind, int version) {
+        Integer since = END_RECORD_SINCE.get(kind);
+        return since != null && version >= since;
+    }
+
+    static int current(String kind) {
+        Integer version = CURRENT.get(kind);
+        if (version == null) {
+            throw new IllegalArgumentException("Unknown file kind " + kind);
+        }
+        return version;
+    }
+
+    /**
+     * The upgrade of one record from the given version to the current one.
+     *
+     * @return null when records of that version need no change
+     * @throws IOException if the version is newer than this build knows
+     */
+    static UnaryOperator<JsonElement> upgrade(String kind, int version) throws IOException {
+        int current = current(kind);
+        if (version > current) {
+            throw new IOException("This " + kind + " file is format version " + version
+                    + " but this version of FancyToDo only reads up to " + current);
+        }
+        UnaryOperator<JsonElement> chain = null;
+        for (int v = version; v < current; v++) {
+            UnaryOperator<JsonElement> step = STEPS.get(kind).get(v);
+            if (step != null) {
+                UnaryOperator<JsonElement> before = chain;
+                chain = before == null ? step : element -> step.apply(before.apply(element));
+            }
+        }
+        return chain;
+    }
+}
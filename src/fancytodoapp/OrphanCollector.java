@@ -0,0 +1,120 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+/**
+ *
+ *  OrphanCollector
+ *
+ *  Background cleanup of storage no tab refers to any more, such as the
+ *  tasks and archive of a deleted tab. Run by the app's maintenance timer
+ *  rather than at startup, so loading only ever opens the files the registry
+ *  names. Nothing is collected while the registry cannot be read, and
+ *  storage changed within the last hour is left alone in case another
+ *  process is still registering its tab. Collected files are moved to
+ *  fancytodo_data/trash and deleted from there after TRASH_DAYS.
+ *
+ *  History is not collected here: the versions of a deleted tab age out
+ *  through TaskHistory.applyRetention like any other.
+ *
+ */
+public final class OrphanCollector {
+
+    private static final Path DATA_DIR = Paths.get("fancytodo_data");
+    private static final Path ARCHIVE_DIR = DATA_DIR.resolve("archive");
+    private static final Path TRASH_DIR = DATA_DIR.resolve("trash");
+    private static final long GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long TRASH_DAYS = 30;
+
+    private OrphanCollector() {
+    }
+
+    /**
+     * Collects what the provider stores for tabs that are neither in its
+     * registry nor open. Blocking; run it off the EDT.
+     *
+     * @param openTabIds ids of the tabs open in this process, which may not be saved yet
+     * @return the number of tabs whose storage was collected
+     */
+    public static int collect(StorageProvider provider, Collection<String> openTabIds) throws IOException {
+        List<TabInfo> tabs = provider.tabStorage().peek();
+        if (tabs == null) {
+            return 0; // Unreadable or empty, everything would look orphaned
+        }
+        Set<String> live = new HashSet<>();
+        for (TabInfo tab : tabs) {
+            live.add(tab.getId().toLowerCase(Locale.ROOT));
+        }
+        for (String tabId : openTabIds) {
+            live.add(tabId.toLowerCase(Locale.ROOT));
+        }
+        long now = System.currentTimeMillis();
+        int collected = provider.collectOrphans(live, now - GRACE_MILLIS);
+        collected += collectFiles(ARCHIVE_DIR, ".jsonl.gz", live, now - GRACE_MILLIS);
+        emptyTrash(now - TimeUnit.DAYS.toMillis(TRASH_DAYS));
+        return collected;
+    }
+
+    /**
+     * Moves "<id><suffix>" files in dir whose id is not live and that were not
+     * changed since idleBefore to the trash, together with their lock files.
+     *
+     * @return the number of files moved
+     */
+    static int collectFiles(Path dir, String suffix, Set<String> live, long idleBefore) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        int collected = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String tabId = name.substring(0, name.length() - suffix.length());
+                if (live.contains(tabId.toLowerCase(Locale.ROOT))
+                        || Files.getLastModifiedTime(file).toMillis() > idleBefore) {
+                    continue;
+                }
+                moveToTrash(file);
+                Path lock = file.resolveSibling(name + ".lock");
+                if (Files.exists(lock)) {
+                    moveToTrash(lock);
+                }
+                collected++;
+            }
+        }
+        return collected;
+    }
+
+    private static void moveToTrash(Path file) throws IOException {
+        Path dir = TRASH_DIR.resolve(DATA_DIR.relativize(file.getParent()));
+        Files.createDirectories(dir);
+        Path target = dir.resolve(file.getFileName());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis())); // Ages from the move
+    }
+
+    private static void emptyTrash(long deleteBefore) throws IOException {
+        if (!Files.isDirectory(TRASH_DIR)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(TRASH_DIR)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toMillis() < deleteBefore) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
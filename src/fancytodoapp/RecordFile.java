@@ -0,0 +1,391 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipException;
+/**
+ *
+ *  RecordFile
+ *
+ *  Record format of the json provider's files. A header line with the kind
+ *  of file and its format version (see Migrations), then one JSON value per
+ *  line behind the CRC32C of its bytes:
+ *
+ *      #fancytodo tasks 2
+ *      5d4b1a0e {"status":false,"task":"Buy milk","checkboxColorRGB":-1}
+ *      #end 1 8f2c0b31
+ *
+ *  The end record closes the file with the number of records and the CRC32C
+ *  of their checksums, so a file cut short, even to nothing, is told apart
+ *  from one that simply holds fewer records.
+ *  Damage costs only the records it hits: a line whose checksum or JSON does
+ *  not hold up is skipped and kept under fancytodo_data/quarantine, the rest
+ *  of the file still loads. CRC32C is a JDK intrinsic on x86 and ARM, so the
+ *  check is cheap next to parsing. Files from before the format (a single
+ *  JSON array, version 0) are read as far as they parse. Records of an older
+ *  version are upgraded as they are read.
+ *
+ */
+final class RecordFile {
+
+    private static final String HEADER_PREFIX = "#fancytodo ";
+    private static final String FIRST_HEADER = "#fancytodo-records 1"; // Version 1 before headers named the kind
+    private static final int MAX_HEADER_BYTES = 64;
+    static final Path QUARANTINE_DIR = Paths.get("fancytodo_data", "quarantine");
+    private static final int CRC_DIGITS = 8;
+    private static final String END_PREFIX = "#end ";
+
+    private RecordFile() {
+    }
+
+    /**
+     *  Damage
+     *
+     *  What a read had to leave out.
+     */
+    static final class Damage {
+        final List<String> records = new ArrayList<>(); // Raw lines that failed their check
+        boolean unreadableTail; // The rest of the file could not be read or is missing, as in a cut off file
+
+        boolean any() {
+            return unreadableTail || !records.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            String skipped = records.size() + (records.size() == 1 ? " damaged record" : " damaged records");
+            if (!unreadableTail) {
+                return skipped;
+            }
+            return records.isEmpty() ? "an unreadable tail" : skipped + " and an unreadable tail";
+        }
+    }
+
+    /**
+     *  RecordWriter
+     *
+     *  Writes the header and then one checksummed record per value. finish()
+     *  writes the end record; a writer closed without it leaves a file that
+     *  reads as cut short.
+     */
+    static final class RecordWriter implements AutoCloseable {
+        private final OutputStream out;
+        private final Gson gson;
+        private final CRC32C crc = new CRC32C();
+        private final StringBuilder json = new StringBuilder(256);
+        private final byte[] prefix = new byte[CRC_DIGITS + 1];
+        private final CRC32C checksums = new CRC32C(); // Over the checksums of the records written
+        private long count;
+
+        RecordWriter(OutputStream out, String kind, Gson gson) throws IOException {
+            this.out = out;
+            this.gson = gson;
+            out.write((HEADER_PREFIX + kind + " " + Migrations.current(kind) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        void write(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            json.setLength(0);
+            gson.toJson(value, json); // Gson escapes line breaks inside strings, so a record is one line
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            long value32 = crc.getValue();
+            for (int i = CRC_DIGITS - 1; i >= 0; i--) {
+                prefix[i] = (byte) Character.forDigit((int) (value32 & 0xF), 16);
+                value32 >>>= 4;
+            }
+            prefix[CRC_DIGITS] = ' ';
+            out.write(prefix);
+            out.write(bytes);
+            out.write('\n');
+            checksums.update(prefix, 0, CRC_DIGITS);
+            count++;
+        }
+
+        // Writes the end record, after the last value
+        void finish() throws IOException {
+            out.write((endRecord(count, checksums.getValue()) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Hands every intact value to the visitor in file order, upgraded to the
+     * current version of its kind. A legacy null reads as nothing.
+     *
+     * @return what had to be skipped, empty when the file is whole; an empty
+     *         file or one without its end record has an unreadable tail
+     * @throws IOException if the file is of another kind or a newer version
+     */
+    static <T> Damage read(InputStream in, String kind, Class<T> type, Gson gson, Consumer<T> visitor) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        Damage damage = new Damage();
+        int version = readHeader(buffered, kind);
+        if (version < 0) {
+            damage.unreadableTail = true; // Empty file, nothing writes one
+            return damage;
+        }
+        UnaryOperator<JsonElement> upgrade = Migrations.upgrade(kind, version);
+        if (version == 0) {
+            readLegacy(buffered, type, gson, upgrade, visitor, damage);
+            return damage;
+        }
+        LineReader lines = new LineReader(buffered);
+        CRC32C crc = new CRC32C();
+        CRC32C checksums = new CRC32C();
+        long count = 0;
+        String end = null;
+        try {
+            while (lines.next()) {
+                byte[] line = lines.buffer;
+                int length = lines.length;
+                if (length == 0) {
+                    continue;
+                }
+                if (end == null && isEndRecord(line, length)) {
+                    end = new String(line, 0, length, StandardCharsets.UTF_8);
+                    continue;
+                }
+                T value = null;
+                if (end == null) {
+                    checksums.update(line, 0, Math.min(length, CRC_DIGITS));
+                    count++;
+                }
+                if (end == null && length > CRC_DIGITS && line[CRC_DIGITS] == ' ') {
+                    crc.reset();
+                    crc.update(line, CRC_DIGITS + 1, length - CRC_DIGITS - 1);
+                    if (parseHex(line) == crc.getValue()) {
+                        try {
+                            String json = new String(line, CRC_DIGITS + 1, length - CRC_DIGITS - 1, StandardCharsets.UTF_8);
+                            // Current records bind directly, older ones go through the tree to be upgraded
+                            value = upgrade == null ? gson.fromJson(json, type)
+                                    : gson.fromJson(upgrade.apply(JsonParser.parseString(json)), type);
+                        } catch (JsonParseException | IllegalStateException e) {
+                            // Checksum matched, the JSON was written damaged; quarantined below
+                        }
+                    }
+                }
+                if (value != null) {
+                    visitor.accept(value);
+                } else {
+                    damage.records.add(new String(line, 0, length, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (EOFException | ZipException e) {
+            damage.unreadableTail = true; // Compressed file cut short
+            return damage;
+        }
+        if (end == null) {
+            // Cut short, unless the file is from before end records
+            damage.unreadableTail |= Migrations.hasEndRecord(kind, version);
+        } else if (!end.equals(endRecord(count, checksums.getValue()))) {
+            // Records went missing; altered ones were already caught by their own checksum
+            damage.unreadableTail |= !end.startsWith(END_PREFIX + count + " ") || damage.records.isEmpty();
+        }
+        return damage;
+    }
+
+    private static String endRecord(long count, long checksums) {
+        return END_PREFIX + count + " " + String.format("%08x", checksums);
+    }
+
+    private static boolean isEndRecord(byte[] line, int length) {
+        if (length < END_PREFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < END_PREFIX.length(); i++) {
+            if (line[i] != END_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the header line and leaves the stream after it. Files without one
+     * are version 0 and the stream is left at their start.
+     *
+     * @return the format version, or -1 for an empty file
+     */
+    private static int readHeader(BufferedInputStream in, String kind) throws IOException {
+        in.mark(MAX_HEADER_BYTES);
+        byte[] head = new byte[MAX_HEADER_BYTES];
+        int length = 0;
+        int b;
+        while (length < MAX_HEADER_BYTES && (b = in.read()) >= 0 && b != '\n') {
+            head[length++] = (byte) b;
+        }
+        String line = new String(head, 0, length, StandardCharsets.US_ASCII).trim();
+        if (line.equals(FIRST_HEADER)) {
+            return 1;
+        }
+        if (!line.startsWith(HEADER_PREFIX)) {
+            in.reset();
+            in.mark(1);
+            boolean empty = in.read() < 0;
+            in.reset();
+            return empty ? -1 : 0;
+        }
+        String[] parts = line.substring(HEADER_PREFIX.length()).split(" ");
+        if (parts.length != 2 || !parts[0].equals(kind)) {
+            throw new IOException("Expected a " + kind + " file, found header '" + line + "'");
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unreadable version in header '" + line + "'");
+        }
+    }
+
+    private static <T> void readLegacy(InputStream in, Class<T> type, Gson gson, UnaryOperator<JsonElement> upgrade,
+            Consumer<T> visitor, Damage damage) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            if (reader.peek() == JsonToken.NULL) {
+                return;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                T value = upgrade == null ? gson.fromJson(reader, type)
+                        : gson.fromJson(upgrade.apply(JsonParser.parseReader(reader)), type);
+                if (value != null) {
+                    visitor.accept(value);
+                }
+            }
+            reader.endArray();
+        } catch (JsonParseException | MalformedJsonException | EOFException | ZipException | IllegalStateException e) {
+            damage.unreadableTail = true; // Keep what parsed before the damage
+        }
+    }
+
+    // -1 when the digits are not hex, which no CRC matches
+    private static long parseHex(byte[] line) {
+        long value = 0;
+        for (int i = 0; i < CRC_DIGITS; i++) {
+            int digit = Character.digit(line[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Keeps what a read skipped next to the data: the damaged records, and a
+     * copy of the whole file when its tail could not be read. Named after a
+     * checksum of the damage, so reading the same file again adds nothing.
+     */
+    static void quarantine(Path file, Damage damage) {
+        System.err.println("Skipped " + damage + " in " + file + ", kept in " + QUARANTINE_DIR);
+        try {
+            Files.createDirectories(QUARANTINE_DIR);
+            CRC32C crc = new CRC32C();
+            for (String record : damage.records) {
+                crc.update(record.getBytes(StandardCharsets.UTF_8));
+            }
+            if (damage.unreadableTail) {
+                crc.update(Files.readAllBytes(file));
+            }
+            String name = file.getFileName() + "." + Long.toHexString(crc.getValue());
+            if (!damage.records.isEmpty()) {
+                Path target = QUARANTINE_DIR.resolve(name + ".records");
+                if (!Files.exists(target)) {
+                    try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                        for (String record : damage.records) {
+                            writer.write(record);
+                            writer.write('\n');
+                        }
+                    }
+                }
+            }
+            if (damage.unreadableTail) {
+                Files.copy(file, QUARANTINE_DIR.resolve(name));
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Kept by an earlier read
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     *  LineReader
+     *
+     *  Splits the raw bytes into lines without decoding them, so the checksum
+     *  is taken over exactly what was written.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final byte[] chunk = new byte[65536];
+        private int position;
+        private int limit;
+        byte[] buffer = new byte[1024];
+        int length;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        // Reads the next line into buffer, false at the end of the stream
+        boolean next() throws IOException {
+            length = 0;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(in.read(chunk, 0, chunk.length), 0);
+                    position = 0;
+                    if (limit == 0) {
+                        return length > 0; // Last line without a line break
+                    }
+                }
+                int start = position;
+                while (position < limit && chunk[position] != '\n') {
+                    position++;
+                }
+                int count = position - start;
+                if (length + count > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+                }
+                System.arraycopy(chunk, start, buffer, length, count);
+                length += count;
+                if (position < limit) {
+                    position++; // Past the line break
+                    if (length > 0 && buffer[length - 1] == '\r') {
+                        length--;
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package fancytodoapp;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import java.awt.Rectangle;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+/**
+ *
+ *  RowRepainter
+ *
+ *  Scoped repainting for the task views. Changes mark the rows or columns
+ *  they touch instead of repainting the whole view; everything marked while
+ *  one event is handled is painted as one region after it, and only the
+ *  part that is on screen. A change that touches no visible row schedules
+ *  no painting at all. EDT only.
+ *
+ */
+final class RowRepainter {
+
+    private final JComponent view;
+    private final IntFunction<Rectangle> rowBounds;
+    private final IntFunction<Rectangle> columnBounds;
+    private final IntSupplier rowCount;
+
+    private int firstRow = -1; // Rows marked since the last flush, as one range
+    private int lastRow = -1;
+    private int columns; // Bit per marked column
+    private boolean all;
+    private boolean scheduled;
+
+    RowRepainter(JComponent view, IntSupplier rowCount, IntFunction<Rectangle> rowBounds,
+            IntFunction<Rectangle> columnBounds) {
+        this.view = view;
+        this.rowCount = rowCount;
+        this.rowBounds = rowBounds;
+        this.columnBounds = columnBounds;
+    }
+
+    // Marks the rows between first and last, in either order; rows past the end mark the space below it
+    void rows(int first, int last) {
+        if (first < 0 || last < 0) {
+            return;
+        }
+        int top = Math.min(first, last);
+        int bottom = Math.max(first, last);
+        firstRow = firstRow < 0 ? top : Math.min(firstRow, top);
+        lastRow = Math.max(lastRow, bottom);
+        schedule();
+    }
+
+    // Marks a column in every visible row
+    void column(int column) {
+        columns |= 1 << column;
+        schedule();
+    }
+
+    // Marks everything visible, for changes such as colors that touch every row
+    void all() {
+        all = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    private void flush() {
+        Rectangle dirty = null;
+        Rectangle visible = view.getVisibleRect();
+        if (all) {
+            dirty = visible;
+        } else {
+            int rows = rowCount.getAsInt();
+            if (firstRow >= 0 && firstRow < rows) {
+                dirty = rowBounds.apply(firstRow).union(rowBounds.apply(Math.min(lastRow, rows - 1)));
+            }
+            if (lastRow >= rows) {
+                // Rows past the end were deleted, clear where they were
+                Rectangle lastBounds = rows > 0 ? rowBounds.apply(rows - 1) : new Rectangle();
+                int top = lastBounds.y + lastBounds.height;
+                Rectangle below = new Rectangle(0, top, view.getWidth(), Math.max(visible.y + visible.height - top, 0));
+                dirty = dirty == null ? below : dirty.union(below);
+            }
+            for (int column = 0; columns >>> column != 0; column++) {
+                if ((columns & 1 << column) != 0) {
+                    Rectangle bounds = columnBounds.apply(column);
+                    bounds.y = visible.y;
+                    bounds.height = visible.height;
+                    dirty = dirty == null ? bounds : dirty.union(bounds);
+                }
+            }
+        }
+        firstRow = -1;
+        lastRow = -1;
+        columns = 0;
+        all = false;
+        scheduled = false;
+        if (dirty != null) {
+            Rectangle onScreen = dirty.intersection(visible);
+            if (!onScreen.isEmpty()) {
+                view.repaint(onScreen);
+            }
+        }
+    }
+
+    /**
+     * The on screen part of a repaint request for the view, or null when none
+     * of it is. Views route their repaint through this so that their own and
+     * Swing's requests for rows out of view are dropped; those rows are
+     * painted fresh when they scroll in.
+     */
+    static Rectangle visiblePart(JComponent view, int x, int y, int width, int height) {
+        Rectangle onScreen = view.getVisibleRect().intersection(new Rectangle(x, y, width, height));
+        return onScreen.isEmpty() ? null : onScreen;
+    }
+}
@@ -0,0 +1,199 @@
+package fancytodoapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+/**
+ *
+ *  SingleInstance
+ *
+ *  Makes sure only one FancyToDo process owns fancytodo_data. The first launch
+ *  holds a lock on instance.lock and listens on a loopback port published in
+ *  instance.port. Later launches find the lock taken, forward their arguments
+ *  over that port and exit; FancyToDoLauncher makes that check before any
+ *  AWT or Swing class is loaded.
+ *
+ */
+public final class SingleInstance {
+
+    private static final Path DATA_DIR = Paths.get("fancytodo_data");
+    private static final Path LOCK_FILE = DATA_DIR.resolve("instance.lock");
+    private static final Path PORT_FILE = DATA_DIR.resolve("instance.port");
+    private static final int CONNECT_TIMEOUT_MILLIS = 500;
+    private static final int FORWARD_ATTEMPTS = 10; // The running instance may still be starting up
+    private static final String REPLY_OK = "OK";
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final List<List<String>> queued = new ArrayList<>();
+    private Consumer<List<String>> handler;
+
+    private SingleInstance(FileChannel lockChannel, FileLock lock, ServerSocket serverSocket, String token) {
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.serverSocket = serverSocket;
+        this.token = token;
+    }
+
+    /**
+     * Becomes the primary instance, or hands the arguments to the one already running.
+     *
+     * @return the primary instance, or null if the arguments were forwarded and this process should exit
+     * @throws IllegalStateException if another instance holds the lock but cannot be reached
+     */
+    public static SingleInstance acquire(List<String> args) throws IOException {
+        Files.createDirectories(DATA_DIR);
+        FileChannel channel = FileChannel.open(LOCK_FILE, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            channel.close();
+            if (forward(args)) {
+                return null;
+            }
+            throw new IllegalStateException("Another FancyToDo instance holds the data lock but is not answering.");
+        }
+
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder token = new StringBuilder();
+        for (byte b : secret) {
+            token.append(String.format("%02x", b));
+        }
+        // Written after the port is bound so a second launch never reads a dead port
+        Files.write(PORT_FILE, (server.getLocalPort() + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+
+        SingleInstance instance = new SingleInstance(channel, lock, server, token.toString());
+        Thread acceptor = new Thread(instance::acceptLoop, "fancytodo-instance");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return instance;
+    }
+
+    // True if another process currently owns the data directory
+    public static boolean isRunning() {
+        if (!Files.exists(LOCK_FILE)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(LOCK_FILE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                lock.release();
+                return false;
+            }
+            return true;
+        } catch (OverlappingFileLockException e) {
+            return true; // Held by this very process
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sets where forwarded arguments go. Arguments that arrived before a
+     * handler was set are delivered right away. The handler runs on the
+     * listener thread and should hand off to the EDT itself.
+     */
+    public synchronized void setHandler(Consumer<List<String>> handler) {
+        this.handler = handler;
+        for (List<String> args : queued) {
+            handler.accept(args);
+        }
+        queued.clear();
+    }
+
+    private synchronized void deliver(List<String> args) {
+        if (handler != null) {
+            handler.accept(args);
+        } else {
+            queued.add(args);
+        }
+    }
+
+    static boolean forward(List<String> args) {
+        for (int attempt = 0; attempt < FORWARD_ATTEMPTS; attempt++) {
+            try {
+                List<String> lines = Files.readAllLines(PORT_FILE, StandardCharsets.UTF_8);
+                if (lines.size() >= 2) {
+                    int port = Integer.parseInt(lines.get(0).trim());
+                    try (Socket socket = new Socket()) {
+                        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+                        socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                        out.writeUTF(lines.get(1).trim());
+                        out.writeInt(args.size());
+                        for (String arg : args) {
+                            out.writeUTF(arg);
+                        }
+                        out.flush();
+                        return REPLY_OK.equals(new DataInputStream(socket.getInputStream()).readUTF());
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Port file missing or stale, the primary may not be listening yet
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                if (!token.equals(in.readUTF())) {
+                    continue; // Not one of ours
+                }
+                int count = in.readInt();
+                List<String> args = new ArrayList<>(Math.max(0, Math.min(count, 64)));
+                for (int i = 0; i < count; i++) {
+                    args.add(in.readUTF());
+                }
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeUTF(REPLY_OK);
+                out.flush();
+                deliver(args);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+            Files.deleteIfExists(PORT_FILE);
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fancytodoapp;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+/**
+ *
+ *  SnapshotPanel
+ *
+ *  Read-only stand-in for a TodoPanel, painted from the StartupSnapshot while
+ *  the real tab is still loading. Replaced as soon as the live panel is ready.
+ *  While it covers a tab it holds that tab's live panel, so the tab can be
+ *  resolved to it.
+ *
+ */
+public class SnapshotPanel extends JPanel {
+
+    private TodoPanel livePanel; // Panel of the tab this one covers, null until it covers one
+
+    public SnapshotPanel(List<Task> rows, Color themeColor) {
+        super(new BorderLayout());
+        List<Task> shown = rows != null ? rows : Collections.emptyList();
+
+        JTable table = new JTable(new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return shown.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return 2;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return column == 0 ? "Status" : "Task";
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                Task task = shown.get(row);
+                return column == 0 ? task.status : task.task;
+            }
+
+            // isCellEditable stays false, edits wait for the live panel
+        });
+        table.setRowHeight(32);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(50);
+        table.getColumnModel().getColumn(1).setPreferredWidth(300);
+
+        if (themeColor != null) {
+            double luminance = (0.299 * themeColor.getRed() + 0.587 * themeColor.getGreen() + 0.114 * themeColor.getBlue()) / 255;
+            Color foreground = luminance > 0.5 ? Color.BLACK : Color.WHITE;
+            setBackground(themeColor);
+            table.setBackground(themeColor);
+            table.setForeground(foreground);
+            table.setGridColor(themeColor.darker());
+            table.getTableHeader().setBackground(themeColor.darker());
+            table.getTableHeader().setForeground(foreground);
+        }
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        if (themeColor != null) {
+            scrollPane.getViewport().setBackground(themeColor);
+        }
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    // Marks this as the cover of the live panel's tab
+    public void setLivePanel(TodoPanel livePanel) {
+        this.livePanel = livePanel;
+    }
+
+    public TodoPanel getLivePanel() {
+        return livePanel;
+    }
+}
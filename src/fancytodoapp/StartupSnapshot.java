@@ -0,0 +1,117 @@
+package fancytodoapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ *
+ *  StartupSnapshot
+ *
+ *  Compact binary record of what the window looked like on exit: theme, tab
+ *  names and colors, the selected tab and its first screenful of rows. Read on
+ *  the next launch before any JSON is parsed so the frame can paint right away.
+ *
+ */
+public final class StartupSnapshot {
+
+    private static final Path SNAPSHOT_FILE = Paths.get("fancytodo_data", "startup.snapshot");
+    private static final int MAGIC = 0x46544453; // "FTDS"
+    private static final int VERSION = 1;
+    public static final int MAX_ROWS = 40;
+    private static final int MAX_TABS = 4096; // More than anyone keeps open, fewer than a corrupt count claims
+    private static final int MAX_TEXT_LENGTH = 500;
+
+    public final boolean darkTheme;
+    public final int themeColorRGB;
+    public final int selectedIndex;
+    public final List<String> tabNames;
+    public final List<Integer> tabColorsRGB; // -1 for the default color
+    public final List<Task> rows; // First rows of the selected tab
+
+    public StartupSnapshot(boolean darkTheme, int themeColorRGB, int selectedIndex,
+                           List<String> tabNames, List<Integer> tabColorsRGB, List<Task> rows) {
+        this.darkTheme = darkTheme;
+        this.themeColorRGB = themeColorRGB;
+        this.selectedIndex = selectedIndex;
+        this.tabNames = tabNames;
+        this.tabColorsRGB = tabColorsRGB;
+        this.rows = rows;
+    }
+
+    // Returns null when there is no usable snapshot
+    public static StartupSnapshot read() {
+        if (!Files.exists(SNAPSHOT_FILE)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(SNAPSHOT_FILE)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            boolean darkTheme = in.readBoolean();
+            int themeColorRGB = in.readInt();
+            int selectedIndex = in.readInt();
+            int tabCount = readCount(in, MAX_TABS);
+            List<String> tabNames = new ArrayList<>(tabCount);
+            List<Integer> tabColors = new ArrayList<>(tabCount);
+            for (int i = 0; i < tabCount; i++) {
+                tabNames.add(in.readUTF());
+                tabColors.add(in.readInt());
+            }
+            int rowCount = readCount(in, MAX_ROWS);
+            List<Task> rows = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                Task task = new Task(in.readBoolean(), in.readUTF());
+                task.checkboxColorRGB = in.readInt();
+                rows.add(task);
+            }
+            return new StartupSnapshot(darkTheme, themeColorRGB, selectedIndex, tabNames, tabColors, rows);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable startup snapshot: " + e);
+            return null;
+        }
+    }
+
+    // A count from the file, checked before anything is sized from it
+    private static int readCount(DataInputStream in, int max) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > max) {
+            throw new IOException("Bad count " + count);
+        }
+        return count;
+    }
+
+    public void write() throws IOException {
+        Path temp = SNAPSHOT_FILE.resolveSibling(SNAPSHOT_FILE.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(darkTheme);
+            out.writeInt(themeColorRGB);
+            out.writeInt(selectedIndex);
+            int tabCount = Math.min(tabNames.size(), MAX_TABS);
+            out.writeInt(tabCount);
+            for (int i = 0; i < tabCount; i++) {
+                out.writeUTF(tabNames.get(i));
+                out.writeInt(tabColorsRGB.get(i));
+            }
+            int rowCount = Math.min(rows.size(), MAX_ROWS);
+            out.writeInt(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                Task task = rows.get(i);
+                String text = task.task == null ? "" : task.task;
+                out.writeBoolean(task.status);
+                out.writeUTF(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+                out.writeInt(task.checkboxColorRGB);
+            }
+        }
+        Files.move(temp, SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
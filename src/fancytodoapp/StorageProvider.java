@@ -0,0 +1,195 @@
+package fancytodoapp;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+/**
+ *
+ *  StorageProvider
+ *
+ *  Storage SPI. A provider hands out the three kinds of storage the app uses:
+ *  the tasks of each tab, the tab registry and the theme color. Built in are
+ *  "json" (one file per tab, the original layout) and "kv" (a single
+ *  key-value file); others can be added through ServiceLoader. The provider
+ *  is picked with -Dfancytodo.storage=<name>, see StorageProviders.
+ *
+ *  Implementations supply the blocking read and write methods; the async
+ *  variants built on them run on the IoExecutor.
+ *
+ */
+public interface StorageProvider {
+
+    String name();
+
+    // Keyed by the tab's id (TabInfo.getId), which a rename leaves alone
+    TaskStorage taskStorage(String tabId);
+
+    TabStorage tabStorage();
+
+    ColorStorage colorStorage();
+
+    // Cold tier of a tab; gzip segments next to the data whatever the provider
+    default TaskArchive archive(String tabId) {
+        return new TaskArchive(tabId);
+    }
+
+    // Point-in-time versions of a tab, shared chunk pool whatever the provider
+    default TaskHistory history(String tabId) {
+        return new TaskHistory(tabId);
+    }
+
+    /**
+     * Removes the stored tasks of tabs whose id is not in liveTabIds (lower
+     * case). Storage changed after idleBefore belongs to a tab that may still
+     * be being registered and is kept; a provider that cannot tell waits for
+     * a second call to find the same orphan. Blocking; see OrphanCollector.
+     *
+     * @return the number of tabs removed
+     */
+    default int collectOrphans(Set<String> liveTabIds, long idleBefore) throws IOException {
+        return 0;
+    }
+
+    /**
+     *  TaskStorage
+     *
+     *  The tasks of one tab.
+     */
+    interface TaskStorage {
+
+        // Returns null when the tab has nothing saved
+        List<Task> readTasks() throws IOException;
+
+        // Expects an immutable snapshot when called from a background thread
+        void writeTasks(List<Task> tasks) throws IOException;
+
+        // Lane the async saves of this tab go through
+        IoExecutor.WriteLane writeLane();
+
+        default List<Task> loadTasks() {
+            try {
+                return readTasks();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null; // No saved tasks
+        }
+
+        default void saveTasks(List<Task> tasks) {
+            try {
+                writeTasks(tasks);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        default CompletableFuture<List<Task>> loadTasksAsync() {
+            return IoExecutor.supply(this::readTasks);
+        }
+
+        // Queues a write of the snapshot; a newer snapshot replaces one still waiting
+        default CompletableFuture<Void> saveTasksAsync(List<Task> snapshot) {
+            return writeLane().submit(() -> writeTasks(snapshot));
+        }
+
+        // Hands each saved task to the visitor in order
+        default void streamTasks(Consumer<Task> visitor) throws IOException {
+            List<Task> tasks = readTasks();
+            if (tasks != null) {
+                tasks.forEach(visitor);
+            }
+        }
+
+        /**
+         * Passes every saved task through the mapper (null drops it) and adds the
+         * appended tasks after them.
+         *
+         * @return the number of tasks saved
+         */
+        default int rewriteTasks(UnaryOperator<Task> mapper, Iterator<Task> appended) throws IOException {
+            List<Task> tasks = new ArrayList<>();
+            streamTasks(task -> {
+                Task mapped = mapper.apply(task);
+                if (mapped != null) {
+                    tasks.add(mapped);
+                }
+            });
+            appended.forEachRemaining(tasks::add);
+            writeTasks(tasks);
+            return tasks.size();
+        }
+
+        // Told when tasks another process saved, at the given version, are now shown
+        default void acceptExternal(List<Task> tasks, long version) {
+        }
+
+        // The tasks to show when another process saved external while local is shown: external plus local's unsaved edits
+        default List<Task> mergeExternal(List<Task> local, List<Task> external) {
+            return external;
+        }
+    }
+
+    /**
+     *  TabStorage
+     *
+     *  The ordered list of tabs.
+     */
+    interface TabStorage {
+
+        // Returns null when there are no usable saved tabs
+        List<TabInfo> load();
+
+        // Like load, but leaves the base the next save merges against alone
+        List<TabInfo> peek();
+
+        void save(List<TabInfo> tabs) throws IOException;
+    }
+
+    /**
+     *  ColorStorage
+     *
+     *  The theme color.
+     */
+    interface ColorStorage {
+
+        // Returns null when no color has been saved
+        Integer readColorRGB() throws IOException;
+
+        void writeColorRGB(int rgb) throws IOException;
+
+        IoExecutor.WriteLane writeLane();
+
+        default void saveColor(Color color) {
+            try {
+                writeColorRGB(color.getRGB());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        default CompletableFuture<Void> saveColorAsync(Color color) {
+            int rgb = color.getRGB();
+            return writeLane().submit(() -> writeColorRGB(rgb));
+        }
+
+        default Color loadColor() {
+            try {
+                Integer rgb = readColorRGB();
+                return rgb != null ? new Color(rgb) : null;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null; // Default color
+        }
+
+        default CompletableFuture<Color> loadColorAsync() {
+            return IoExecutor.supply(this::loadColor); // Errors fall back to the default color
+        }
+    }
+}
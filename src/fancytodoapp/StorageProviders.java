@@ -0,0 +1,50 @@
+package fancytodoapp;
+
+import java.util.ServiceLoader;
+/**
+ *
+ *  StorageProviders
+ *
+ *  Picks the StorageProvider once per process: "json" unless the
+ *  fancytodo.storage system property names another built in or
+ *  ServiceLoader provider.
+ *
+ */
+public final class StorageProviders {
+
+    private static volatile StorageProvider current;
+
+    private StorageProviders() {
+    }
+
+    public static StorageProvider current() {
+        StorageProvider provider = current;
+        if (provider == null) {
+            synchronized (StorageProviders.class) {
+                provider = current;
+                if (provider == null) {
+                    provider = create(System.getProperty("fancytodo.storage", "json"));
+                    current = provider;
+                }
+            }
+        }
+        return provider;
+    }
+
+    private static StorageProvider create(String name) {
+        switch (name) {
+            case "json":
+                return new JsonStorageProvider();
+            case "kv":
+                return new KvStorageProvider();
+            default:
+                for (StorageProvider provider : ServiceLoader.load(StorageProvider.class)) {
+                    if (provider.name().equals(name)) {
+                        return provider;
+                    }
+                }
+                System.err.println("Unknown storage '" + name + "', using json");
+                return new JsonStorageProvider();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package fancytodoapp;
+
+import java.util.List;
+/**
+ *
+ *  SyncDelta
+ *
+ *  The ops one node made in one go, numbered per node so receivers can tell
+ *  which deltas they have already seen.
+ *
+ */
+public final class SyncDelta {
+    final String node;
+    final long seq;
+    final List<SyncOp> ops;
+
+    SyncDelta(String node, long seq, List<SyncOp> ops) {
+        this.node = node;
+        this.seq = seq;
+        this.ops = ops;
+    }
+}
@@ -0,0 +1,484 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+
+import javax.swing.SwingUtilities;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+/**
+ *
+ *  SyncEngine
+ *
+ *  Replicates the tabs of this machine with other FancyToDo nodes. Each tab
+ *  is a TaskSequence CRDT; local edits are diffed against what the tab last
+ *  showed and sent as small deltas of ops, remote deltas are merged into the
+ *  sequence and the rows their ops touched are edited in the tab. Deltas
+ *  only carry edits, so the cost of a sync follows the number of edits.
+ *
+ *  Tabs are matched by name. Tab renames and deletions are not replicated.
+ *  Once started all sequence state lives on the EDT; transport and state
+ *  file I/O run on a sender thread, and diffing a tab against what it last
+ *  showed runs on a background thread against the tab's snapshot.
+ *
+ *  Every SNAPSHOT_EVERY deltas and on stop the sequences are published as a
+ *  SyncSnapshot. A start rebuilds from this node's own snapshot plus the
+ *  deltas after it, and the transport drops deltas every node's snapshot
+ *  covers, so neither the start nor the shared folder grows with the
+ *  history. A node that lacks dropped deltas starts from the others'
+ *  snapshots.
+ *
+ */
+public class SyncEngine {
+
+    private static final Path STATE_FILE = Paths.get("fancytodo_data", "sync", "state.json");
+    private static final int SNAPSHOT_EVERY = 500; // Deltas sent or applied between snapshots
+
+    private final TabHost host;
+    private final SyncTransport transport;
+    private final CompletableFuture<Void> tabsReady;
+    private final Gson gson = new Gson();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fancytodo-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // EDT only once live
+    private final Map<String, TaskSequence> sequences = new HashMap<>(); // By lower case tab name
+    private final Map<String, String> names = new HashMap<>(); // Tab name each sequence was first seen under
+    private final Set<String> diffing = new HashSet<>(); // Tabs whose local edits are being diffed
+    private final Set<String> creating = new HashSet<>(); // Tabs being created from their sequence
+    private final List<SyncSnapshot> pendingSnapshots = new ArrayList<>(); // Others' snapshots to catch up from
+    private int sinceSnapshot;
+    private final Map<String, List<Task>> shown = new HashMap<>(); // What each tab showed when last in sync
+    private final Map<String, Long> shownVersion = new HashMap<>(); // Store snapshot version at that point
+    private final Map<String, Long> applied = new HashMap<>(); // Highest delta seq applied, per node
+    private final List<SyncOp> waiting = new ArrayList<>(); // Ops whose element has not arrived yet
+    private final long[] clock = {0};
+    private String node;
+    private long seq;
+
+    private final ConcurrentLinkedQueue<SyncDelta> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean live = false;
+
+    public SyncEngine(TabHost host, SyncTransport transport, CompletableFuture<Void> tabsReady) {
+        this.host = host;
+        this.transport = transport;
+        this.tabsReady = tabsReady;
+    }
+
+    /**
+     * Rebuilds the sequences from the transport, then goes live on the EDT
+     * once the tabs are loaded. Blocking; call it off the EDT.
+     */
+    public void start() throws IOException {
+        Map<String, Long> appliedBefore = readState();
+        List<SyncDelta> history = new ArrayList<>();
+        transport.start(node, delta -> {
+            synchronized (history) {
+                if (!live) {
+                    history.add(delta);
+                    return;
+                }
+            }
+            incoming.add(delta);
+            scheduleDrain();
+        });
+        seq = Math.max(appliedBefore.getOrDefault(node, 0L), transport.lastSentSeq(node));
+
+        // Deltas this node had applied last time give the state the tabs were saved in: our
+        // snapshot, unless it is ahead of that state, and the deltas after it
+        List<SyncSnapshot> others = new ArrayList<>();
+        for (SyncSnapshot snapshot : transport.snapshots()) {
+            if (!snapshot.node.equals(node)) {
+                others.add(snapshot);
+            } else if (within(snapshot.applied, appliedBefore)) {
+                applySnapshot(snapshot);
+            }
+        }
+        List<SyncDelta> replay;
+        synchronized (history) {
+            replay = new ArrayList<>(history);
+            history.clear();
+        }
+        List<SyncDelta> newer = new ArrayList<>();
+        for (SyncDelta delta : replay) {
+            if (delta.seq <= applied.getOrDefault(delta.node, 0L)) {
+                continue; // In the snapshot
+            }
+            if (delta.seq <= appliedBefore.getOrDefault(delta.node, 0L)) {
+                apply(delta);
+            } else {
+                newer.add(delta);
+            }
+        }
+        // Others' snapshots are only needed for deltas that were dropped before we applied them
+        Map<String, Long> firstNewer = new HashMap<>();
+        for (SyncDelta delta : newer) {
+            firstNewer.merge(delta.node, delta.seq, Math::min);
+        }
+        others.removeIf(snapshot -> !holdsDropped(snapshot, firstNewer));
+
+        tabsReady.thenRunAsync(() -> {
+            // Edits made while sync was off are diffed against that state first
+            for (TodoPanel panel : host.todoPanels()) {
+                String tabName = panel.getTaskStore().getTabName();
+                shown.put(key(tabName), sequence(tabName).showAll());
+                whenLoaded(panel, () -> reconcile(tabName));
+            }
+            pendingSnapshots.addAll(others);
+            synchronized (history) {
+                incoming.addAll(newer);
+                incoming.addAll(history); // Arrived while the tabs were loading
+                history.clear();
+                live = true;
+            }
+            scheduleDrain();
+            publishSnapshot(); // Makes this node known, so nothing it still needs is dropped
+            TaskEventPublisher.subscribe(new BatchingSubscriber<TaskChangeEvent>(256, 300) {
+                @Override
+                protected void onBatch(List<TaskChangeEvent> events) {
+                    Set<String> tabIds = new LinkedHashSet<>();
+                    for (TaskChangeEvent event : events) {
+                        if (event.getType() != TaskChangeEvent.Type.TAB_DELETED) {
+                            tabIds.add(event.getTabId());
+                        }
+                    }
+                    SwingUtilities.invokeLater(() -> reconcileTabs(tabIds));
+                }
+            });
+        }, IoExecutor.edt());
+    }
+
+    // Reconciles the tabs with the ids under the names they have now, which a rename may have changed
+    private void reconcileTabs(Set<String> tabIds) {
+        for (TodoPanel panel : host.todoPanels()) {
+            if (tabIds.contains(panel.getTabId())) {
+                reconcile(panel.getTaskStore().getTabName());
+            }
+        }
+    }
+
+    // Publishes a last snapshot and lets what is still queued reach the transport, for up to a second
+    public void stop() {
+        if (live && SwingUtilities.isEventDispatchThread()) {
+            publishSnapshot();
+        }
+        sender.shutdown();
+        try {
+            sender.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transport.stop();
+    }
+
+    private static String key(String tabName) {
+        return tabName.toLowerCase(Locale.ROOT);
+    }
+
+    private TaskSequence sequence(String tabName) {
+        names.putIfAbsent(key(tabName), tabName);
+        return sequences.computeIfAbsent(key(tabName), k -> new TaskSequence());
+    }
+
+    // True if the snapshot covers deltas we lack and the transport no longer delivers
+    private boolean holdsDropped(SyncSnapshot snapshot, Map<String, Long> firstDelivered) {
+        for (Map.Entry<String, Long> entry : snapshot.applied.entrySet()) {
+            long have = applied.getOrDefault(entry.getKey(), 0L);
+            if (entry.getValue() > have && firstDelivered.getOrDefault(entry.getKey(), Long.MAX_VALUE) > have + 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // True if every entry of applied is at most the one in limit
+    private static boolean within(Map<String, Long> applied, Map<String, Long> limit) {
+        if (applied == null) {
+            return false;
+        }
+        for (Map.Entry<String, Long> entry : applied.entrySet()) {
+            if (entry.getValue() > limit.getOrDefault(entry.getKey(), 0L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void whenLoaded(TodoPanel panel, Runnable action) {
+        if (panel.isLoaded()) {
+            action.run();
+        } else {
+            panel.whenLoaded().thenRunAsync(action, IoExecutor.edt());
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    // Applies everything received so far, then updates each touched tab once
+    private void drain() {
+        drainScheduled.set(false);
+        Map<String, String> touched = new LinkedHashMap<>();
+        for (SyncSnapshot snapshot : pendingSnapshots) {
+            if (!within(snapshot.applied, applied)) {
+                // Holds deltas we never applied, which may no longer be delivered
+                for (SyncOp op : snapshot.ops) {
+                    touched.put(key(op.tab), op.tab);
+                }
+                applySnapshot(snapshot);
+            }
+        }
+        pendingSnapshots.clear();
+        SyncDelta delta;
+        while ((delta = incoming.poll()) != null) {
+            if (delta.seq <= applied.getOrDefault(delta.node, 0L)) {
+                continue; // Seen it, or it is one of ours
+            }
+            for (SyncOp op : delta.ops) {
+                touched.put(key(op.tab), op.tab);
+            }
+            apply(delta);
+        }
+        for (String tabName : touched.values()) {
+            reconcile(tabName);
+        }
+        if (!touched.isEmpty()) {
+            saveState();
+        }
+        if (sinceSnapshot >= SNAPSHOT_EVERY) {
+            publishSnapshot();
+        }
+    }
+
+    private void apply(SyncDelta delta) {
+        for (SyncOp op : delta.ops) {
+            clock[0] = Math.max(clock[0], op.c);
+            if (!sequence(op.tab).apply(op)) {
+                waiting.add(op);
+            }
+        }
+        applied.merge(delta.node, delta.seq, Math::max);
+        sinceSnapshot++;
+        retryWaiting();
+    }
+
+    private void applySnapshot(SyncSnapshot snapshot) {
+        for (SyncOp op : snapshot.ops) {
+            clock[0] = Math.max(clock[0], op.c);
+            if (!sequence(op.tab).apply(op)) {
+                waiting.add(op);
+            }
+        }
+        for (Map.Entry<String, Long> entry : snapshot.applied.entrySet()) {
+            applied.merge(entry.getKey(), entry.getValue(), Math::max);
+        }
+        retryWaiting();
+    }
+
+    private void retryWaiting() {
+        // Ops can arrive before the insert they refer to, when nodes relay through different folders
+        boolean progress = !waiting.isEmpty();
+        while (progress) {
+            progress = waiting.removeIf(op -> sequence(op.tab).apply(op));
+        }
+    }
+
+    /**
+     * Brings a tab and its sequence together: edits made in the tab since it
+     * last showed the sequence become ops and are sent, then the rows that
+     * remote ops touched are edited in the tab. The rows are diffed in the
+     * background; the tab is shown the merge once that is done, so a
+     * reconcile asked for meanwhile is already taken care of.
+     */
+    private void reconcile(String tabName) {
+        String key = key(tabName);
+        if (diffing.contains(key) || creating.contains(key)) {
+            return;
+        }
+        TodoPanel panel = host.findTodoPanel(tabName);
+        TaskSequence sequence = sequence(tabName);
+        if (panel == null) {
+            createTab(tabName, sequence);
+            return;
+        }
+        if (!panel.isLoaded()) {
+            whenLoaded(panel, () -> reconcile(tabName));
+            return;
+        }
+        TaskStore store = panel.getTaskStore();
+        TaskSnapshot tasks = store.snapshot();
+        if (Long.valueOf(tasks.getVersion()).equals(shownVersion.get(key))) {
+            show(key, panel, sequence);
+            return;
+        }
+        List<Task> base = shown.getOrDefault(key, Collections.emptyList());
+        diffing.add(key);
+        IoExecutor.supply(() -> TaskSequence.diffRows(base, tasks)).whenCompleteAsync((diff, error) -> {
+            diffing.remove(key);
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                return;
+            }
+            if (host.findTodoPanel(tabName) != panel || store.snapshot().getVersion() != tasks.getVersion()) {
+                reconcile(tabName); // Edited again meanwhile; nothing was sent, so the next diff covers both
+                return;
+            }
+            if (!diff.isEmpty()) {
+                send(sequence.applyEdits(store.getTabName(), diff, tasks, clock, node));
+            }
+            show(key, panel, sequence);
+        }, IoExecutor.edt());
+    }
+
+    // Edits the rows of the tab that ops touched since it was last shown; the tab is then in sync
+    private void show(String key, TodoPanel panel, TaskSequence sequence) {
+        panel.syncRows(sequence.showTouched());
+        TaskSnapshot tasks = panel.getTaskStore().snapshot();
+        shown.put(key, tasks);
+        shownVersion.put(key, tasks.getVersion());
+    }
+
+    // A tab that so far only exists elsewhere. Its tasks are saved first, so it loads with the synced tasks
+    private void createTab(String tabName, TaskSequence sequence) {
+        String key = key(tabName);
+        List<Task> tasks = sequence.showAll();
+        shown.put(key, tasks);
+        shownVersion.remove(key);
+        if (tasks.isEmpty()) {
+            return;
+        }
+        String tabId = TabInfo.newId();
+        creating.add(key);
+        IoExecutor.run(() -> StorageProviders.current().taskStorage(tabId).saveTasks(tasks)).whenCompleteAsync((ignored, error) -> {
+            creating.remove(key);
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                sequence.hideAll(); // Nothing shows the list; the next reconcile tries again
+                shown.remove(key);
+                return;
+            }
+            if (host.findTodoPanel(tabName) == null) {
+                host.createTodoTab(tabId, tabName);
+            } else {
+                // A tab of that name was made here meanwhile; its rows are merged with the list instead
+                sequence.hideAll();
+                shown.remove(key);
+            }
+            reconcile(tabName);
+        }, IoExecutor.edt());
+    }
+
+    private void send(List<SyncOp> ops) {
+        SyncDelta delta = new SyncDelta(node, ++seq, ops);
+        applied.put(node, seq);
+        sinceSnapshot++;
+        Map<String, Long> state = new HashMap<>(applied);
+        sender.execute(() -> {
+            try {
+                transport.send(delta);
+                writeState(state);
+            } catch (IOException e) {
+                e.printStackTrace(); // The transport keeps nothing, so this delta is lost to the others
+            }
+        });
+    }
+
+    // Hands the transport every sequence as a snapshot, so it can drop the deltas all nodes have applied
+    private void publishSnapshot() {
+        sinceSnapshot = 0;
+        List<SyncOp> ops = new ArrayList<>();
+        for (Map.Entry<String, TaskSequence> entry : sequences.entrySet()) {
+            ops.addAll(entry.getValue().compact(names.get(entry.getKey())));
+        }
+        ops.addAll(waiting); // Their deltas count as applied, so they have to travel with it
+        Map<String, Long> state = new HashMap<>(applied);
+        SyncSnapshot snapshot = new SyncSnapshot(node, state, ops);
+        sender.execute(() -> {
+            try {
+                writeState(state); // A start only trusts a snapshot the state file has caught up with
+                transport.publish(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void saveState() {
+        Map<String, Long> state = new HashMap<>(applied);
+        sender.execute(() -> {
+            try {
+                writeState(state);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     *  State
+     *
+     *  This node's id and the highest delta applied from every node.
+     */
+    private static final class State {
+        String node;
+        Map<String, Long> applied;
+    }
+
+    private Map<String, Long> readState() throws IOException {
+        State state = null;
+        if (Files.exists(STATE_FILE)) {
+            try (BufferedReader reader = Files.newBufferedReader(STATE_FILE)) {
+                state = gson.fromJson(reader, State.class);
+            }
+        }
+        if (state == null || state.node == null) {
+            byte[] id = new byte[4];
+            new SecureRandom().nextBytes(id);
+            state = new State();
+            state.node = String.format("%02x%02x%02x%02x", id[0], id[1], id[2], id[3]);
+            state.applied = new HashMap<>();
+        }
+        node = state.node;
+        return state.applied != null ? state.applied : new HashMap<>();
+    }
+
+    private void writeState(Map<String, Long> applied) throws IOException {
+        State state = new State();
+        state.node = node;
+        state.applied = applied;
+        Files.createDirectories(STATE_FILE.getParent());
+        Path temp = STATE_FILE.resolveSibling("state.json.tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+            gson.toJson(state, writer);
+        }
+        Files.move(temp, STATE_FILE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
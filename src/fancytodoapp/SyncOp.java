@@ -0,0 +1,77 @@
+package fancytodoapp;
+/**
+ *
+ *  SyncOp
+ *
+ *  One replicated edit to a tab's TaskSequence. Every op is stamped with a
+ *  Lamport timestamp (c, n): a counter and the id of the node that made it.
+ *  Inserts create the element (c, n) after the element (tc, tn), or at the
+ *  head when tn is null. Deletes and field sets target the element (tc, tn).
+ *  Field names are kept short since ops are what travels between machines.
+ *
+ */
+public final class SyncOp {
+
+    public static final String INSERT = "i";
+    public static final String DELETE = "d";
+    public static final String STATUS = "s";
+    public static final String TEXT = "t";
+    public static final String COLOR = "r";
+
+    String k; // Kind
+    String tab;
+    long c; // Timestamp counter
+    String n; // Timestamp node
+    long tc; // Target (or parent) counter
+    String tn; // Target (or parent) node
+    Boolean s; // Status, for inserts and STATUS
+    String t; // Text, for inserts and TEXT
+    Integer r; // Checkbox color, for inserts and COLOR
+
+    static SyncOp insert(String tab, long c, String n, long parentC, String parentN, Task task) {
+        SyncOp op = new SyncOp(INSERT, tab, c, n, parentC, parentN);
+        op.s = task.status;
+        op.t = task.task;
+        op.r = task.checkboxColorRGB;
+        return op;
+    }
+
+    static SyncOp delete(String tab, long c, String n, long targetC, String targetN) {
+        return new SyncOp(DELETE, tab, c, n, targetC, targetN);
+    }
+
+    static SyncOp status(String tab, long c, String n, long targetC, String targetN, boolean status) {
+        SyncOp op = new SyncOp(STATUS, tab, c, n, targetC, targetN);
+        op.s = status;
+        return op;
+    }
+
+    static SyncOp text(String tab, long c, String n, long targetC, String targetN, String text) {
+        SyncOp op = new SyncOp(TEXT, tab, c, n, targetC, targetN);
+        op.t = text;
+        return op;
+    }
+
+    static SyncOp color(String tab, long c, String n, long targetC, String targetN, int color) {
+        SyncOp op = new SyncOp(COLOR, tab, c, n, targetC, targetN);
+        op.r = color;
+        return op;
+    }
+
+    private SyncOp(String k, String tab, long c, String n, long tc, String tn) {
+        this.k = k;
+        this.tab = tab;
+        this.c = c;
+        this.n = n;
+        this.tc = tc;
+        this.tn = tn;
+    }
+
+    // Total order on timestamps: counter first, node id breaks ties
+    static int compare(long c1, String n1, long c2, String n2) {
+        if (c1 != c2) {
+            return Long.compare(c1, c2);
+        }
+        return n1.compareTo(n2);
+    }
+}
@@ -0,0 +1,30 @@
+package fancytodoapp;
+
+import java.util.List;
+import java.util.Map;
+/**
+ *
+ *  SyncSnapshot
+ *
+ *  A node's replicated tabs as the ops that rebuild them, and how far it had
+ *  applied every node's deltas when it was taken. Once every node's snapshot
+ *  covers a delta, the transport can drop it: nodes that start later begin
+ *  from a snapshot instead of replaying it.
+ *
+ */
+public final class SyncSnapshot {
+    final String node;
+    final Map<String, Long> applied;
+    final List<SyncOp> ops;
+
+    SyncSnapshot(String node, Map<String, Long> applied, List<SyncOp> ops) {
+        this.node = node;
+        this.applied = applied;
+        this.ops = ops;
+    }
+
+    // Highest seq of the node's deltas this snapshot holds, 0 if none
+    long covered(String deltaNode) {
+        return applied != null ? applied.getOrDefault(deltaNode, 0L) : 0;
+    }
+}
@@ -0,0 +1,41 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+/**
+ *
+ *  SyncTransport
+ *
+ *  Carries SyncDeltas between nodes. Implementations must eventually deliver
+ *  every delta of every node, in seq order per node; duplicates are fine.
+ *  The exception are deltas every published SyncSnapshot covers, which may
+ *  be dropped.
+ *
+ */
+public interface SyncTransport {
+
+    /**
+     * Starts delivering deltas to the receiver, from any thread. Deltas the
+     * transport already holds, including this node's own, are delivered
+     * before this method returns so the engine can rebuild its state; so are
+     * the snapshots it holds.
+     */
+    void start(String node, Consumer<SyncDelta> receiver) throws IOException;
+
+    void send(SyncDelta delta) throws IOException;
+
+    // Highest seq this node has sent so far, 0 if none
+    long lastSentSeq(String node);
+
+    /**
+     * Keeps the snapshot in place of its node's earlier one, then drops the
+     * deltas of that node which every kept snapshot covers.
+     */
+    void publish(SyncSnapshot snapshot) throws IOException;
+
+    // The latest snapshot of every node that published one
+    List<SyncSnapshot> snapshots();
+
+    void stop();
+}
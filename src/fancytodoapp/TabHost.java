@@ -0,0 +1,23 @@
+package fancytodoapp;
+
+import java.util.List;
+/**
+ *
+ *  TabHost
+ *
+ *  Tab access for services that act on the open tabs from outside the UI,
+ *  such as the local API and sync. Called on the EDT only.
+ *
+ */
+public interface TabHost {
+    List<TodoPanel> todoPanels();
+
+    TodoPanel findTodoPanel(String tabName);
+
+    // tabId names the new tab's storage, usually TabInfo.newId()
+    TodoPanel createTodoTab(String tabId, String tabName);
+
+    boolean renameTodoTab(String tabName, String newName);
+
+    boolean deleteTodoTab(String tabName);
+}
@@ -0,0 +1,63 @@
+package fancytodoapp;
+
+import java.awt.Color;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ *  TabInfo
+ * 
+ *  Entry of the tab registry (tabs.json): the tab's id, name and color.
+ *  JSON friendly. Colors are kept as an RGB integer so the registry can be
+ *  read without AWT. Storage is keyed by the id, which never changes, so
+ *  renaming a tab only touches the registry. Tabs from before ids use their
+ *  name as their id, which is what their files are already called.
+ * 
+ */
+public class TabInfo {
+    public static final int MAX_NAME_LENGTH = 200; // Names are kept with writeUTF in the startup snapshot
+
+    private String id;
+    private String name;
+    private int colorRGB;
+
+    public TabInfo(String id, String name, int colorRGB) {
+        this.id = id;
+        this.name = name;
+        this.colorRGB = colorRGB; // Use -1 for default color
+    }
+
+    public static TabInfo of(String id, String name, Color color) {
+        return new TabInfo(id, name, color != null ? color.getRGB() : -1);
+    }
+
+    // Id for a new tab. Random, so processes adding tabs at the same time never pick the same one
+    public static String newId() {
+        return "tab-" + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    }
+
+    // The name trimmed as the add-tab dialog does, or null if that leaves it empty or too long
+    public static String cleanName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String trimmed = name.trim();
+        return trimmed.isEmpty() || trimmed.length() > MAX_NAME_LENGTH ? null : trimmed;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getColorRGB() {
+        return colorRGB;
+    }
+
+    public Color getColor() {
+        return colorRGB != -1 ? new Color(colorRGB, true) : null;
+    }
+}
@@ -0,0 +1,136 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ *
+ *  TabRegistry
+ * 
+ *  Reads and writes fancytodo_data/tabs.json, the ordered list of tabs. Shared
+ *  by the Swing app and the command line so neither duplicates the format
+ *  handling. Tab storage of the json StorageProvider. Blocking; the app calls
+ *  it from the I/O executor. Saves merge
+ *  with tabs another process added, renamed or removed since our last load,
+ *  matching tabs by id. Tabs are
+ *  checksummed records (see RecordFile); a damaged file loses only the
+ *  damaged tabs, which go to quarantine.
+ * 
+ */
+public class TabRegistry implements StorageProvider.TabStorage {
+
+    private static final String TABS_FILE = "fancytodo_data/tabs.json";
+
+    // The tabs.json content our tab list derives from and its version, the base for merging
+    private volatile VersionedFile.Versioned<List<TabInfo>> base = new VersionedFile.Versioned<>(null, VersionedFile.UNKNOWN_VERSION);
+
+    // Returns null when there are no usable saved tabs
+    @Override
+    public List<TabInfo> load() {
+        try {
+            VersionedFile.Versioned<List<TabInfo>> read = VersionedFile.read(Paths.get(TABS_FILE), this::parse);
+            base = read;
+            return read.value;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public List<TabInfo> peek() {
+        try {
+            return VersionedFile.read(Paths.get(TABS_FILE), this::parse).value;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Reads any version, the bare names of the first one are upgraded by Migrations
+    private List<TabInfo> parse(Path tabsFile) throws IOException {
+        if (!Files.exists(tabsFile)) {
+            return null;
+        }
+        Gson gson = new Gson();
+        List<TabInfo> tabs = new ArrayList<>();
+        RecordFile.Damage damage;
+        try (InputStream in = Files.newInputStream(tabsFile)) {
+            damage = RecordFile.read(in, Migrations.TABS, TabInfo.class, gson, tab -> {
+                if (tab.getId() != null && tab.getName() != null) {
+                    tabs.add(tab);
+                }
+            });
+        }
+        if (damage.any()) {
+            // Never delete the registry, the tabs that did read are kept and the rest goes to quarantine
+            RecordFile.quarantine(tabsFile, damage);
+        }
+        return tabs.isEmpty() ? null : tabs;
+    }
+
+    @Override
+    public void save(List<TabInfo> tabs) throws IOException {
+        new File(TABS_FILE).getParentFile().mkdirs();
+        Gson gson = new Gson();
+        VersionedFile.Versioned<List<TabInfo>> from = base;
+        List<List<TabInfo>> written = new ArrayList<>(1);
+        long version = VersionedFile.write(Paths.get(TABS_FILE), (currentVersion, file, temp) -> {
+            List<TabInfo> content = tabs;
+            if (currentVersion != from.version && Files.exists(file)) {
+                List<TabInfo> theirs = parse(file);
+                if (theirs != null) {
+                    List<TabInfo> merged = ThreeWayMerge.merge(from.value, tabs, theirs,
+                            TabInfo::getId, TabRegistry::sameTab);
+                    if (merged.size() != tabs.size() || !allSame(merged, tabs)) {
+                        content = merged;
+                    }
+                }
+            }
+            try (RecordFile.RecordWriter writer = new RecordFile.RecordWriter(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), Migrations.TABS, gson)) {
+                for (TabInfo tab : content) {
+                    writer.write(tab);
+                }
+                writer.finish();
+            }
+            written.add(content);
+        });
+        // After a merge the file holds tabs our list lacks, so the next save merges again
+        boolean merged = written.get(0) != tabs;
+        base = new VersionedFile.Versioned<>(new ArrayList<>(tabs), merged ? VersionedFile.UNKNOWN_VERSION : version);
+    }
+
+    static boolean sameTab(TabInfo a, TabInfo b) {
+        return a.getId().equals(b.getId()) && a.getName().equals(b.getName()) && a.getColorRGB() == b.getColorRGB();
+    }
+
+    static boolean allSame(List<TabInfo> a, List<TabInfo> b) {
+        for (int i = 0; i < a.size(); i++) {
+            if (!sameTab(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Case-insensitive lookup, matching how the app compares tab names
+    public static TabInfo find(List<TabInfo> tabs, String name) {
+        if (tabs != null) {
+            for (TabInfo tab : tabs) {
+                if (tab.getName().equalsIgnoreCase(name)) {
+                    return tab;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -16,6 +16,7 @@ public class Task {
     public boolean status; // Checked or unchecked
     public String task;  // To-do list text
     public int checkboxColorRGB; // Store the color as RGB integer (-1 if default)
+    public long completedAt; // When the task was checked, epoch millis (0 if open or unknown)
 
     public Task(boolean status, String task) {
         this.status = status;
@@ -23,6 +24,28 @@ public class Task {
         this.checkboxColorRGB = -1; // Default color indicator (see setter and getter for handling)
     }
 
+    // Copy constructor, used to hand immutable snapshots to background threads
+    public Task(Task other) {
+        this.status = other.status;
+        this.task = other.task;
+        this.checkboxColorRGB = other.checkboxColorRGB;
+        this.completedAt = other.completedAt;
+    }
+
+    // Checks or unchecks the task, remembering when it was checked
+    public void setStatus(boolean status) {
+        if (status != this.status) {
+            this.status = status;
+            this.completedAt = status ? System.currentTimeMillis() : 0;
+        }
+    }
+
+    // Copies the status of a task from elsewhere with the time it was checked there
+    public void setStatus(boolean status, long completedAt) {
+        this.status = status;
+        this.completedAt = !status ? 0 : completedAt != 0 ? completedAt : System.currentTimeMillis();
+    }
+
     public Color getCheckboxColor() {
         return checkboxColorRGB != -1 ? new Color(checkboxColorRGB, true) : null;
     }
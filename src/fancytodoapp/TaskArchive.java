@@ -0,0 +1,238 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+/**
+ *
+ *  TaskArchive
+ *
+ *  Cold tier of one tab: completed tasks moved out of the tab once they are
+ *  old enough (-Dfancytodo.archive.days, 30 by default). Kept in
+ *  fancytodo_data/archive/<tab>.jsonl.gz as gzip members appended one per
+ *  archiving pass, one JSON task per line.
+ *  Concatenated members read back as a single gzip stream, so appending never
+ *  rewrites what is already there. The sidecar lock file records how far the
+ *  archive is whole, so a segment cut short by a crash is dropped by the next
+ *  append and never read. Only read when the archive is opened or searched.
+ *
+ */
+public class TaskArchive {
+
+    private static final Path ARCHIVE_DIR = Paths.get("fancytodo_data", "archive");
+    private static final long LOCK_TIMEOUT_MILLIS = 5000;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final Path file;
+    private final Gson gson = new Gson();
+
+    public TaskArchive(String tabId) {
+        this.file = ARCHIVE_DIR.resolve(tabId + ".jsonl.gz");
+    }
+
+    // Tasks completed before this moment are due for archiving, or Long.MIN_VALUE when archiving is off
+    public static long cutoff() {
+        long days = Long.getLong("fancytodo.archive.days", 30);
+        return days > 0 ? System.currentTimeMillis() - days * DAY_MILLIS : Long.MIN_VALUE;
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    // Appends the tasks as one new segment and forces it to disk before returning
+    public void append(List<Task> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(segment), StandardCharsets.UTF_8)) {
+            for (Task task : tasks) {
+                gson.toJson(task, writer);
+                writer.write('\n');
+            }
+        }
+        Files.createDirectories(ARCHIVE_DIR);
+        try (FileChannel lockChannel = VersionedFile.openLockFile(file);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lock(lockChannel, false);
+            try {
+                // Anything past the committed length is a segment a crash cut short
+                long committed = committedLength(lockChannel, channel);
+                if (lockChannel.size() < Long.BYTES) {
+                    // First append, or an archive from before lengths were kept: record what is whole
+                    // before writing, so a segment this append leaves cut short is not trusted either
+                    writeCommittedLength(lockChannel, committed);
+                }
+                channel.truncate(committed);
+                ByteBuffer buffer = ByteBuffer.wrap(segment.toByteArray());
+                long position = committed;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.force(true);
+                writeCommittedLength(lockChannel, position);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    // Hands every archived task to the visitor, oldest segment first
+    public void stream(Consumer<Task> visitor) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long committed;
+        try (FileChannel lockChannel = VersionedFile.openLockFile(file);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileLock lock = lock(lockChannel, true);
+            try {
+                committed = committedLength(lockChannel, channel);
+            } finally {
+                lock.release();
+            }
+        }
+        if (committed == 0) {
+            return; // Nothing archived yet, or only a first segment a crash cut short
+        }
+        // Segments are only ever added after the committed length, so reading up to it needs no lock
+        InputStream in = new BoundedInputStream(Files.newInputStream(file), committed);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(in, 65536), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    Task task = gson.fromJson(line, Task.class);
+                    if (task != null) {
+                        visitor.accept(task);
+                    }
+                } catch (JsonParseException e) {
+                    System.err.println("Skipping unreadable archived task in " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (EOFException | ZipException e) {
+            System.err.println("Archive " + file + " is damaged: " + e);
+        }
+    }
+
+    private FileLock lock(FileChannel lockChannel, boolean shared) throws IOException {
+        FileLock lock = VersionedFile.acquire(lockChannel, shared, LOCK_TIMEOUT_MILLIS);
+        if (lock == null) {
+            throw new IOException("Timed out waiting for the lock on " + file);
+        }
+        return lock;
+    }
+
+    // The lock file holds how much of the archive is whole; an archive from before that is trusted whole
+    private static long committedLength(FileChannel lockChannel, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (lockChannel.read(buffer, buffer.position()) < 0) {
+                return channel.size();
+            }
+        }
+        long committed = buffer.getLong(0);
+        return committed >= 0 ? Math.min(committed, channel.size()) : channel.size();
+    }
+
+    private static void writeCommittedLength(FileChannel lockChannel, long committed) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Long.BYTES).putLong(0, committed);
+        while (length.hasRemaining()) {
+            lockChannel.write(length, length.position());
+        }
+        lockChannel.force(true);
+    }
+
+    // Newest first, segments are appended in the order tasks were archived
+    public List<Task> search(String query, int limit) throws IOException {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        String needle = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        ArrayDeque<Task> newest = new ArrayDeque<>(limit);
+        stream(task -> {
+            if (needle.isEmpty() || (task.task != null && task.task.toLowerCase(Locale.ROOT).contains(needle))) {
+                if (newest.size() == limit) {
+                    newest.removeFirst();
+                }
+                newest.addLast(task);
+            }
+        });
+        List<Task> matches = new ArrayList<>(newest);
+        Collections.reverse(matches);
+        return matches;
+    }
+
+    /**
+     *  BoundedInputStream
+     *
+     *  Stops at the committed length, hiding a segment still being appended.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package fancytodoapp;
+
+/**
+ *
+ *  TaskChangeEvent
+ *
+ *  Describes one change to a tab or its tasks, as published by
+ *  TaskEventPublisher. Tasks carried by an event are read-only copies. The
+ *  tab is identified by its id, which never changes; its name is only for
+ *  display, since a rename may have changed it by the time the event is
+ *  handled.
+ *
+ */
+public final class TaskChangeEvent {
+
+    public enum Type {
+        TASK_ADDED,
+        TASK_REMOVED,
+        TASK_UPDATED,    // Status or text changed
+        TASK_RECOLORED,  // Checkbox color changed
+        TASKS_RELOADED,  // Whole list replaced, e.g. after loading from a file
+        TAB_ADDED,
+        TAB_RENAMED,
+        TAB_DELETED
+    }
+
+    private final Type type;
+    private final String tabId;
+    private final String tabName;
+    private final String previousTabName;
+    private final int index;
+    private final Task task;
+    private final long version;
+
+    private TaskChangeEvent(Type type, String tabId, String tabName, String previousTabName, int index, Task task,
+                            long version) {
+        this.type = type;
+        this.tabId = tabId;
+        this.tabName = tabName;
+        this.previousTabName = previousTabName;
+        this.index = index;
+        this.task = task;
+        this.version = version;
+    }
+
+    public static TaskChangeEvent taskChange(Type type, String tabId, String tabName, int index, Task task, long version) {
+        return new TaskChangeEvent(type, tabId, tabName, null, index, task, version);
+    }
+
+    public static TaskChangeEvent tasksReloaded(String tabId, String tabName, long version) {
+        return new TaskChangeEvent(Type.TASKS_RELOADED, tabId, tabName, null, -1, null, version);
+    }
+
+    public static TaskChangeEvent tabAdded(String tabId, String tabName) {
+        return new TaskChangeEvent(Type.TAB_ADDED, tabId, tabName, null, -1, null, 0);
+    }
+
+    public static TaskChangeEvent tabRenamed(String tabId, String previousTabName, String tabName) {
+        return new TaskChangeEvent(Type.TAB_RENAMED, tabId, tabName, previousTabName, -1, null, 0);
+    }
+
+    public static TaskChangeEvent tabDeleted(String tabId, String tabName) {
+        return new TaskChangeEvent(Type.TAB_DELETED, tabId, tabName, null, -1, null, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // Stable id of the tab, as in TabInfo; use it to find the tab
+    public String getTabId() {
+        return tabId;
+    }
+
+    // Name of the tab when the event was published, for display
+    public String getTabName() {
+        return tabName;
+    }
+
+    // Only set for TAB_RENAMED
+    public String getPreviousTabName() {
+        return previousTabName;
+    }
+
+    // Row index of the task, -1 for tab level events
+    public int getIndex() {
+        return index;
+    }
+
+    // Task after the change (before it, for TASK_REMOVED), null for tab level events
+    public Task getTask() {
+        return task;
+    }
+
+    // TaskSnapshot version that includes this change, 0 for tab level events
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + tabName + (index >= 0 ? ", " + index : "") + "]";
+    }
+}
@@ -0,0 +1,51 @@
+package fancytodoapp;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ *
+ *  TaskEventPublisher
+ *
+ *  Application wide stream of TaskChangeEvents. Publishing never blocks the
+ *  EDT: each subscriber has a bounded buffer and is called on the I/O executor.
+ *  When a subscriber falls a full buffer behind, new events for it are dropped
+ *  and counted, so subscribers that need exact state should read the tab's
+ *  TaskSnapshot rather than rebuild it from events.
+ *
+ */
+public final class TaskEventPublisher {
+
+    private static final int BUFFER_CAPACITY = 1024;
+    private static final SubmissionPublisher<TaskChangeEvent> PUBLISHER =
+            new SubmissionPublisher<>(IoExecutor.executor(), BUFFER_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    private TaskEventPublisher() {
+    }
+
+    public static Flow.Publisher<TaskChangeEvent> publisher() {
+        return PUBLISHER;
+    }
+
+    public static void subscribe(Flow.Subscriber<? super TaskChangeEvent> subscriber) {
+        PUBLISHER.subscribe(subscriber);
+    }
+
+    // Cheap check so publishers can skip building events nobody listens to
+    public static boolean hasSubscribers() {
+        return PUBLISHER.hasSubscribers();
+    }
+
+    public static void publish(TaskChangeEvent event) {
+        PUBLISHER.offer(event, (subscriber, dropped) -> {
+            DROPPED.incrementAndGet();
+            return false; // Never retry on the publishing thread
+        });
+    }
+
+    // Events dropped because a subscriber's buffer was full
+    public static long droppedCount() {
+        return DROPPED.get();
+    }
+}
@@ -0,0 +1,150 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+
+import javax.swing.SwingUtilities;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+/**
+ *
+ *  TaskFileWatcher
+ *
+ *  Watches fancytodo_data for tab files changed by other processes. Events for
+ *  a file are debounced, the file is parsed on the I/O executor and the result
+ *  handed to the EDT. Content matching what this process last wrote is skipped,
+ *  so our own saves never come back as reloads.
+ *
+ */
+public class TaskFileWatcher {
+
+    /**
+     *  Listener
+     *
+     *  Receives the new tasks of a tab and the file version they were read at, on the EDT.
+     */
+    public interface Listener {
+        void externalChange(String tabId, List<Task> tasks, long version);
+    }
+
+    private static final Path DATA_DIR = Paths.get("fancytodo_data");
+    private static final long DEBOUNCE_MILLIS = 250; // Writers often touch a file several times per save
+
+    private final Listener onChange;
+    private final Map<Path, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fancytodo-watch-debounce");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Gson gson = new Gson();
+    private WatchService watchService;
+
+    public TaskFileWatcher(Listener onChange) {
+        this.onChange = onChange;
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(DATA_DIR);
+        watchService = FileSystems.getDefault().newWatchService();
+        DATA_DIR.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::watchLoop, "fancytodo-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        timer.shutdownNow();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    String fileName = name.toString();
+                    if (fileName.endsWith(".json") && !fileName.equals("tabs.json")) {
+                        schedule(DATA_DIR.resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    // Restarts the quiet period for the file on every event
+    private void schedule(Path file) {
+        ScheduledFuture<?> previous = pending.put(file, timer.schedule(() -> {
+            pending.remove(file);
+            IoExecutor.run(() -> reload(file));
+        }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private void reload(Path file) throws IOException {
+        VersionedFile.Versioned<byte[]> read = VersionedFile.read(file, path -> {
+            try {
+                return Files.readAllBytes(path);
+            } catch (NoSuchFileException e) {
+                return null; // Replaced or deleted in the meantime, a later event follows
+            }
+        });
+        byte[] bytes = read.value;
+        if (bytes == null || bytes.length == 0) {
+            return; // Gone, or created and not written yet
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (GsonPersistenceHandler.isKnownContent(file, crc.getValue())) {
+            return; // Our own write
+        }
+        List<Task> tasks = new ArrayList<>();
+        try (InputStream in = Codecs.open(new ByteArrayInputStream(bytes))) {
+            if (RecordFile.read(in, Migrations.TASKS, Task.class, gson, tasks::add).any()) {
+                return; // Damaged or not completely written; the next load quarantines it rather than the watcher
+            }
+        } catch (IOException e) {
+            return; // Caught mid-write, the writer's next event brings us back
+        }
+        GsonPersistenceHandler.rememberContent(file, crc.getValue());
+        String fileName = file.getFileName().toString();
+        String tabId = fileName.substring(0, fileName.length() - ".json".length());
+        SwingUtilities.invokeLater(() -> onChange.externalChange(tabId, tasks, read.version));
+    }
+}
@@ -0,0 +1,300 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+/**
+ *
+ *  TaskHistory
+ *
+ *  Point-in-time versions of one tab, kept in fancytodo_data/history. A
+ *  version is a small manifest listing the hashes of the chunks its tasks
+ *  were cut into; chunks live once in a shared content-addressed pool
+ *  (chunks/ab/abcd...), so a version only adds the chunks that changed.
+ *  Chunk boundaries fall after tasks whose text hashes to a marker value,
+ *  so an insert or edit disturbs only the chunk around it and the rest of
+ *  the tab hashes to the same chunks as before.
+ *
+ *  A version is recorded after a save at most every few minutes
+ *  (-Dfancytodo.history.minutes, 5 by default, 0 turns history off) and
+ *  thinned out by applyRetention: everything from the last day, the newest
+ *  per hour for a week, the newest per day up to -Dfancytodo.history.days.
+ *
+ */
+public class TaskHistory {
+
+    private static final Path HISTORY_DIR = Paths.get("fancytodo_data", "history");
+    private static final Path CHUNK_DIR = HISTORY_DIR.resolve("chunks");
+    private static final Path VERSION_DIR = HISTORY_DIR.resolve("versions");
+    private static final String VERSION_SUFFIX = ".version";
+    private static final int MIN_CHUNK_TASKS = 16;
+    private static final int MAX_CHUNK_TASKS = 1024;
+    private static final int BOUNDARY_SHIFT = 26; // 64 tasks per chunk on average
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    // A chunk must be this old before garbage collection may delete it, so a version being written keeps its new chunks
+    private static final long CHUNK_GRACE_MILLIS = HOUR_MILLIS;
+
+    private static final Gson GSON = new Gson();
+
+    private final String tabId;
+    private final Path versionDir;
+    private volatile long lastRecorded;
+    private volatile List<String> lastChunks; // Chunks of the newest version, null until read
+
+    private static final Map<String, Object> recordLocks = new ConcurrentHashMap<>();
+
+    public TaskHistory(String tabId) {
+        this.tabId = tabId;
+        this.versionDir = VERSION_DIR.resolve(tabId);
+    }
+
+    /**
+     *  Version
+     *
+     *  Manifest of one recorded version. JSON friendly.
+     */
+    public static final class Version {
+        public long time;
+        public int taskCount;
+        public List<String> chunks;
+        transient Path file;
+
+        @Override
+        public String toString() {
+            return java.text.DateFormat.getDateTimeInstance().format(new java.util.Date(time))
+                    + "  (" + taskCount + (taskCount == 1 ? " task)" : " tasks)");
+        }
+    }
+
+    private static long intervalMillis() {
+        return TimeUnit.MINUTES.toMillis(Long.getLong("fancytodo.history.minutes", 5));
+    }
+
+    /**
+     * Records the tasks as a new version unless one was recorded within the
+     * interval or nothing changed since the last one. Blocking; run it off the EDT.
+     *
+     * @param force records even if the interval has not passed, e.g. before a restore
+     */
+    public void record(List<Task> tasks, boolean force) throws IOException {
+        long interval = intervalMillis();
+        if (interval <= 0 || (!force && System.currentTimeMillis() - lastRecorded < interval)) {
+            return;
+        }
+        synchronized (recordLocks.computeIfAbsent(tabId, name -> new Object())) {
+            if (lastChunks == null) {
+                List<Version> versions = versions();
+                lastChunks = versions.isEmpty() ? List.of() : versions.get(0).chunks;
+            }
+            List<String> chunks = storeChunks(tasks);
+            if (chunks.equals(lastChunks)) {
+                lastRecorded = System.currentTimeMillis();
+                return; // Same content as the last version
+            }
+            Version version = new Version();
+            version.time = System.currentTimeMillis();
+            version.taskCount = tasks.size();
+            version.chunks = chunks;
+            Files.createDirectories(versionDir);
+            Path file = versionDir.resolve(version.time + VERSION_SUFFIX);
+            Path temp = versionDir.resolve(version.time + VERSION_SUFFIX + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(version, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            lastChunks = chunks;
+            lastRecorded = version.time;
+        }
+    }
+
+    // Newest first
+    public List<Version> versions() throws IOException {
+        List<Version> versions = new ArrayList<>();
+        if (!Files.isDirectory(versionDir)) {
+            return versions;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(versionDir, "*" + VERSION_SUFFIX)) {
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    Version version = GSON.fromJson(reader, Version.class);
+                    if (version != null && version.chunks != null) {
+                        version.file = file;
+                        versions.add(version);
+                    }
+                } catch (JsonParseException e) {
+                    System.err.println("Skipping unreadable history version " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        versions.sort((a, b) -> Long.compare(b.time, a.time));
+        return versions;
+    }
+
+    // Reassembles the tasks of a version from its chunks
+    public List<Task> load(Version version) throws IOException {
+        List<Task> tasks = new ArrayList<>(version.taskCount);
+        for (String hash : version.chunks) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Codecs.open(Files.newInputStream(chunkFile(hash))), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    tasks.add(GSON.fromJson(line, Task.class));
+                }
+            } catch (NoSuchFileException e) {
+                throw new IOException("History chunk " + hash + " of tab '" + tabId + "' is missing", e);
+            }
+        }
+        return tasks;
+    }
+
+    // Cuts the tasks into content-defined chunks, writes the new ones and returns all hashes in order
+    private static List<String> storeChunks(List<Task> tasks) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        int tasksInChunk = 0;
+        for (Task task : tasks) {
+            String line = GSON.toJson(task);
+            chunk.write(line.getBytes(StandardCharsets.UTF_8));
+            chunk.write('\n');
+            tasksInChunk++;
+            boolean boundary = (line.hashCode() * 0x9E3779B9) >>> BOUNDARY_SHIFT == 0;
+            if ((boundary && tasksInChunk >= MIN_CHUNK_TASKS) || tasksInChunk >= MAX_CHUNK_TASKS) {
+                hashes.add(storeChunk(chunk.toByteArray()));
+                chunk.reset();
+                tasksInChunk = 0;
+            }
+        }
+        if (tasksInChunk > 0) {
+            hashes.add(storeChunk(chunk.toByteArray()));
+        }
+        return hashes;
+    }
+
+    private static String storeChunk(byte[] bytes) throws IOException {
+        String hash = sha256(bytes);
+        Path file = chunkFile(hash);
+        long now = System.currentTimeMillis();
+        try {
+            // Referenced again, so garbage collection running elsewhere must leave it alone for a while
+            if (now - Files.getLastModifiedTime(file).toMillis() > CHUNK_GRACE_MILLIS / 2) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+            }
+            return hash;
+        } catch (NoSuchFileException e) {
+            // New content, stored below
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), hash, ".tmp");
+        try (OutputStream out = Codecs.GZIP.compress(Files.newOutputStream(temp))) {
+            out.write(bytes);
+        }
+        try {
+            Files.move(temp, file);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(temp); // Another process stored the same chunk first
+        }
+        return hash;
+    }
+
+    private static Path chunkFile(String hash) {
+        return CHUNK_DIR.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    /**
+     * Thins out the versions of every tab, then deletes chunks no version
+     * refers to any more. Blocking; run it off the EDT.
+     *
+     * @return the number of chunks deleted
+     */
+    public static int applyRetention() throws IOException {
+        if (!Files.isDirectory(VERSION_DIR)) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long keepDays = Long.getLong("fancytodo.history.days", 90);
+        Set<String> live = new HashSet<>();
+        try (DirectoryStream<Path> tabs = Files.newDirectoryStream(VERSION_DIR, Files::isDirectory)) {
+            for (Path tabDir : tabs) {
+                Set<Long> keptBuckets = new HashSet<>();
+                for (Version version : new TaskHistory(tabDir.getFileName().toString()).versions()) {
+                    long age = now - version.time;
+                    boolean keep;
+                    if (age < DAY_MILLIS) {
+                        keep = true;
+                    } else if (age < 7 * DAY_MILLIS) {
+                        keep = keptBuckets.add(version.time / HOUR_MILLIS); // Newest first, so the newest of each hour
+                    } else if (age < keepDays * DAY_MILLIS) {
+                        keep = keptBuckets.add(-1 - version.time / DAY_MILLIS);
+                    } else {
+                        keep = false;
+                    }
+                    if (keep) {
+                        live.addAll(version.chunks);
+                    } else {
+                        Files.deleteIfExists(version.file);
+                    }
+                }
+            }
+        }
+        return collectGarbage(live, now);
+    }
+
+    private static int collectGarbage(Set<String> live, long now) throws IOException {
+        if (!Files.isDirectory(CHUNK_DIR)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(CHUNK_DIR, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || live.contains(file.getFileName().toString())) {
+                    continue;
+                }
+                if (now - Files.getLastModifiedTime(file).toMillis() > CHUNK_GRACE_MILLIS) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+}
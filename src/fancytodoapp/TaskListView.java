@@ -0,0 +1,653 @@
+package fancytodoapp;
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableModelEvent;
+import javax.swing.plaf.UIResource;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ *
+ *  TaskListView
+ *
+ *  Lightweight alternative to the task JTable for very large tabs. Rows are
+ *  not rendered through components: one RowPainter paints each visible row
+ *  straight from the store, with the checkbox icons blitted and the task
+ *  text, its inline markdown styled, laid out once into cached text
+ *  layouts. Model and selection changes repaint only the rows they touch,
+ *  so scrolling a tab of a million tasks costs the same as scrolling one of
+ *  a hundred.
+ *
+ *  Behaves like the table: click the checkbox to toggle, double click or F2
+ *  to edit the text, click the "+" row or press Enter on it to add a task,
+ *  right click or Shift+F10 for a task's menu, Delete to delete the selected
+ *  tasks, click a link to open it, and the usual arrow, page, Home/End,
+ *  Shift and Ctrl selection keys. Rows stay one line high and there is no
+ *  column header.
+ *
+ */
+class TaskListView extends JComponent implements Scrollable {
+
+    /**
+     *  Host
+     *
+     *  What the view leaves to its TodoPanel.
+     */
+    interface Host {
+        // Unchecked and checked icon for the task, or null for the look and feel's checkbox
+        ImageIcon[] checkboxIcons(Task task);
+
+        // Edits a cell as the table would: column 0 is the status, 1 the text. Saves
+        void setValueAt(Object value, int row, int column);
+
+        void addTask();
+
+        void showTaskContextMenu(Component invoker, int x, int y, int row);
+
+        void openLink(String link);
+
+        // Deletes the rows selected in the view, asking getSelectedRows. Saves
+        void deleteSelectedRows();
+    }
+
+    static final int ROW_HEIGHT = 32;
+    private static final int CHECK_WIDTH = 50;
+    private static final int TEXT_INSET = 4;
+    private static final int MAX_LAYOUTS = 1024;
+
+    private final TaskTableModel model;
+    private final Host host;
+    private final ListSelectionModel selection = new DefaultListSelectionModel();
+    private final RowPainter painter = new RowPainter();
+    private final RowRepainter repainter = new RowRepainter(this, this::getRowCount, this::getRowBounds,
+            column -> column == 0 ? new Rectangle(0, 0, CHECK_WIDTH, 0)
+                    : new Rectangle(CHECK_WIDTH, 0, Math.max(getWidth() - CHECK_WIDTH, 0), 0));
+
+    private Color gridColor = Color.GRAY;
+    private Color selectionBackground;
+    private Color selectionForeground;
+
+    private JTextField editor; // Text editor of the row being edited, created on first use
+    private int editingRow = -1;
+
+    TaskListView(TaskTableModel model, Host host) {
+        this.model = model;
+        this.host = host;
+        setLayout(null); // Only child is the editor, placed over its row
+        setOpaque(true);
+        setFocusable(true);
+        selection.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        selection.addListSelectionListener(this::selectionChanged);
+        model.addTableModelListener(this::modelChanged);
+        installMouse();
+        installKeys();
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                repaintRows(selection.getLeadSelectionIndex(), selection.getLeadSelectionIndex());
+            }
+
+            @Override
+            public void focusLost(FocusEvent e) {
+                repaintRows(selection.getLeadSelectionIndex(), selection.getLeadSelectionIndex());
+            }
+        });
+        updateUI();
+    }
+
+    @Override
+    public void updateUI() {
+        Font font = getFont();
+        if (font == null || font instanceof UIResource) {
+            setFont(UIManager.getFont("Table.font"));
+        }
+        selectionBackground = UIManager.getColor("Table.selectionBackground");
+        selectionForeground = UIManager.getColor("Table.selectionForeground");
+        if (selectionBackground == null || selectionForeground == null) {
+            selectionBackground = SystemColor.textHighlight;
+            selectionForeground = SystemColor.textHighlightText;
+        }
+        if (editor != null) {
+            editor.updateUI();
+        }
+        painter.lookAndFeelChanged();
+        repainter.all();
+    }
+
+    void setGridColor(Color gridColor) {
+        this.gridColor = gridColor;
+        repainter.all();
+    }
+
+    // Repaints one column of the visible rows: 0 the checkboxes, 1 the text
+    void repaintColumn(int column) {
+        repainter.column(column);
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        Rectangle onScreen = RowRepainter.visiblePart(this, x, y, width, height);
+        if (onScreen != null) {
+            super.repaint(tm, onScreen.x, onScreen.y, onScreen.width, onScreen.height);
+        }
+    }
+
+    // Rows including the "+" row
+    int getRowCount() {
+        return model.getRowCount() + 1;
+    }
+
+    private boolean isPlusRow(int row) {
+        return row == model.getRowCount();
+    }
+
+    // Row at the y coordinate, -1 below the last
+    int rowAtPoint(Point point) {
+        int row = point.y / ROW_HEIGHT;
+        return point.y < 0 || row >= getRowCount() ? -1 : row;
+    }
+
+    Rectangle getRowBounds(int row) {
+        return new Rectangle(0, row * ROW_HEIGHT, getWidth(), ROW_HEIGHT);
+    }
+
+    private Rectangle getTextBounds(int row) {
+        return new Rectangle(CHECK_WIDTH, row * ROW_HEIGHT, Math.max(getWidth() - CHECK_WIDTH, 0), ROW_HEIGHT);
+    }
+
+    int[] getSelectedRows() {
+        return selection.getSelectedIndices();
+    }
+
+    // Repaints only the visible part of the rows between first and last, in either order
+    private void repaintRows(int first, int last) {
+        repainter.rows(first, last);
+    }
+
+    private void selectionChanged(ListSelectionEvent e) {
+        repaintRows(e.getFirstIndex(), e.getLastIndex());
+    }
+
+    private void modelChanged(TableModelEvent e) {
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (e.getType() == TableModelEvent.UPDATE) {
+            if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+                cancelEditing(); // Everything replaced, as the table does
+                selection.clearSelection();
+                revalidate();
+                repainter.all();
+            } else {
+                repaintRows(first, last);
+            }
+            return;
+        }
+        int count = last - first + 1;
+        if (e.getType() == TableModelEvent.INSERT) {
+            selection.insertIndexInterval(first, count, true);
+            if (editingRow >= first) {
+                editingRow += count;
+            }
+        } else {
+            selection.removeIndexInterval(first, last);
+            if (editingRow >= first && editingRow <= last) {
+                cancelEditing();
+            } else if (editingRow > last) {
+                editingRow -= count;
+            }
+        }
+        if (editingRow >= 0) {
+            editor.setBounds(getTextBounds(editingRow));
+        }
+        revalidate();
+        // Rows below shifted, and deleted ones leave space at the end; clipped to the visible ones
+        repainter.rows(first, getRowCount() - 1 + (e.getType() == TableModelEvent.DELETE ? count : 0));
+    }
+
+    @Override
+    public void doLayout() {
+        if (editingRow >= 0) {
+            editor.setBounds(getTextBounds(editingRow)); // Follows width changes
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        return new Dimension(CHECK_WIDTH + 300, getRowCount() * ROW_HEIGHT);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            g2.setColor(getBackground());
+            g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+            int firstRow = Math.max(clip.y / ROW_HEIGHT, 0);
+            int lastRow = Math.min((clip.y + clip.height - 1) / ROW_HEIGHT, getRowCount() - 1);
+            painter.begin(g2);
+            for (int row = firstRow; row <= lastRow; row++) {
+                painter.paintRow(g2, row);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     *  RowPainter
+     *
+     *  Paints any row into the graphics it is given, holding no state per row.
+     *  Text is parsed and shaped once per string and font into a text layout
+     *  and kept, least recently used first out, so repainting a row only blits.
+     */
+    private final class RowPainter {
+        private final JCheckBox lafCheckBox = new JCheckBox(); // State for the look and feel's checkbox icon
+        private final Map<String, TextLayout> layouts = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TextLayout> eldest) {
+                return size() > MAX_LAYOUTS;
+            }
+        };
+        private Font layoutFont;
+        private FontRenderContext layoutContext;
+        private Font plusFont;
+        private Icon lafCheckIcon;
+        private int baseline;
+
+        void lookAndFeelChanged() {
+            lafCheckBox.updateUI();
+            lafCheckIcon = UIManager.getIcon("CheckBox.icon");
+            layouts.clear(); // Links were colored for the old look and feel
+        }
+
+        // Sets up the rendering state shared by every row of this paint
+        void begin(Graphics2D g2) {
+            Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (hints instanceof Map) {
+                g2.addRenderingHints((Map<?, ?>) hints);
+            }
+            Font font = getFont();
+            FontRenderContext context = g2.getFontRenderContext();
+            if (!font.equals(layoutFont) || !context.equals(layoutContext)) {
+                layouts.clear(); // Shaped for another font or scale
+                layoutFont = font;
+                layoutContext = context;
+                FontMetrics metrics = g2.getFontMetrics(font);
+                baseline = (ROW_HEIGHT - metrics.getHeight()) / 2 + metrics.getAscent();
+            }
+            if (plusFont == null) {
+                plusFont = new Font("SansSerif", Font.BOLD, 32);
+            }
+        }
+
+        void paintRow(Graphics2D g2, int row) {
+            int y = row * ROW_HEIGHT;
+            int width = getWidth();
+            if (isPlusRow(row)) {
+                paintPlusRow(g2, y, width);
+                return;
+            }
+            Task task = model.getTask(row);
+            boolean selected = selection.isSelectedIndex(row);
+            if (selected) {
+                g2.setColor(selectionBackground);
+                g2.fillRect(0, y, width, ROW_HEIGHT);
+            }
+
+            // Checkbox
+            ImageIcon[] icons = host.checkboxIcons(task);
+            if (icons != null) {
+                Icon icon = icons[task.status ? 1 : 0];
+                icon.paintIcon(TaskListView.this, g2,
+                        (CHECK_WIDTH - icon.getIconWidth()) / 2, y + (ROW_HEIGHT - icon.getIconHeight()) / 2);
+            } else if (lafCheckIcon != null) {
+                lafCheckBox.setSelected(task.status);
+                lafCheckIcon.paintIcon(lafCheckBox, g2,
+                        (CHECK_WIDTH - lafCheckIcon.getIconWidth()) / 2, y + (ROW_HEIGHT - lafCheckIcon.getIconHeight()) / 2);
+            }
+
+            // Text, unless the editor covers it
+            TextLayout layout = row != editingRow ? layout(task.task) : null;
+            if (layout != null) {
+                Shape clip = g2.getClip();
+                g2.clipRect(CHECK_WIDTH + TEXT_INSET, y, width - CHECK_WIDTH - 2 * TEXT_INSET, ROW_HEIGHT);
+                g2.setColor(selected ? selectionForeground : getForeground());
+                layout.draw(g2, CHECK_WIDTH + TEXT_INSET, y + baseline);
+                g2.setClip(clip);
+            }
+
+            // Grid
+            g2.setColor(gridColor);
+            g2.drawLine(0, y + ROW_HEIGHT - 1, width, y + ROW_HEIGHT - 1);
+            g2.drawLine(CHECK_WIDTH - 1, y, CHECK_WIDTH - 1, y + ROW_HEIGHT - 1);
+
+            if (row == selection.getLeadSelectionIndex() && isFocusOwner()) {
+                g2.setColor(selectionBackground.darker());
+                g2.drawRect(0, y, width - 1, ROW_HEIGHT - 1);
+            }
+        }
+
+        private void paintPlusRow(Graphics2D g2, int y, int width) {
+            g2.setFont(plusFont);
+            g2.setColor(getForeground());
+            FontMetrics metrics = g2.getFontMetrics();
+            g2.drawString("+", (width - metrics.stringWidth("+")) / 2,
+                    y + (ROW_HEIGHT - metrics.getHeight()) / 2 + metrics.getAscent());
+            if (selection.getLeadSelectionIndex() == getRowCount() - 1 && isFocusOwner()) {
+                g2.setColor(selectionBackground.darker());
+                g2.drawRect(0, y, width - 1, ROW_HEIGHT - 1);
+            }
+        }
+
+        // The task's text on one line, null when there is nothing to show
+        TextLayout layout(String text) {
+            if (text == null || text.isEmpty() || layoutFont == null) {
+                return null;
+            }
+            TextLayout layout = layouts.get(text);
+            if (layout == null) {
+                InlineMarkdown.Parsed parsed = InlineMarkdown.parse(text);
+                if (parsed.text.isEmpty()) {
+                    return null;
+                }
+                layout = new TextLayout(parsed.attributed(layoutFont).getIterator(), layoutContext);
+                layouts.put(text, layout);
+            }
+            return layout;
+        }
+
+        // Link target under x in the row's text, or null
+        String linkAt(int row, int x) {
+            TextLayout layout = layout(model.getTask(row).task);
+            int offset = x - CHECK_WIDTH - TEXT_INSET;
+            if (layout == null || offset < 0 || offset > layout.getAdvance()) {
+                return null;
+            }
+            int index = layout.hitTestChar(offset, 0).getCharIndex();
+            return InlineMarkdown.parse(model.getTask(row).task).linkAt(index);
+        }
+    }
+
+    // Method to add mouse handling matching the table's
+    private void installMouse() {
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                int row = rowAtPoint(e.getPoint());
+                if (e.isPopupTrigger()) {
+                    showMenu(e, row);
+                    return;
+                }
+                if (row < 0 || !SwingUtilities.isLeftMouseButton(e)) {
+                    return;
+                }
+                stopEditing();
+                if (e.isShiftDown() && selection.getAnchorSelectionIndex() >= 0) {
+                    if (e.isControlDown()) {
+                        selection.addSelectionInterval(selection.getAnchorSelectionIndex(), row);
+                    } else {
+                        selection.setSelectionInterval(selection.getAnchorSelectionIndex(), row);
+                    }
+                } else if (e.isControlDown()) {
+                    if (selection.isSelectedIndex(row)) {
+                        selection.removeSelectionInterval(row, row);
+                    } else {
+                        selection.addSelectionInterval(row, row);
+                    }
+                } else {
+                    selection.setSelectionInterval(row, row);
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (e.isPopupTrigger()) {
+                    showMenu(e, rowAtPoint(e.getPoint()));
+                }
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = rowAtPoint(e.getPoint());
+                if (row < 0 || !SwingUtilities.isLeftMouseButton(e) || e.isShiftDown() || e.isControlDown()) {
+                    return;
+                }
+                if (isPlusRow(row)) {
+                    if (e.getClickCount() == 1) {
+                        host.addTask();
+                    }
+                } else if (e.getX() < CHECK_WIDTH) {
+                    toggle(row); // Every click, as the table's checkbox editor does
+                } else if (e.getClickCount() == 2) {
+                    startEditing(row);
+                } else {
+                    String link = painter.linkAt(row, e.getX());
+                    if (link != null) {
+                        host.openLink(link);
+                    }
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                int row = rowAtPoint(e.getPoint());
+                boolean overLink = row >= 0 && !isPlusRow(row) && painter.linkAt(row, e.getX()) != null;
+                setCursor(overLink ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : null);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                int row = rowAtPoint(e.getPoint());
+                if (row >= 0 && SwingUtilities.isLeftMouseButton(e) && selection.getAnchorSelectionIndex() >= 0) {
+                    selection.setSelectionInterval(selection.getAnchorSelectionIndex(), row);
+                    scrollRectToVisible(getRowBounds(row));
+                }
+            }
+
+            private void showMenu(MouseEvent e, int row) {
+                if (row >= 0 && !isPlusRow(row)) {
+                    if (!selection.isSelectedIndex(row)) {
+                        selection.setSelectionInterval(row, row); // A selected row keeps the others
+                    }
+                    host.showTaskContextMenu(e.getComponent(), e.getX(), e.getY(), row);
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    // Method to add keyboard handling matching the table's
+    private void installKeys() {
+        bind("UP", "selectPreviousRow", () -> moveLead(-1, false));
+        bind("shift UP", "selectPreviousRowExtend", () -> moveLead(-1, true));
+        bind("DOWN", "selectNextRow", () -> moveLead(1, false));
+        bind("shift DOWN", "selectNextRowExtend", () -> moveLead(1, true));
+        bind("PAGE_UP", "scrollUp", () -> moveLead(-rowsPerPage(), false));
+        bind("shift PAGE_UP", "scrollUpExtend", () -> moveLead(-rowsPerPage(), true));
+        bind("PAGE_DOWN", "scrollDown", () -> moveLead(rowsPerPage(), false));
+        bind("shift PAGE_DOWN", "scrollDownExtend", () -> moveLead(rowsPerPage(), true));
+        bind("ctrl HOME", "selectFirstRow", () -> moveLead(-getRowCount(), false));
+        bind("ctrl shift HOME", "selectFirstRowExtend", () -> moveLead(-getRowCount(), true));
+        bind("ctrl END", "selectLastRow", () -> moveLead(getRowCount(), false));
+        bind("ctrl shift END", "selectLastRowExtend", () -> moveLead(getRowCount(), true));
+        bind("ctrl A", "selectAll", () -> {
+            if (model.getRowCount() > 0) {
+                selection.setSelectionInterval(0, model.getRowCount() - 1);
+            }
+        });
+        bind("SPACE", "toggleStatus", () -> {
+            int lead = selection.getLeadSelectionIndex();
+            if (lead >= 0 && !isPlusRow(lead)) {
+                toggle(lead);
+            }
+        });
+        bind("F2", "startEditing", () -> {
+            int lead = selection.getLeadSelectionIndex();
+            if (lead >= 0 && !isPlusRow(lead)) {
+                startEditing(lead);
+            }
+        });
+        bind("ENTER", "selectNextRowCell", () -> {
+            if (isPlusRow(selection.getLeadSelectionIndex())) {
+                host.addTask();
+            } else {
+                moveLead(1, false);
+            }
+        });
+        bind("DELETE", "deleteSelectedRows", () -> {
+            int[] rows = getSelectedRows();
+            if (rows.length > 1 || rows.length == 1 && !isPlusRow(rows[0])) {
+                host.deleteSelectedRows();
+            }
+        });
+        bind("shift F10", "showPopup", () -> {
+            int lead = selection.getLeadSelectionIndex();
+            if (lead >= 0 && !isPlusRow(lead)) {
+                Rectangle bounds = getTextBounds(lead);
+                host.showTaskContextMenu(this, bounds.x, bounds.y + bounds.height, lead);
+            }
+        });
+    }
+
+    private void bind(String keyStroke, String name, Runnable action) {
+        getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(keyStroke), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private int rowsPerPage() {
+        return Math.max(getVisibleRect().height / ROW_HEIGHT - 1, 1);
+    }
+
+    // Moves the lead by delta rows, clamped, extending from the anchor or selecting just the new row
+    private void moveLead(int delta, boolean extend) {
+        int lead = selection.getLeadSelectionIndex();
+        int row = lead < 0 ? 0 : Math.max(0, Math.min(getRowCount() - 1, lead + delta));
+        if (extend && selection.getAnchorSelectionIndex() >= 0) {
+            selection.setSelectionInterval(selection.getAnchorSelectionIndex(), row);
+        } else {
+            selection.setSelectionInterval(row, row);
+        }
+        scrollRectToVisible(getRowBounds(row));
+    }
+
+    private void toggle(int row) {
+        if (!model.isCellEditable(row, 0)) {
+            return;
+        }
+        host.setValueAt(!model.getTask(row).status, row, 0);
+    }
+
+    // Method to edit the text of a row in place
+    void startEditing(int row) {
+        stopEditing();
+        if (!model.isCellEditable(row, 1)) {
+            return; // As the table, e.g. while the tab is read only
+        }
+        if (editor == null) {
+            editor = new JTextField();
+            editor.addActionListener(e -> stopEditing());
+            editor.getInputMap().put(KeyStroke.getKeyStroke("ESCAPE"), "cancelEditing");
+            editor.getActionMap().put("cancelEditing", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    cancelEditing();
+                }
+            });
+            editor.addFocusListener(new FocusAdapter() {
+                @Override
+                public void focusLost(FocusEvent e) {
+                    stopEditing();
+                }
+            });
+        }
+        editingRow = row;
+        String text = model.getTask(row).task;
+        editor.setText(text == null ? "" : text);
+        editor.setBounds(getTextBounds(row));
+        add(editor);
+        scrollRectToVisible(getRowBounds(row));
+        editor.requestFocusInWindow();
+        editor.selectAll();
+        repaintRows(row, row);
+    }
+
+    // Commits the edit in progress, if any
+    void stopEditing() {
+        if (editingRow < 0) {
+            return;
+        }
+        int row = editingRow;
+        String text = editor.getText();
+        endEditing();
+        if (!text.equals(model.getTask(row).task)) {
+            host.setValueAt(text, row, 1);
+        }
+    }
+
+    // Drops the edit in progress, if any
+    void cancelEditing() {
+        if (editingRow >= 0) {
+            endEditing();
+        }
+    }
+
+    private void endEditing() {
+        int row = editingRow;
+        editingRow = -1; // First, removing the editor fires its focus loss
+        boolean hadFocus = editor.isFocusOwner();
+        remove(editor);
+        if (hadFocus) {
+            requestFocusInWindow();
+        }
+        repaintRows(row, row);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(CHECK_WIDTH + 300, 12 * ROW_HEIGHT);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? ROW_HEIGHT : 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.HORIZONTAL) {
+            return visibleRect.width;
+        }
+        return Math.max(visibleRect.height / ROW_HEIGHT - 1, 1) * ROW_HEIGHT; // Keeps whole rows in view
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        // Fill the viewport when the rows do not, like the table's fillsViewportHeight
+        Container parent = getParent();
+        return parent instanceof JViewport && parent.getHeight() > getPreferredSize().height;
+    }
+}
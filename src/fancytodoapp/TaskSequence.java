@@ -0,0 +1,580 @@
+package fancytodoapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+/**
+ *
+ *  TaskSequence
+ *
+ *  Replicated task list of one tab: an RGA sequence of elements, each with
+ *  last-writer-wins registers for status, text and checkbox color. Applying
+ *  the same ops in any order, any number of times, gives the same list.
+ *  Deleted elements stay as tombstones so later inserts can still find their
+ *  parent. Not thread safe; SyncEngine confines it to the EDT once started.
+ *
+ *  The elements form a linked list found by id, so an insert goes straight
+ *  to its parent. The sequence also keeps the rows the tab shows, in chunks
+ *  indexed by size, and the elements ops touched since; showing them edits
+ *  just those rows, and local edits are mapped to elements by row without
+ *  walking the list.
+ *
+ */
+final class TaskSequence {
+
+    private static final class Element {
+        final long c;
+        final String n;
+        long pc; // Parent the element was inserted after, pn null for the head
+        String pn;
+        boolean deleted;
+        boolean status;
+        long statusC;
+        String statusN;
+        String text;
+        long textC;
+        String textN;
+        int color;
+        long colorC;
+        String colorN;
+        Element prev; // Neighbours in the order, tombstones included
+        Element next;
+        RowChunk chunk; // Chunk of the row showing it, null if not shown
+        Task row; // Values that row shows
+
+        Element(long c, String n) {
+            this.c = c;
+            this.n = n;
+        }
+
+        boolean after(long otherC, String otherN) {
+            return SyncOp.compare(c, n, otherC, otherN) > 0;
+        }
+
+        Task task() {
+            Task task = new Task(status, text);
+            task.checkboxColorRGB = color;
+            return task;
+        }
+    }
+
+    /**
+     *  RowEdit
+     *
+     *  One change to the rows of a tab. Edits apply in order, and each one's
+     *  row counts the edits before it.
+     */
+    static final class RowEdit {
+        enum Kind { INSERT, REMOVE, UPDATE }
+
+        final Kind kind;
+        final int row;
+        final Task task; // Null for REMOVE
+
+        private RowEdit(Kind kind, int row, Task task) {
+            this.kind = kind;
+            this.row = row;
+            this.task = task;
+        }
+    }
+
+    /**
+     *  RowDiff
+     *
+     *  How a tab's rows changed between two snapshots: rows updated in place,
+     *  then a run removed and a run inserted at the same row.
+     */
+    static final class RowDiff {
+        final int[] updated;
+        final int start;
+        final int removed;
+        final int inserted;
+
+        private RowDiff(int[] updated, int start, int removed, int inserted) {
+            this.updated = updated;
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        boolean isEmpty() {
+            return updated.length == 0 && removed == 0 && inserted == 0;
+        }
+    }
+
+    private final Element head = new Element(0, null); // Before the first element, never shown
+    private final Map<String, Element> byId = new HashMap<>();
+    private final Rows rows = new Rows();
+    private final Set<Element> touched = new LinkedHashSet<>(); // Changed by ops since last shown
+
+    private static String id(long c, String n) {
+        return c + "@" + n;
+    }
+
+    /**
+     * Applies an op. Idempotent.
+     *
+     * @return false if the op refers to an element not seen yet; retry it later
+     */
+    boolean apply(SyncOp op) {
+        Element element = applyOp(op);
+        if (element == null) {
+            return false;
+        }
+        touched.add(element);
+        return true;
+    }
+
+    // Applies an op and returns the element it refers to, or null if that has not been seen yet
+    private Element applyOp(SyncOp op) {
+        if (SyncOp.INSERT.equals(op.k)) {
+            Element existing = byId.get(id(op.c, op.n));
+            if (existing != null) {
+                return existing;
+            }
+            Element before = head;
+            if (op.tn != null) {
+                before = byId.get(id(op.tc, op.tn));
+                if (before == null) {
+                    return null;
+                }
+            }
+            // Concurrent inserts after the same parent: the newer one goes first
+            while (before.next != null && before.next.after(op.c, op.n)) {
+                before = before.next;
+            }
+            Element element = new Element(op.c, op.n);
+            element.pc = op.tc;
+            element.pn = op.tn;
+            element.status = op.s != null && op.s;
+            element.text = op.t;
+            element.color = op.r != null ? op.r : -1;
+            element.statusC = element.textC = element.colorC = op.c;
+            element.statusN = element.textN = element.colorN = op.n;
+            element.prev = before;
+            element.next = before.next;
+            if (before.next != null) {
+                before.next.prev = element;
+            }
+            before.next = element;
+            byId.put(id(op.c, op.n), element);
+            return element;
+        }
+
+        Element target = byId.get(id(op.tc, op.tn));
+        if (target == null) {
+            return null;
+        }
+        switch (op.k) {
+            case SyncOp.DELETE:
+                target.deleted = true;
+                break;
+            case SyncOp.STATUS:
+                if (SyncOp.compare(op.c, op.n, target.statusC, target.statusN) > 0) {
+                    target.status = op.s != null && op.s;
+                    target.statusC = op.c;
+                    target.statusN = op.n;
+                }
+                break;
+            case SyncOp.TEXT:
+                if (SyncOp.compare(op.c, op.n, target.textC, target.textN) > 0) {
+                    target.text = op.t;
+                    target.textC = op.c;
+                    target.textN = op.n;
+                }
+                break;
+            case SyncOp.COLOR:
+                if (SyncOp.compare(op.c, op.n, target.colorC, target.colorN) > 0) {
+                    target.color = op.r != null ? op.r : -1;
+                    target.colorC = op.c;
+                    target.colorN = op.n;
+                }
+                break;
+            default:
+                break; // Unknown kind from a newer version, ignore it
+        }
+        return target;
+    }
+
+    /**
+     * Takes every visible element as shown, for a tab that is about to show
+     * the whole list, or shows it already.
+     *
+     * @return the tasks the tab shows
+     */
+    List<Task> showAll() {
+        List<Element> visible = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (Element element = head.next; element != null; element = element.next) {
+            element.chunk = null;
+            element.row = null;
+            if (!element.deleted) {
+                element.row = element.task();
+                visible.add(element);
+                tasks.add(element.row);
+            }
+        }
+        rows.reset(visible);
+        touched.clear();
+        return tasks;
+    }
+
+    /**
+     * Takes nothing as shown, for a tab that shows none of this list; the
+     * next show inserts every visible element.
+     */
+    void hideAll() {
+        for (Element element = head.next; element != null; element = element.next) {
+            element.chunk = null;
+            element.row = null;
+            if (!element.deleted) {
+                touched.add(element);
+            }
+        }
+        rows.reset(new ArrayList<>());
+    }
+
+    /**
+     * Brings the shown rows in line with the elements ops touched since they
+     * were last shown. Only those elements are looked at, so the cost follows
+     * the number of ops, not the size of the list.
+     *
+     * @return the edits the tab has to make, in order
+     */
+    List<RowEdit> showTouched() {
+        List<RowEdit> edits = new ArrayList<>();
+        for (Element element : touched) {
+            if (element.deleted) {
+                if (element.chunk != null) {
+                    edits.add(new RowEdit(RowEdit.Kind.REMOVE, rows.rowOf(element), null));
+                    rows.remove(element);
+                    element.row = null;
+                }
+            } else if (element.chunk == null) {
+                showInserted(element, edits);
+            } else {
+                Task task = element.task();
+                if (!sameTask(task, element.row)) {
+                    element.row = task;
+                    edits.add(new RowEdit(RowEdit.Kind.UPDATE, rows.rowOf(element), task));
+                }
+            }
+        }
+        touched.clear();
+        return edits;
+    }
+
+    // Shows a new element after the nearest shown one before it, along with the new ones in between
+    private void showInserted(Element element, List<RowEdit> edits) {
+        Deque<Element> pending = new ArrayDeque<>();
+        pending.push(element);
+        Element before = element.prev;
+        while (before != head && before.chunk == null) {
+            if (!before.deleted) {
+                pending.push(before);
+            }
+            before = before.prev;
+        }
+        int row = before == head ? 0 : rows.rowOf(before) + 1;
+        while (!pending.isEmpty()) {
+            Element next = pending.pop();
+            next.row = next.task();
+            rows.insert(row, next);
+            edits.add(new RowEdit(RowEdit.Kind.INSERT, row, next.row));
+            row++;
+        }
+    }
+
+    /**
+     * Ops that rebuild this sequence from nothing, tombstones included: each
+     * element inserted after its own parent with the values it holds now,
+     * then the writes that set them, under their original timestamps, and its
+     * delete. Parents come before their children in the order, so the ops
+     * apply in one pass, and applying them where the elements already exist
+     * changes nothing.
+     */
+    List<SyncOp> compact(String tab) {
+        List<SyncOp> ops = new ArrayList<>(byId.size());
+        for (Element element = head.next; element != null; element = element.next) {
+            ops.add(SyncOp.insert(tab, element.c, element.n, element.pc, element.pn, element.task()));
+            if (element.statusC != element.c || !element.statusN.equals(element.n)) {
+                ops.add(SyncOp.status(tab, element.statusC, element.statusN, element.c, element.n, element.status));
+            }
+            if (element.textC != element.c || !element.textN.equals(element.n)) {
+                ops.add(SyncOp.text(tab, element.textC, element.textN, element.c, element.n, element.text));
+            }
+            if (element.colorC != element.c || !element.colorN.equals(element.n)) {
+                ops.add(SyncOp.color(tab, element.colorC, element.colorN, element.c, element.n, element.color));
+            }
+            if (element.deleted) {
+                ops.add(SyncOp.delete(tab, element.c, element.n, element.c, element.n));
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Finds the rows that differ between two snapshots of a tab. Only the
+     * range between the matching start and end is examined further; rows
+     * that are the same object match at once, and two TaskSnapshots of the
+     * same size skip the chunks they share, so a small edit costs little
+     * whatever the list size. Touches no sequence, so it may run off the EDT.
+     */
+    static RowDiff diffRows(List<Task> old, List<Task> current) {
+        int oldSize = old.size();
+        int currentSize = current.size();
+        Task[][] oldChunks = old instanceof TaskSnapshot ? ((TaskSnapshot) old).chunks() : null;
+        Task[][] currentChunks = current instanceof TaskSnapshot ? ((TaskSnapshot) current).chunks() : null;
+        boolean aligned = oldChunks != null && currentChunks != null && oldSize == currentSize;
+
+        int prefix = 0;
+        while (prefix < oldSize && prefix < currentSize) {
+            int chunk = prefix >>> TaskSnapshot.CHUNK_SHIFT;
+            if (aligned && (prefix & TaskSnapshot.CHUNK_MASK) == 0 && oldChunks[chunk] == currentChunks[chunk]) {
+                prefix = Math.min(prefix + TaskSnapshot.CHUNK_SIZE, oldSize);
+            } else if (sameRow(old.get(prefix), current.get(prefix))) {
+                prefix++;
+            } else {
+                break;
+            }
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < currentSize - prefix) {
+            int last = oldSize - 1 - suffix;
+            int chunk = last >>> TaskSnapshot.CHUNK_SHIFT;
+            int chunkStart = chunk << TaskSnapshot.CHUNK_SHIFT;
+            if (aligned && chunkStart >= prefix && oldChunks[chunk] == currentChunks[chunk]) {
+                suffix += last - chunkStart + 1;
+            } else if (sameRow(old.get(last), current.get(currentSize - 1 - suffix))) {
+                suffix++;
+            } else {
+                break;
+            }
+        }
+        int oldMiddle = oldSize - prefix - suffix;
+        int newMiddle = currentSize - prefix - suffix;
+        int common = Math.min(oldMiddle, newMiddle);
+
+        int count = 0;
+        int[] updated = new int[common];
+        for (int i = prefix; i < prefix + common; i++) {
+            if (!sameRow(old.get(i), current.get(i))) {
+                updated[count++] = i;
+            }
+        }
+        return new RowDiff(Arrays.copyOf(updated, count), prefix + common,
+                oldMiddle - common, newMiddle - common);
+    }
+
+    /**
+     * Turns rows edited in the tab into ops, applies them and returns them
+     * for sending. The diff is between the rows this sequence last showed
+     * and current, which the tab shows now; the ops refer to the elements of
+     * those rows, so they merge with remote ops applied since then, and the
+     * shown rows become current.
+     *
+     * @param clock the node's Lamport counter, advanced for every op made
+     */
+    List<SyncOp> applyEdits(String tab, RowDiff diff, List<Task> current, long[] clock, String node) {
+        List<SyncOp> ops = new ArrayList<>();
+        for (int i : diff.updated) {
+            Element element = rows.get(i);
+            Task was = element.row;
+            Task task = current.get(i);
+            if (was.status != task.status) {
+                ops.add(SyncOp.status(tab, ++clock[0], node, element.c, element.n, task.status));
+            }
+            if (!Objects.equals(was.task, task.task)) {
+                ops.add(SyncOp.text(tab, ++clock[0], node, element.c, element.n, task.task));
+            }
+            if (was.checkboxColorRGB != task.checkboxColorRGB) {
+                ops.add(SyncOp.color(tab, ++clock[0], node, element.c, element.n, task.checkboxColorRGB));
+            }
+            element.row = task;
+        }
+        for (int i = 0; i < diff.removed; i++) {
+            Element element = rows.get(diff.start);
+            ops.add(SyncOp.delete(tab, ++clock[0], node, element.c, element.n));
+            rows.remove(element);
+            element.row = null;
+        }
+        // Each insert goes after the previous one, starting after the last kept row
+        Element anchor = diff.start > 0 ? rows.get(diff.start - 1) : null;
+        long parentC = anchor != null ? anchor.c : 0;
+        String parentN = anchor != null ? anchor.n : null;
+        List<SyncOp> inserts = new ArrayList<>(diff.inserted);
+        for (int i = diff.start; i < diff.start + diff.inserted; i++) {
+            long c = ++clock[0];
+            inserts.add(SyncOp.insert(tab, c, node, parentC, parentN, current.get(i)));
+            parentC = c;
+            parentN = node;
+        }
+        ops.addAll(inserts);
+
+        for (SyncOp op : ops) {
+            Element element = applyOp(op);
+            if (element.chunk == null && !element.deleted && element.row == null) {
+                element.row = element.task(); // One of the inserts, placed below
+            }
+            if (!element.deleted && element.row != null && !sameTask(element.task(), element.row)) {
+                touched.add(element); // A newer remote write won; the next show puts it in the row
+            }
+        }
+        for (int i = 0; i < inserts.size(); i++) {
+            SyncOp op = inserts.get(i);
+            rows.insert(diff.start + i, byId.get(id(op.c, op.n)));
+        }
+        return ops;
+    }
+
+    private static boolean sameRow(Task a, Task b) {
+        return a == b || sameTask(a, b);
+    }
+
+    private static boolean sameTask(Task a, Task b) {
+        return a.status == b.status && a.checkboxColorRGB == b.checkboxColorRGB && Objects.equals(a.task, b.task);
+    }
+
+    /**
+     *  RowChunk
+     *
+     *  A run of shown elements, in row order.
+     */
+    private static final class RowChunk {
+        final List<Element> elements;
+        int index; // Position in Rows.chunks
+
+        RowChunk(List<Element> elements) {
+            this.elements = elements;
+        }
+    }
+
+    /**
+     *  Rows
+     *
+     *  The shown elements in row order, in chunks like TaskSnapshot's. A
+     *  Fenwick tree over the chunk sizes finds the chunk of a row, and the
+     *  first row of a chunk, in log time; within a chunk it is a short scan.
+     *  A full chunk is split in two, an empty one dropped, and the tree
+     *  rebuilt then, which happens once per many edits.
+     */
+    private static final class Rows {
+        private static final int MAX_CHUNK = 2 * TaskSnapshot.CHUNK_SIZE;
+
+        private final List<RowChunk> chunks = new ArrayList<>();
+        private int[] tree = new int[1]; // 1 based; tree[i] sums the sizes of a range of chunks ending at i - 1
+        private int size;
+
+        void reset(List<Element> elements) {
+            chunks.clear();
+            for (int from = 0; from < elements.size(); from += TaskSnapshot.CHUNK_SIZE) {
+                List<Element> part = elements.subList(from, Math.min(from + TaskSnapshot.CHUNK_SIZE, elements.size()));
+                RowChunk chunk = new RowChunk(new ArrayList<>(part));
+                for (Element element : chunk.elements) {
+                    element.chunk = chunk;
+                }
+                chunks.add(chunk);
+            }
+            size = elements.size();
+            rebuild();
+        }
+
+        Element get(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            // Descends the tree to the last chunk starting at or before the row
+            int position = 0;
+            int rest = row;
+            for (int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1) {
+                if (position + step <= chunks.size() && tree[position + step] <= rest) {
+                    position += step;
+                    rest -= tree[position];
+                }
+            }
+            return chunks.get(position).elements.get(rest);
+        }
+
+        int rowOf(Element element) {
+            return rowsBefore(element.chunk.index) + element.chunk.elements.indexOf(element);
+        }
+
+        void insert(int row, Element element) {
+            if (chunks.isEmpty()) {
+                chunks.add(new RowChunk(new ArrayList<>()));
+                rebuild();
+            }
+            RowChunk chunk;
+            int offset;
+            if (row == size) {
+                chunk = chunks.get(chunks.size() - 1);
+                offset = chunk.elements.size();
+            } else {
+                chunk = get(row).chunk;
+                offset = row - rowsBefore(chunk.index);
+            }
+            chunk.elements.add(offset, element);
+            element.chunk = chunk;
+            size++;
+            if (chunk.elements.size() > MAX_CHUNK) {
+                List<Element> half = chunk.elements.subList(chunk.elements.size() / 2, chunk.elements.size());
+                RowChunk split = new RowChunk(new ArrayList<>(half));
+                half.clear();
+                for (Element moved : split.elements) {
+                    moved.chunk = split;
+                }
+                chunks.add(chunk.index + 1, split);
+                rebuild();
+            } else {
+                add(chunk.index, 1);
+            }
+        }
+
+        void remove(Element element) {
+            RowChunk chunk = element.chunk;
+            chunk.elements.remove(element);
+            element.chunk = null;
+            size--;
+            if (chunk.elements.isEmpty()) {
+                chunks.remove(chunk.index);
+                rebuild();
+            } else {
+                add(chunk.index, -1);
+            }
+        }
+
+        private int rowsBefore(int chunkIndex) {
+            int sum = 0;
+            for (int i = chunkIndex; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        private void add(int chunkIndex, int delta) {
+            for (int i = chunkIndex + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private void rebuild() {
+            tree = new int[chunks.size() + 1];
+            for (int i = 0; i < chunks.size(); i++) {
+                RowChunk chunk = chunks.get(i);
+                chunk.index = i;
+                tree[i + 1] += chunk.elements.size();
+                int parent = i + 1 + ((i + 1) & -(i + 1));
+                if (parent < tree.length) {
+                    tree[parent] += tree[i + 1];
+                }
+            }
+        }
+    }
+}
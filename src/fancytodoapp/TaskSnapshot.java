@@ -0,0 +1,54 @@
+package fancytodoapp;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+/**
+ *
+ *  TaskSnapshot
+ *
+ *  Immutable, point-in-time view of a TaskStore. Safe to read from any thread.
+ *  The tasks are stored in fixed size chunks so consecutive snapshots share
+ *  every chunk a mutation batch did not touch. Task objects handed out here are
+ *  read-only copies and must not be modified.
+ *
+ */
+public final class TaskSnapshot extends AbstractList<Task> implements RandomAccess {
+
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    static final TaskSnapshot EMPTY = new TaskSnapshot(0, new Task[0][], 0);
+
+    private final long version;
+    private final Task[][] chunks;
+    private final int size;
+
+    TaskSnapshot(long version, Task[][] chunks, int size) {
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    // Increases by one for every published mutation batch
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Task get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    Task[][] chunks() {
+        return chunks;
+    }
+}
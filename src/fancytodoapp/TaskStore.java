@@ -0,0 +1,261 @@
+package fancytodoapp;
+
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+/**
+ *
+ *  TaskStore
+ *
+ *  Holds the tasks of one tab. The EDT is the only writer; every mutation
+ *  batch publishes a new TaskSnapshot which other threads can read without
+ *  locking. Chunks untouched by a batch are shared with the previous snapshot.
+ *  Each change is also published as a TaskChangeEvent once its snapshot is out.
+ *
+ */
+public class TaskStore {
+
+    private final List<Task> tasks = new ArrayList<>(); // Live tasks, EDT only
+    private final List<Task> frozen = new ArrayList<>(); // Read-only copies, parallel to tasks
+    private volatile TaskSnapshot snapshot = TaskSnapshot.EMPTY;
+
+    private final BitSet dirtyChunks = new BitSet();
+    private int shiftedFrom = Integer.MAX_VALUE; // First index moved by an insert or remove
+    private int batchDepth = 0;
+    private boolean dirty = false;
+
+    private final String tabId;
+    private volatile String tabName;
+    private final List<TaskChangeEvent.Type> pendingTypes = new ArrayList<>();
+    private final List<Integer> pendingIndexes = new ArrayList<>();
+    private final List<Task> pendingTasks = new ArrayList<>();
+    private boolean reloading = false;
+
+    public TaskStore(String tabId, String tabName) {
+        this.tabId = tabId;
+        this.tabName = tabName;
+    }
+
+    public String getTabId() {
+        return tabId;
+    }
+
+    public String getTabName() {
+        return tabName;
+    }
+
+    // Called when the tab is renamed so later events carry the new name
+    public void setTabName(String tabName) {
+        this.tabName = tabName;
+    }
+
+    // Latest published snapshot, callable from any thread
+    public TaskSnapshot snapshot() {
+        return snapshot;
+    }
+
+    // Live view of the tasks for the EDT. Mutate through the store only
+    public List<Task> tasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public Task get(int index) {
+        return tasks.get(index);
+    }
+
+    public void add(Task task) {
+        add(tasks.size(), task);
+    }
+
+    public void add(int index, Task task) {
+        checkWriter();
+        if (task.status && task.completedAt == 0) {
+            task.completedAt = System.currentTimeMillis(); // Done before times were kept, the archive clock starts now
+        }
+        tasks.add(index, task);
+        Task copy = new Task(task);
+        frozen.add(index, copy);
+        queueEvent(TaskChangeEvent.Type.TASK_ADDED, index, copy);
+        markShifted(index);
+    }
+
+    public void addAll(Collection<Task> newTasks) {
+        batch(() -> {
+            for (Task task : newTasks) {
+                add(task);
+            }
+        });
+    }
+
+    public Task remove(int index) {
+        checkWriter();
+        Task removed = tasks.remove(index);
+        queueEvent(TaskChangeEvent.Type.TASK_REMOVED, index, frozen.remove(index));
+        markShifted(index);
+        return removed;
+    }
+
+    // Removes every matching task in one pass, however many there are
+    public int removeIf(Predicate<Task> filter) {
+        checkWriter();
+        int lowest = -1;
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (filter.test(tasks.get(i))) {
+                // Queued from the end so every index is still valid when its event is applied
+                queueEvent(TaskChangeEvent.Type.TASK_REMOVED, i, frozen.get(i));
+                tasks.set(i, null);
+                frozen.set(i, null);
+                lowest = i;
+            }
+        }
+        if (lowest == -1) {
+            return 0;
+        }
+        int before = tasks.size();
+        tasks.removeIf(Objects::isNull);
+        frozen.removeIf(Objects::isNull);
+        markShifted(lowest);
+        return before - tasks.size();
+    }
+
+    public void replaceAll(Collection<Task> newTasks) {
+        batch(() -> {
+            reloading = true;
+            try {
+                tasks.clear();
+                frozen.clear();
+                markShifted(0);
+                addAll(newTasks);
+            } finally {
+                reloading = false;
+            }
+            queueEvent(TaskChangeEvent.Type.TASKS_RELOADED, -1, null);
+        });
+    }
+
+    public void setStatus(int index, boolean status) {
+        checkWriter();
+        tasks.get(index).setStatus(status);
+        markUpdated(index, TaskChangeEvent.Type.TASK_UPDATED);
+    }
+
+    // Copies the status of a task read from elsewhere, keeping when it was checked there
+    public void setStatus(int index, boolean status, long completedAt) {
+        checkWriter();
+        tasks.get(index).setStatus(status, completedAt);
+        markUpdated(index, TaskChangeEvent.Type.TASK_UPDATED);
+    }
+
+    public void setText(int index, String text) {
+        checkWriter();
+        tasks.get(index).task = text;
+        markUpdated(index, TaskChangeEvent.Type.TASK_UPDATED);
+    }
+
+    public void setCheckboxColor(int index, Color color) {
+        checkWriter();
+        tasks.get(index).setCheckboxColor(color);
+        markUpdated(index, TaskChangeEvent.Type.TASK_RECOLORED);
+    }
+
+    // Runs several mutations and publishes a single snapshot at the end
+    public void batch(Runnable mutations) {
+        checkWriter();
+        batchDepth++;
+        try {
+            mutations.run();
+        } finally {
+            batchDepth--;
+            if (batchDepth == 0 && dirty) {
+                publish();
+            }
+        }
+    }
+
+    private void markUpdated(int index, TaskChangeEvent.Type type) {
+        Task copy = new Task(tasks.get(index));
+        frozen.set(index, copy);
+        queueEvent(type, index, copy);
+        dirtyChunks.set(index >>> TaskSnapshot.CHUNK_SHIFT);
+        changed();
+    }
+
+    private void queueEvent(TaskChangeEvent.Type type, int index, Task task) {
+        if (reloading || !TaskEventPublisher.hasSubscribers()) {
+            return;
+        }
+        pendingTypes.add(type);
+        pendingIndexes.add(index);
+        pendingTasks.add(task);
+    }
+
+    // Events go out after the snapshot so subscribers always find their change in it
+    private void publishEvents(long version) {
+        String name = tabName;
+        for (int i = 0; i < pendingTypes.size(); i++) {
+            TaskChangeEvent.Type type = pendingTypes.get(i);
+            TaskEventPublisher.publish(type == TaskChangeEvent.Type.TASKS_RELOADED
+                    ? TaskChangeEvent.tasksReloaded(tabId, name, version)
+                    : TaskChangeEvent.taskChange(type, tabId, name, pendingIndexes.get(i), pendingTasks.get(i), version));
+        }
+        pendingTypes.clear();
+        pendingIndexes.clear();
+        pendingTasks.clear();
+    }
+
+    private void markShifted(int index) {
+        shiftedFrom = Math.min(shiftedFrom, index);
+        changed();
+    }
+
+    private void changed() {
+        dirty = true;
+        if (batchDepth == 0) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        TaskSnapshot previous = snapshot;
+        Task[][] oldChunks = previous.chunks();
+        int size = frozen.size();
+        int chunkCount = (size + TaskSnapshot.CHUNK_MASK) >>> TaskSnapshot.CHUNK_SHIFT;
+        Task[][] chunks = new Task[chunkCount][];
+        for (int c = 0; c < chunkCount; c++) {
+            int start = c << TaskSnapshot.CHUNK_SHIFT;
+            int end = Math.min(start + TaskSnapshot.CHUNK_SIZE, size);
+            boolean reusable = c < oldChunks.length
+                    && !dirtyChunks.get(c)
+                    && end <= shiftedFrom
+                    && oldChunks[c].length == end - start;
+            if (reusable) {
+                chunks[c] = oldChunks[c];
+            } else {
+                chunks[c] = frozen.subList(start, end).toArray(new Task[0]);
+            }
+        }
+        dirtyChunks.clear();
+        shiftedFrom = Integer.MAX_VALUE;
+        dirty = false;
+        snapshot = new TaskSnapshot(previous.getVersion() + 1, chunks, size);
+        if (!pendingTypes.isEmpty()) {
+            publishEvents(snapshot.getVersion());
+        }
+    }
+
+    private void checkWriter() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("TaskStore may only be modified on the EDT");
+        }
+    }
+}
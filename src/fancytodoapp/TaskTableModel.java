@@ -1,7 +1,9 @@
 package fancytodoapp;
 
-import java.util.List;
 import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  *
@@ -9,34 +11,58 @@ import javax.swing.table.AbstractTableModel;
  * 
  *  TaskTableModel
  * 
- *  The to-do list table model. Contains the status(checked or unchecked) and the task string
+ *  The to-do list table model. Contains the status(checked or unchecked) and the task string.
+ *  Backed by a TaskStore, so every edit made through the table is published
+ *  to the store's snapshot readers.
  * 
  */
 public class TaskTableModel extends AbstractTableModel {
-    private List<Task> tasks;
+    private final TaskStore store;
     private String[] columnNames = {"Status", "Task"};
 
-    public TaskTableModel(List<Task> tasks) {
-        this.tasks = tasks;
+    public TaskTableModel(TaskStore store) {
+        this.store = store;
     }
 
     public void addTask(Task task) {
-        getTasks().add(task);
-        fireTableRowsInserted(getTasks().size() - 1, getTasks().size() - 1);
+        store.add(task);
+        fireTableRowsInserted(store.size() - 1, store.size() - 1);
+    }
+
+    public void insertTask(int index, Task task) {
+        store.add(index, task);
+        fireTableRowsInserted(index, index);
+    }
+
+    // Gives a row the status, text and checkbox color of task
+    public void replaceTask(int index, Task task) {
+        Task current = store.get(index);
+        if (current.status != task.status && task.completedAt != 0) {
+            store.setStatus(index, task.status, task.completedAt);
+        } else if (current.status != task.status) {
+            store.setStatus(index, task.status); // Checked now, as far as this row knows
+        }
+        if (!Objects.equals(current.task, task.task)) {
+            store.setText(index, task.task);
+        }
+        if (current.checkboxColorRGB != task.checkboxColorRGB) {
+            store.setCheckboxColor(index, task.getCheckboxColor());
+        }
+        fireTableRowsUpdated(index, index);
     }
 
     public void removeTask(int index) {
-        getTasks().remove(index);
+        store.remove(index);
         fireTableRowsDeleted(index, index);
     }
 
     public Task getTask(int index) {
-        return getTasks().get(index);
+        return store.get(index);
     }
 
     @Override
     public int getRowCount() {
-        return getTasks().size();
+        return store.size();
     }
 
     @Override
@@ -46,7 +72,7 @@ public class TaskTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Task task = getTasks().get(rowIndex);
+        Task task = store.get(rowIndex);
         if (columnIndex == 0) {
             return task.status;
         } else if (columnIndex == 1) {
@@ -57,15 +83,191 @@ public class TaskTableModel extends AbstractTableModel {
 
     @Override
     public void setValueAt(Object value, int rowIndex, int columnIndex) {
-        Task task = getTasks().get(rowIndex);
         if (columnIndex == 0) {
-            task.status = (Boolean) value;
+            store.setStatus(rowIndex, (Boolean) value);
         } else if (columnIndex == 1) {
-            task.task = (String) value;
+            store.setText(rowIndex, (String) value);
         }
         fireTableCellUpdated(rowIndex, columnIndex);
     }
 
+    /**
+     * Brings the rows in line with tasks read from elsewhere. Rows matching at
+     * the start and end are left alone; only the changed range in between is
+     * updated, removed or inserted, in one store batch. Update events cover
+     * only the rows that actually changed, so views repaint just those.
+     *
+     * @return true if anything changed
+     */
+    public boolean syncTo(List<Task> incoming) {
+        int currentSize = store.size();
+        int incomingSize = incoming.size();
+        int prefix = 0;
+        while (prefix < currentSize && prefix < incomingSize && sameTask(store.get(prefix), incoming.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < currentSize - prefix && suffix < incomingSize - prefix
+                && sameTask(store.get(currentSize - 1 - suffix), incoming.get(incomingSize - 1 - suffix))) {
+            suffix++;
+        }
+        int oldMiddle = currentSize - prefix - suffix;
+        int newMiddle = incomingSize - prefix - suffix;
+        if (oldMiddle == 0 && newMiddle == 0) {
+            return false;
+        }
+
+        int start = prefix;
+        int common = Math.min(oldMiddle, newMiddle);
+        List<int[]> updated = new ArrayList<>(); // Runs of changed rows, first and last
+        store.batch(() -> {
+            for (int i = start; i < start + common; i++) {
+                Task current = store.get(i);
+                Task next = incoming.get(i);
+                if (sameTask(current, next)) {
+                    continue;
+                }
+                int[] run = updated.isEmpty() ? null : updated.get(updated.size() - 1);
+                if (run != null && run[1] == i - 1) {
+                    run[1] = i;
+                } else {
+                    updated.add(new int[]{i, i});
+                }
+                if (current.status != next.status) {
+                    store.setStatus(i, next.status, next.completedAt); // Checked when the source says, not now
+                }
+                if (!Objects.equals(current.task, next.task)) {
+                    store.setText(i, next.task);
+                }
+                if (current.checkboxColorRGB != next.checkboxColorRGB) {
+                    store.setCheckboxColor(i, next.getCheckboxColor());
+                }
+            }
+            for (int i = start + oldMiddle - 1; i >= start + common; i--) {
+                store.remove(i);
+            }
+            for (int i = start + common; i < start + newMiddle; i++) {
+                store.add(i, new Task(incoming.get(i)));
+            }
+        });
+
+        for (int[] run : updated) {
+            fireTableRowsUpdated(run[0], run[1]);
+        }
+        if (oldMiddle > common) {
+            fireTableRowsDeleted(start + common, start + oldMiddle - 1);
+        } else if (newMiddle > common) {
+            fireTableRowsInserted(start + common, start + newMiddle - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Tells the views what changed since the tasks were as before, for
+     * changes made to the store directly. Rows matching at the start and end
+     * are left alone. When the rows in between were only removed, or only
+     * added, exactly those rows are reported, so the selection, an edit in
+     * progress and the row heights of the others survive; anything else is
+     * reported as updated rows plus the rows removed or added at the end.
+     */
+    public void fireChangesSince(List<Task> before) {
+        int oldSize = before.size();
+        int newSize = store.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && sameTask(before.get(prefix), store.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && sameTask(before.get(oldSize - 1 - suffix), store.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        int oldMiddle = oldSize - prefix - suffix;
+        int newMiddle = newSize - prefix - suffix;
+        if (oldMiddle == 0 && newMiddle == 0) {
+            return;
+        }
+        if (newMiddle < oldMiddle && fireRemoved(before, prefix, oldMiddle, newMiddle)) {
+            return;
+        }
+        if (newMiddle > oldMiddle && fireInserted(before, prefix, oldMiddle, newMiddle)) {
+            return;
+        }
+
+        int common = Math.min(oldMiddle, newMiddle);
+        int runStart = -1;
+        for (int i = prefix; i <= prefix + common; i++) {
+            boolean changed = i < prefix + common && !sameTask(before.get(i), store.get(i));
+            if (changed && runStart < 0) {
+                runStart = i;
+            } else if (!changed && runStart >= 0) {
+                fireTableRowsUpdated(runStart, i - 1);
+                runStart = -1;
+            }
+        }
+        if (oldMiddle > common) {
+            fireTableRowsDeleted(prefix + common, prefix + oldMiddle - 1);
+        } else if (newMiddle > common) {
+            fireTableRowsInserted(prefix + common, prefix + newMiddle - 1);
+        }
+    }
+
+    // Reports the removed rows if the new middle is the old one with rows taken out, else false
+    private boolean fireRemoved(List<Task> before, int start, int oldMiddle, int newMiddle) {
+        List<int[]> removed = new ArrayList<>(); // Runs of old rows, first and last
+        int next = start; // Next row of the new middle to match
+        for (int i = start; i < start + oldMiddle; i++) {
+            if (next < start + newMiddle && sameTask(before.get(i), store.get(next))) {
+                next++;
+                continue;
+            }
+            int[] run = removed.isEmpty() ? null : removed.get(removed.size() - 1);
+            if (run != null && run[1] == i - 1) {
+                run[1] = i;
+            } else {
+                removed.add(new int[]{i, i});
+            }
+        }
+        if (next != start + newMiddle) {
+            return false;
+        }
+        // From the last run up, so the rows of every event are still where it says
+        for (int r = removed.size() - 1; r >= 0; r--) {
+            fireTableRowsDeleted(removed.get(r)[0], removed.get(r)[1]);
+        }
+        return true;
+    }
+
+    // Reports the added rows if the old middle is the new one with rows taken out, else false
+    private boolean fireInserted(List<Task> before, int start, int oldMiddle, int newMiddle) {
+        List<int[]> inserted = new ArrayList<>(); // Runs of new rows, first and last
+        int next = start; // Next row of the old middle to match
+        for (int i = start; i < start + newMiddle; i++) {
+            if (next < start + oldMiddle && sameTask(before.get(next), store.get(i))) {
+                next++;
+                continue;
+            }
+            int[] run = inserted.isEmpty() ? null : inserted.get(inserted.size() - 1);
+            if (run != null && run[1] == i - 1) {
+                run[1] = i;
+            } else {
+                inserted.add(new int[]{i, i});
+            }
+        }
+        if (next != start + oldMiddle) {
+            return false;
+        }
+        // From the first run down, so the rows above every event are already in
+        for (int[] run : inserted) {
+            fireTableRowsInserted(run[0], run[1]);
+        }
+        return true;
+    }
+
+    private static boolean sameTask(Task a, Task b) {
+        return a.status == b.status && a.checkboxColorRGB == b.checkboxColorRGB && Objects.equals(a.task, b.task);
+    }
+
     @Override
     public String getColumnName(int column) {
         return getColumnNames()[column];
@@ -81,15 +283,11 @@ public class TaskTableModel extends AbstractTableModel {
         return true; // Both columns are editable
     }
 
-    public List<Task> getTasks() {
-        return tasks;
-    }
-
     /**
-     * @param tasks the tasks to set
+     * @return the store backing this model
      */
-    public void setTasks(List<Task> tasks) {
-        this.tasks = tasks;
+    public TaskStore getStore() {
+        return store;
     }
 
     /**
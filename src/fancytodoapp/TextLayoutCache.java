@@ -0,0 +1,185 @@
+package fancytodoapp;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextHitInfo;
+import java.awt.font.TextLayout;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+/**
+ *
+ *  TextLayoutCache
+ *
+ *  Task text broken into lines for a given width, shared by every tab.
+ *  Breaking text is the expensive part of wrapped rows, and both measuring a
+ *  row's height and painting it need the same lines, so each (text, width,
+ *  font) is broken once and kept; the least recently used go first. A width
+ *  change simply asks for other keys, the old ones age out. The lines carry
+ *  the text's inline markdown (see InlineMarkdown) as styled runs, so
+ *  painting a cached text only draws. Looking one up allocates nothing.
+ *  EDT only.
+ *
+ */
+final class TextLayoutCache {
+
+    private static final int MAX_LAYOUTS = 4096;
+
+    private static final Map<Key, Wrapped> LAYOUTS = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Wrapped> eldest) {
+            return size() > MAX_LAYOUTS;
+        }
+    };
+
+    private static final Key PROBE = new Key(); // Reused for lookups
+
+    private TextLayoutCache() {
+    }
+
+    /**
+     *  Wrapped
+     *
+     *  The lines of one text at one width, and the height they take.
+     */
+    static final class Wrapped {
+        final TextLayout[] lines; // Null entries are empty lines
+        final float[] baselines; // Of each line, from the top
+        final int height;
+        private final float[] bottoms; // Of each line, from the top
+        private final int[] starts; // Offset of each line in the shown text
+        private final InlineMarkdown.Parsed parsed;
+
+        Wrapped(TextLayout[] lines, float[] baselines, float[] bottoms, int[] starts, InlineMarkdown.Parsed parsed) {
+            this.lines = lines;
+            this.baselines = baselines;
+            this.bottoms = bottoms;
+            this.starts = starts;
+            this.parsed = parsed;
+            this.height = bottoms.length == 0 ? 0 : (int) Math.ceil(bottoms[bottoms.length - 1]);
+        }
+
+        // Link target under the point, relative to the top left of the text, or null
+        String linkAt(float x, float y) {
+            for (int i = 0; i < lines.length; i++) {
+                if (y < bottoms[i]) {
+                    TextLayout line = lines[i];
+                    if (line == null || x < 0 || x > line.getAdvance()) {
+                        return null;
+                    }
+                    TextHitInfo hit = line.hitTestChar(x, y - baselines[i]);
+                    return parsed.linkAt(starts[i] + hit.getCharIndex());
+                }
+            }
+            return null;
+        }
+    }
+
+    // Drops every layout, for look and feel changes that alter link colors
+    static void clear() {
+        LAYOUTS.clear();
+    }
+
+    // The text broken into lines no wider than width
+    static Wrapped layout(String text, Font font, FontRenderContext context, int width) {
+        PROBE.set(text == null ? "" : text, font, context, Math.max(width, 1));
+        Wrapped wrapped = LAYOUTS.get(PROBE);
+        if (wrapped == null) {
+            Key key = new Key();
+            key.set(PROBE.text, font, context, PROBE.width);
+            wrapped = wrap(key);
+            LAYOUTS.put(key, wrapped);
+        }
+        return wrapped;
+    }
+
+    private static Wrapped wrap(Key key) {
+        InlineMarkdown.Parsed parsed = InlineMarkdown.parse(key.text);
+        String text = parsed.text;
+
+        // Height of an empty line, so blank text and blank paragraphs still take one
+        TextLayout probe = new TextLayout("X", key.font, key.context);
+        float emptyAscent = probe.getAscent();
+        float emptyHeight = probe.getAscent() + probe.getDescent() + probe.getLeading();
+
+        List<TextLayout> lines = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        LineBreakMeasurer measurer = text.isEmpty() ? null
+                : new LineBreakMeasurer(parsed.attributed(key.font).getIterator(), key.context);
+        int position = 0;
+        while (true) {
+            int newline = text.indexOf('\n', position);
+            int limit = newline < 0 ? text.length() : newline;
+            if (position == limit) {
+                lines.add(null);
+                starts.add(position);
+            } else {
+                measurer.setPosition(position);
+                while (measurer.getPosition() < limit) {
+                    starts.add(measurer.getPosition());
+                    lines.add(measurer.nextLayout(key.width, limit, false));
+                }
+            }
+            if (newline < 0) {
+                break;
+            }
+            position = newline + 1;
+        }
+
+        float[] baselines = new float[lines.size()];
+        float[] bottoms = new float[lines.size()];
+        int[] lineStarts = new int[lines.size()];
+        float y = 0;
+        for (int i = 0; i < baselines.length; i++) {
+            TextLayout line = lines.get(i);
+            if (line == null) {
+                baselines[i] = y + emptyAscent;
+                y += emptyHeight;
+            } else {
+                baselines[i] = y + line.getAscent();
+                y += line.getAscent() + line.getDescent() + line.getLeading();
+            }
+            bottoms[i] = y;
+            lineStarts[i] = starts.get(i);
+        }
+        return new Wrapped(lines.toArray(new TextLayout[0]), baselines, bottoms, lineStarts, parsed);
+    }
+
+    /**
+     *  Key
+     *
+     *  Text, width and font; the render context too, as glyph advances differ between scales.
+     */
+    private static final class Key {
+        private String text;
+        private Font font;
+        private FontRenderContext context;
+        private int width;
+        private int hash;
+
+        // Only the probe is set again; keys in the map never change
+        void set(String text, Font font, FontRenderContext context, int width) {
+            this.text = text;
+            this.font = font;
+            this.context = context;
+            this.width = width;
+            this.hash = ((text.hashCode() * 31 + font.hashCode()) * 31 + context.hashCode()) * 31 + width;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return width == key.width && text.equals(key.text) && font.equals(key.font) && context.equals(key.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
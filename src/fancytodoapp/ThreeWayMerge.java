@@ -0,0 +1,100 @@
+package fancytodoapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+/**
+ *
+ *  ThreeWayMerge
+ *
+ *  Merges two edited copies of a list against the copy both started from.
+ *  Items are matched by key (task text, tab name); repeated keys are matched
+ *  by occurrence. An item changed on one side takes that side, an item
+ *  changed on both takes ours. Additions from both sides are kept, ours
+ *  placed after the item that preceded them. A deletion wins unless the
+ *  other side edited the item.
+ *
+ */
+public final class ThreeWayMerge {
+
+    private ThreeWayMerge() {
+    }
+
+    public static <T> List<T> merge(List<T> base, List<T> ours, List<T> theirs,
+                                    Function<T, String> key, BiPredicate<T, T> same) {
+        Map<String, T> baseItems = keyed(base, key);
+        Map<String, T> ourItems = keyed(ours, key);
+        Map<String, T> theirItems = keyed(theirs, key);
+
+        // Their order is the skeleton
+        List<String> resultKeys = new ArrayList<>();
+        Map<String, T> result = new HashMap<>();
+        for (Map.Entry<String, T> entry : theirItems.entrySet()) {
+            T ourItem = ourItems.get(entry.getKey());
+            T baseItem = baseItems.get(entry.getKey());
+            T kept;
+            if (ourItem != null) {
+                kept = baseItem != null && same.test(ourItem, baseItem) ? entry.getValue() : ourItem;
+            } else if (baseItem == null || !same.test(entry.getValue(), baseItem)) {
+                kept = entry.getValue(); // Added by them, or deleted by us after they edited it
+            } else {
+                continue; // Deleted by us
+            }
+            resultKeys.add(entry.getKey());
+            result.put(entry.getKey(), kept);
+        }
+
+        // Our additions hang off the nearest preceding item that made it into the result
+        Map<String, List<T>> insertAfter = new HashMap<>();
+        Set<String> present = new HashSet<>(resultKeys);
+        String anchor = "";
+        for (Map.Entry<String, T> entry : ourItems.entrySet()) {
+            if (present.contains(entry.getKey())) {
+                anchor = entry.getKey();
+                continue;
+            }
+            if (theirItems.containsKey(entry.getKey())) {
+                continue;
+            }
+            T baseItem = baseItems.get(entry.getKey());
+            if (baseItem == null || !same.test(entry.getValue(), baseItem)) {
+                insertAfter.computeIfAbsent(anchor, k -> new ArrayList<>()).add(entry.getValue());
+            }
+        }
+
+        List<T> merged = new ArrayList<>(resultKeys.size() + 8);
+        merged.addAll(insertAfter.getOrDefault("", new ArrayList<>()));
+        for (String resultKey : resultKeys) {
+            merged.add(result.get(resultKey));
+            List<T> inserted = insertAfter.get(resultKey);
+            if (inserted != null) {
+                merged.addAll(inserted);
+            }
+        }
+        return merged;
+    }
+
+    // Keys are "<key>\0<occurrence>" so duplicates pair up in order. The anchor "" never collides
+    private static <T> Map<String, T> keyed(List<T> items, Function<T, String> key) {
+        Map<String, T> keyed = new LinkedHashMap<>();
+        if (items == null) {
+            return keyed;
+        }
+        Map<String, Integer> seen = new HashMap<>();
+        for (T item : items) {
+            if (item == null) {
+                continue;
+            }
+            String k = key.apply(item);
+            int occurrence = seen.merge(k, 1, Integer::sum);
+            keyed.put(k + '\0' + occurrence, item);
+        }
+        return keyed;
+    }
+}
@@ -0,0 +1,308 @@
+package fancytodoapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+/**
+ *
+ *  TodoCli
+ * 
+ *  Headless entry point for scripts and cron jobs. Works on fancytodo_data
+ *  through the configured StorageProvider and never touches Swing or AWT,
+ *  so it starts quickly and runs on machines without a display.
+ * 
+ *  Usage: java -cp FancyToDo.jar fancytodoapp.TodoCli <command> ...
+ * 
+ */
+public class TodoCli {
+
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_USAGE = 1;
+    private static final int EXIT_ERROR = 2;
+    private static final String DONE_PREFIX = "[x] ";
+    private static final String OPEN_PREFIX = "[ ] ";
+
+    private final StorageProvider storage = StorageProviders.current();
+    private final StorageProvider.TabStorage tabRegistry = storage.tabStorage();
+    private final PrintStream out;
+    private final PrintStream err;
+
+    public TodoCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int status = new TodoCli(System.out, System.err).run(Arrays.asList(args));
+        System.out.flush();
+        System.exit(status);
+    }
+
+    public int run(List<String> args) {
+        if (args.isEmpty()) {
+            return usage();
+        }
+        List<String> params = args.subList(1, args.size());
+        try {
+            switch (args.get(0)) {
+                case "tabs":
+                    return listTabs();
+                case "list":
+                    return params.isEmpty() ? usage() : listTasks(params.get(0), params.subList(1, params.size()));
+                case "add":
+                    return params.size() < 2 ? usage() : addTask(params.get(0), String.join(" ", params.subList(1, params.size())));
+                case "complete":
+                    return params.size() < 2 ? usage() : completeTask(params.get(0), params.get(1));
+                case "export":
+                    return params.isEmpty() ? usage() : exportTasks(params.get(0), params.size() > 1 ? params.get(1) : "-");
+                case "import":
+                    return params.size() < 2 ? usage() : importTasks(params.get(0), params.get(1));
+                default:
+                    return usage();
+            }
+        } catch (IOException | RuntimeException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    private int usage() {
+        err.println("Usage: TodoCli <command>");
+        err.println("  tabs                          List the tabs");
+        err.println("  list <tab> [--open|--done]    List the tasks of a tab");
+        err.println("  add <tab> <text...>           Add a task, creating the tab if needed");
+        err.println("  complete <tab> <number|text>  Mark a task done (numbers as shown by list)");
+        err.println("  export <tab> [file|-]         Write tasks as '[x] text' lines");
+        err.println("  import <tab> <file|->         Append one task per line, '[x] ' marks it done; .gz/.zz files are decompressed");
+        return EXIT_USAGE;
+    }
+
+    private int listTabs() {
+        List<TabInfo> tabs = tabRegistry.load();
+        if (tabs != null) {
+            for (TabInfo tab : tabs) {
+                out.println(tab.getName());
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private int listTasks(String tabName, List<String> options) throws IOException {
+        TabInfo tab = requireTab(tabName);
+        if (tab == null) {
+            return EXIT_ERROR;
+        }
+        boolean openOnly = options.contains("--open");
+        boolean doneOnly = options.contains("--done");
+        int[] number = {0};
+        storage.taskStorage(tab.getId()).streamTasks(task -> {
+            number[0]++;
+            if ((openOnly && task.status) || (doneOnly && !task.status)) {
+                return;
+            }
+            out.println(number[0] + " " + format(task));
+        });
+        return EXIT_OK;
+    }
+
+    private int addTask(String tabName, String text) throws IOException {
+        // The running app owns the files and would overwrite our change, so hand it over
+        if (SingleInstance.isRunning()) {
+            if (SingleInstance.forward(Arrays.asList("--tab", tabName, "--add", text))) {
+                return EXIT_OK;
+            }
+            err.println("FancyToDo is running but did not accept the task.");
+            return EXIT_ERROR;
+        }
+        TabInfo tab = findOrCreateTab(tabName);
+        storage.taskStorage(tab.getId()).rewriteTasks(task -> task,
+                List.of(new Task(false, text)).iterator());
+        return EXIT_OK;
+    }
+
+    private int completeTask(String tabName, String which) throws IOException {
+        if (refuseWhileRunning()) {
+            return EXIT_ERROR;
+        }
+        TabInfo tab = requireTab(tabName);
+        if (tab == null) {
+            return EXIT_ERROR;
+        }
+        int target = parseNumber(which);
+        int[] number = {0};
+        int[] completed = {0};
+        storage.taskStorage(tab.getId()).rewriteTasks(task -> {
+            number[0]++;
+            boolean matches = target > 0 ? number[0] == target : which.equals(task.task);
+            if (matches && !task.status && (target > 0 || completed[0] == 0)) {
+                task.setStatus(true);
+                completed[0]++;
+            }
+            return task;
+        }, List.<Task>of().iterator());
+        if (completed[0] == 0) {
+            err.println("No open task '" + which + "' in " + tab.getName());
+            return EXIT_ERROR;
+        }
+        return EXIT_OK;
+    }
+
+    private int exportTasks(String tabName, String target) throws IOException {
+        TabInfo tab = requireTab(tabName);
+        if (tab == null) {
+            return EXIT_ERROR;
+        }
+        boolean toStdout = target.equals("-");
+        Writer writer = toStdout
+                ? new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))
+                : new BufferedWriter(new OutputStreamWriter( // tasks.txt.gz is written gzipped
+                        Codecs.forFileName(target).compress(Files.newOutputStream(Paths.get(target))), StandardCharsets.UTF_8));
+        try {
+            IOException[] failure = {null};
+            storage.taskStorage(tab.getId()).streamTasks(task -> {
+                if (failure[0] == null) {
+                    try {
+                        writer.write(format(task));
+                        writer.write(System.lineSeparator());
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } finally {
+            if (toStdout) {
+                writer.flush(); // Leave stdout open
+            } else {
+                writer.close();
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private int importTasks(String tabName, String source) throws IOException {
+        if (refuseWhileRunning()) {
+            return EXIT_ERROR;
+        }
+        TabInfo tab = findOrCreateTab(tabName);
+        // Plain text can start with anything, so the codec comes from the file name rather than the first bytes
+        try (BufferedReader reader = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : new BufferedReader(new InputStreamReader(Codecs.forFileName(source).decompress(
+                        Files.newInputStream(Paths.get(source))), StandardCharsets.UTF_8))) {
+            // Lines are parsed while the file is rewritten, so nothing is held in memory
+            LineTasks lines = new LineTasks(reader);
+            int total = storage.taskStorage(tab.getId()).rewriteTasks(task -> task, lines);
+            err.println("Imported " + lines.count + " tasks into " + tab.getName() + " (" + total + " total)");
+        }
+        return EXIT_OK;
+    }
+
+    private boolean refuseWhileRunning() {
+        if (SingleInstance.isRunning()) {
+            err.println("FancyToDo is running. Close it first, its next save would undo this change.");
+            return true;
+        }
+        return false;
+    }
+
+    private TabInfo requireTab(String tabName) {
+        TabInfo tab = TabRegistry.find(tabRegistry.load(), tabName);
+        if (tab == null) {
+            err.println("No tab named '" + tabName + "'");
+        }
+        return tab;
+    }
+
+    private TabInfo findOrCreateTab(String tabName) throws IOException {
+        List<TabInfo> tabs = tabRegistry.load();
+        TabInfo tab = TabRegistry.find(tabs, tabName);
+        if (tab == null) {
+            tabs = tabs != null ? new ArrayList<>(tabs) : new ArrayList<>();
+            tab = new TabInfo(TabInfo.newId(), tabName, -1);
+            tabs.add(tab);
+            tabRegistry.save(tabs);
+        }
+        return tab;
+    }
+
+    private static int parseNumber(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1; // Not a number, match by text instead
+        }
+    }
+
+    private static String format(Task task) {
+        String text = task.task == null ? "" : task.task.replace('\n', ' ');
+        return (task.status ? DONE_PREFIX : OPEN_PREFIX) + text;
+    }
+
+    /**
+     *  LineTasks
+     *
+     *  Reads one task per line on demand. Blank lines are skipped and a leading
+     *  "[x] " or "[ ] " sets the status, so export output can be imported again.
+     */
+    private static final class LineTasks implements Iterator<Task> {
+        private final BufferedReader reader;
+        private String next;
+        int count = 0;
+
+        LineTasks(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (!line.isBlank()) {
+                        next = line;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            count++;
+            if (line.startsWith(DONE_PREFIX)) {
+                return new Task(true, line.substring(DONE_PREFIX.length()));
+            }
+            if (line.startsWith(OPEN_PREFIX)) {
+                return new Task(false, line.substring(OPEN_PREFIX.length()));
+            }
+            return new Task(false, line);
+        }
+    }
+}
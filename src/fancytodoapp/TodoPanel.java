@@ -2,22 +2,19 @@ package fancytodoapp;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import fancytodoapp.FancyToDoApp.DPIUtils;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.lang.reflect.Type;
 import java.net.URL;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.swing.table.TableCellEditor;
-import org.imgscalr.Scalr;
 
 /**
  *
@@ -32,10 +29,28 @@ import org.imgscalr.Scalr;
 
 public class TodoPanel extends JPanel {
 
-    private DefaultTableModel model;
+    private static final int ICON_SIZE = 24; // Logical pixels, the icons hold rasters for every scale
+    private static final int FIRST_LOAD_RETRY_MILLIS = 5000;
+    private static final int MAX_LOAD_RETRY_MILLIS = 60_000;
+    private TaskTableModel model;
     private JTable todoTable;
-    private final List<Task> tasks; // List to store tasks
-    private final GsonPersistenceHandler persistenceHandler;
+    private TaskListView listView; // Lightweight view for large tabs, created when first switched to
+    private JScrollPane scrollPane;
+    private RowRepainter tableRepainter; // Coalesced, on screen only repaints of the table
+    private WrappedTextRenderer textRenderer; // Task column, wrapped with inline markdown
+    private final String tabId; // Key of the tab's storage, unchanged by renames
+    private final TaskStore store; // Tasks of this tab, written on the EDT and readable from any thread
+    private final StorageProvider.TaskStorage persistenceHandler;
+    private final TaskArchive archive; // Completed tasks moved out of the tab, read only on demand
+    private final TaskHistory history; // Versions recorded after saves, for restoring
+    private final CompletableFuture<Void> loadedFuture = new CompletableFuture<>();
+    private boolean loaded = false; // Saving is held back until the saved tasks are in
+    private CompletableFuture<Void> lastSave = CompletableFuture.completedFuture(null); // Done once every save is written
+    private final CompletableFuture<Void> firstLoadAttempt = new CompletableFuture<>(); // Done once a load succeeded or failed
+    private boolean loadFailed; // The saved tasks could not be read; the tab is read only until a retry reads them
+    private JPanel loadErrorBar;
+    private javax.swing.Timer loadRetryTimer; // Next try at reading the saved tasks after a failure
+    private int loadRetryMillis = FIRST_LOAD_RETRY_MILLIS;
 
     // Icons and colors
     private ImageIcon iconCheckBlack;
@@ -44,17 +59,18 @@ public class TodoPanel extends JPanel {
     private ImageIcon iconUncheckWhite;
     private ImageIcon originalIconChecked;
     private ImageIcon originalIconUnchecked;
-    private final Map<Color, ImageIcon[]> checkboxIconCache = new HashMap<>();
+    private final Map<Color, ImageIcon[]> checkboxIconCache = new HashMap<>(); // Front of IconCache for the current base icons
 
     private Color currentThemeColor;
     private Color checkboxColor = null; // User-selected checkbox color
     private boolean useCustomCheckboxes = true; // Default to using custom checkboxes
-    // Icon cache
-    private final Map<String, ImageIcon> iconCache = new HashMap<>();
+    private Color pendingThemeColor; // Theme to apply when the tab is next shown
+    private boolean pendingLookAndFeel; // The look and feel changed while the tab was hidden
 
-    public TodoPanel(String tabName, Color themeColor) {
+    public TodoPanel(String tabId, String tabName, Color themeColor) {
         
-        this.tasks = new ArrayList<>();
+        this.tabId = tabId;
+        this.store = new TaskStore(tabId, tabName);
 
         setLayout(new BorderLayout());
 
@@ -70,12 +86,19 @@ public class TodoPanel extends JPanel {
 
         // Initialize icons
         loadIcons();
+        preloadTints();
 
-        // Initialize persistence handler
-        persistenceHandler = new GsonPersistenceHandler(tabName);
+        // Theme changes made while hidden are applied when the tab comes into view
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                applyPendingTheme();
+            }
+        });
 
-        // Load existing tasks
-        loadTasks(); // Populates the 'tasks' list
+        // Initialize persistence handler
+        persistenceHandler = StorageProviders.current().taskStorage(tabId);
+        archive = StorageProviders.current().archive(tabId);
+        history = StorageProviders.current().history(tabId);
 
         // Initialize table model
         initializeTableModel();
@@ -85,6 +108,28 @@ public class TodoPanel extends JPanel {
 
         // Apply theme color
         applyThemeColor(currentThemeColor);
+
+        // Load existing tasks in the background, rows are added once parsed
+        loadTasks();
+    }
+
+    public String getTabId() {
+        return tabId;
+    }
+
+    // Store holding this tab's tasks; background readers use its snapshots
+    public TaskStore getTaskStore() {
+        return store;
+    }
+
+    // Completes on the EDT once the saved tasks have been loaded into the table
+    public CompletableFuture<Void> whenLoaded() {
+        return loadedFuture;
+    }
+
+    // Completes on the EDT once the first load has either loaded the tasks or failed and shown why
+    public CompletableFuture<Void> whenLoadAttempted() {
+        return firstLoadAttempt;
     }
 
     public void setUseCustomCheckboxes(boolean useCustom) {
@@ -92,24 +137,77 @@ public class TodoPanel extends JPanel {
         updateCheckboxRendererAndEditor();
     }
 
-    private void initializeTableModel() {
-        // Initialize table model with column names
-        model = new DefaultTableModel(new Object[]{"Status", "Task"}, 0) {
-            @Override
-            public Class<?> getColumnClass(int column) {
-                return column == 0 ? Boolean.class : String.class;
-            }
+    /**
+     * Shows the tasks in the lightweight list view instead of the table. Both
+     * work on the same model, so switching keeps the tasks and any edits.
+     */
+    public void setUseListView(boolean useListView) {
+        JComponent view = useListView ? getListView() : todoTable;
+        if (scrollPane.getViewport().getView() == view) {
+            return;
+        }
+        if (todoTable.isEditing()) {
+            todoTable.getCellEditor().stopCellEditing();
+        }
+        if (listView != null) {
+            listView.stopEditing();
+        }
+        // The hidden view missed look and feel changes
+        SwingUtilities.updateComponentTreeUI(view);
+        applyThemeColor(currentThemeColor);
+        scrollPane.setViewportView(view);
+        scrollPane.setColumnHeaderView(useListView ? null : todoTable.getTableHeader());
+    }
+
+    private TaskListView getListView() {
+        if (listView == null) {
+            listView = new TaskListView(model, new TaskListView.Host() {
+                @Override
+                public ImageIcon[] checkboxIcons(Task task) {
+                    return useCustomCheckboxes ? getTaskIcons(task) : null;
+                }
+
+                @Override
+                public void setValueAt(Object value, int row, int column) {
+                    if (loadFailed) {
+                        return; // Read only until the saved tasks are in
+                    }
+                    model.setValueAt(value, row, column); // Updates the task in the store
+                    saveTasks();
+                }
 
+                @Override
+                public void addTask() {
+                    promptNewTask();
+                }
+
+                @Override
+                public void showTaskContextMenu(Component invoker, int x, int y, int row) {
+                    TodoPanel.this.showTaskContextMenu(invoker, x, y, row);
+                }
+
+                @Override
+                public void openLink(String link) {
+                    TodoPanel.this.openLink(link);
+                }
+
+                @Override
+                public void deleteSelectedRows() {
+                    TodoPanel.this.deleteSelectedRows();
+                }
+            });
+        }
+        return listView;
+    }
+
+    private void initializeTableModel() {
+        // Initialize table model over the task store
+        model = new TaskTableModel(store) {
             @Override
             public boolean isCellEditable(int row, int column) {
-                return !isPlusRow(row) && (column == 0 || column == 1);
+                return !loadFailed && !isPlusRow(row) && (column == 0 || column == 1);
             }
         };
-
-        // Populate the model with tasks
-        for (Task task : tasks) {
-            model.addRow(new Object[]{task.status, task.task});
-        }
     }
 
     private void initializeTable() {
@@ -138,18 +236,20 @@ public class TodoPanel extends JPanel {
             @Override
             public void setValueAt(Object aValue, int row, int column) {
                 if (!isPlusRow(row)) {
-                    model.setValueAt(aValue, row, column);
-                    // Update the task in the tasks list
-                    Task task = tasks.get(row);
-                    if (column == 0) {
-                        task.status = (Boolean) aValue;
-                    } else if (column == 1) {
-                        task.task = (String) aValue;
-                    }
+                    model.setValueAt(aValue, row, column); // Updates the task in the store
                     saveTasks();
                 }
             }
 
+            @Override
+            public void repaint(long tm, int x, int y, int width, int height) {
+                // Requests for rows out of view are dropped, they are painted when scrolled in
+                Rectangle onScreen = RowRepainter.visiblePart(this, x, y, width, height);
+                if (onScreen != null) {
+                    super.repaint(tm, onScreen.x, onScreen.y, onScreen.width, onScreen.height);
+                }
+            }
+
             @Override
             public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
                 if (isPlusRow(row)) {
@@ -166,7 +266,31 @@ public class TodoPanel extends JPanel {
             }
         };
 
+        tableRepainter = new RowRepainter(todoTable, todoTable::getRowCount, row -> {
+            Rectangle bounds = todoTable.getCellRect(row, 0, true);
+            bounds.x = 0;
+            bounds.width = todoTable.getWidth();
+            return bounds;
+        }, column -> todoTable.getCellRect(0, column, true));
+
         todoTable.setFillsViewportHeight(true);
+
+        // Delete removes the selected tasks, as in the list view; while editing the key goes to the editor
+        todoTable.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke("DELETE"), "deleteSelectedRows");
+        todoTable.getActionMap().put("deleteSelectedRows", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int[] rows = todoTable.getSelectedRows();
+                if (rows.length > 1 || rows.length == 1 && !isPlusRow(rows[0])) {
+                    deleteSelectedRows();
+                }
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return !todoTable.isEditing();
+            }
+        });
         todoTable.setRowHeight(32);
         todoTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
@@ -180,9 +304,12 @@ public class TodoPanel extends JPanel {
 
 
         // Add table to scroll pane
-        JScrollPane scrollPane = new JScrollPane(todoTable);
+        scrollPane = new JScrollPane(todoTable);
         add(scrollPane, BorderLayout.CENTER);
 
+        // Long tasks wrap, rows grow to fit as they come into view
+        textRenderer = WrappedTextRenderer.install(todoTable, scrollPane.getViewport(), 1, todoTable.getRowHeight());
+
         // Add mouse listener for clicks and context menu
         addTableMouseListener();
     }
@@ -207,41 +334,56 @@ public class TodoPanel extends JPanel {
         }
     }
 
-    // Method to save tasks to a file
-    public void saveTasksToFile(File file) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            Gson gson = new Gson();
-            String json = gson.toJson(tasks);
-            writer.write(json);
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error saving tasks to file.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+    // Method to save tasks to a file. The snapshot is taken here, the write happens on the I/O executor.
+    // A name ending in a codec's extension, e.g. tasks.json.gz, is written compressed
+    public CompletableFuture<Void> saveTasksToFile(File file) {
+        List<Task> snapshot = snapshotTasks();
+        Codec codec = Codecs.forFileName(file.getName());
+        CompletableFuture<Void> write = IoExecutor.run(() -> {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    codec.compress(new FileOutputStream(file)), java.nio.charset.StandardCharsets.UTF_8))) {
+                new Gson().toJson(snapshot, writer);
+            }
+        });
+        write.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error saving tasks to file.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, IoExecutor.edt());
+        return write;
     }
 
-    // Method to load tasks from a file
-    public void loadTasksFromFile(File file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<Task>>() {}.getType();
-            List<Task> loadedTasks = gson.fromJson(reader, listType);
+    // Method to load tasks from a file. Parsing runs in the background; the
+    // returned future fails with an IOException if the file could not be read
+    public CompletableFuture<Void> loadTasksFromFile(File file) {
+        CompletableFuture<List<Task>> parsed = loadedFuture.thenCompose(ignored -> IoExecutor.supply(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Codecs.open(new FileInputStream(file)), java.nio.charset.StandardCharsets.UTF_8))) {
+                Gson gson = new Gson();
+                Type listType = new TypeToken<List<Task>>() {}.getType();
+                List<Task> loadedTasks = gson.fromJson(reader, listType);
+                return loadedTasks;
+            }
+        }));
+        return parsed.handleAsync((loadedTasks, error) -> {
+            if (error != null) {
+                Throwable cause = IoExecutor.rootCause(error);
+                cause.printStackTrace();
+                if (cause instanceof IOException) {
+                    throw new CompletionException(cause); // Handled by caller
+                }
+                JOptionPane.showMessageDialog(this, "Error loading tasks from file.", "Error", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
             if (loadedTasks != null) {
-                tasks.clear();
-                tasks.addAll(loadedTasks);
+                store.replaceAll(loadedTasks);
                 // Update the table model
-                model.setRowCount(0);
-                for (Task task : tasks) {
-                    model.addRow(new Object[]{task.status, task.task});
-                }
+                model.fireTableDataChanged();
                 saveTasks(); // Save to persistence
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw e; // Rethrow to be handled by caller
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading tasks from file.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            return null;
+        }, IoExecutor.edt());
     }
 
     // Method to add context menu to the table
@@ -256,9 +398,12 @@ public class TodoPanel extends JPanel {
         todoTable.setComponentPopupMenu(popupMenu);
     }
 
-    // Method to delete selected rows
+    // Method to delete the rows selected in the view being shown
     private void deleteSelectedRows() {
-        int[] selectedRows = todoTable.getSelectedRows();
+        if (loadFailed) {
+            return;
+        }
+        int[] selectedRows = getSelectedRows();
         if (selectedRows.length > 0) {
             List<Integer> rowsToDelete = new ArrayList<>();
             for (int row : selectedRows) {
@@ -268,66 +413,42 @@ public class TodoPanel extends JPanel {
             }
             // Remove from highest index to avoid shifting
             Collections.sort(rowsToDelete, Collections.reverseOrder());
-            for (int rowIndex : rowsToDelete) {
-                tasks.remove(rowIndex);
-                model.removeRow(rowIndex);
-            }
+            store.batch(() -> {
+                for (int rowIndex : rowsToDelete) {
+                    model.removeTask(rowIndex);
+                }
+            });
             saveTasks();
         } else {
             JOptionPane.showMessageDialog(this, "No tasks selected for deletion.", "Delete Tasks", JOptionPane.WARNING_MESSAGE);
         }
     }
 
+    // Rows selected in the view being shown
+    private int[] getSelectedRows() {
+        if (listView != null && scrollPane.getViewport().getView() == listView) {
+            return listView.getSelectedRows();
+        }
+        return todoTable.getSelectedRows();
+    }
+
     // Method to check if a row is the "+" row
     private boolean isPlusRow(int row) {
         return row == model.getRowCount();
     }
 
-    // Method to load and scale icons
-
-    // Updated loadAndScaleIcon using Scalr
+    // Method to load icons, shared by all tabs through IconCache. Sized in logical
+    // pixels; the icon holds a raster per screen scale, picked as it is painted
     private ImageIcon loadAndScaleIcon(URL iconURL) {
-        double scalingFactor = DPIUtils.getScalingFactor();
-        int baseIconSize = 24; // Original icon size
-        int desiredIconSize = (int) (baseIconSize * scalingFactor); // Scale based on DPI
-
-        String cacheKey = iconURL.toString() + "@" + desiredIconSize;
-        if (iconCache.containsKey(cacheKey)) {
-            return iconCache.get(cacheKey);
-        }
-
-        try {
-            BufferedImage originalImage = ImageIO.read(iconURL);
-
-            // Use Scalr to perform more high-quality scaling than java alone
-            BufferedImage scaledImage = Scalr.resize(originalImage, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC,
-                    desiredIconSize, desiredIconSize, Scalr.OP_ANTIALIAS);
-            
-
-            ImageIcon scaledIcon = new ImageIcon(scaledImage);
-            iconCache.put(cacheKey, scaledIcon);
-            return scaledIcon;
-        } catch (IOException e) {
-            e.printStackTrace();
-            ImageIcon defaultIcon = createDefaultIcon(desiredIconSize, desiredIconSize);
-            iconCache.put(cacheKey, defaultIcon);
-            return defaultIcon;
-        }
+        return IconCache.scaled(iconURL, ICON_SIZE);
     }
 
-
-    // Method to create a default icon
-    private ImageIcon createDefaultIcon(int width, int height) {
-        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = img.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-
-        g2.setColor(Color.GRAY);
-        g2.fillOval(0, 0, width, height); // Example: Draw a gray circle as a placeholder
-        g2.dispose();
-        return new ImageIcon(img);
+    // Starts making the checkbox icons before the first tab needs them
+    static void preloadIcons() {
+        IconCache.preload(ICON_SIZE, TodoPanel.class.getResource("/icons/iconCheck_b.png"),
+                TodoPanel.class.getResource("/icons/iconUncheck_b.png"),
+                TodoPanel.class.getResource("/icons/iconCheck_w.png"),
+                TodoPanel.class.getResource("/icons/iconUncheck_w.png"));
     }
 
 
@@ -350,7 +471,9 @@ public class TodoPanel extends JPanel {
 
                 if (e.isPopupTrigger()) {
                     if (row >= 0 && !isPlusRow(row)) {
-                        todoTable.setRowSelectionInterval(row, row);
+                        if (!todoTable.isRowSelected(row)) {
+                            todoTable.setRowSelectionInterval(row, row); // A selected row keeps the others
+                        }
                         showTaskContextMenu(e.getComponent(), e.getX(), e.getY(), row);
                     }
                 } else if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
@@ -359,17 +482,77 @@ public class TodoPanel extends JPanel {
                     }
                 } else if (e.getClickCount() == 1 && SwingUtilities.isLeftMouseButton(e)) {
                     if (isPlusRow(row)) {
-                        // Prompt user to enter a new task
-                        String taskText = JOptionPane.showInputDialog(TodoPanel.this, "Enter new task:", "Add Task", JOptionPane.PLAIN_MESSAGE);
-                        if (taskText != null && !taskText.trim().isEmpty()) {
-                            addNewTask(taskText.trim());
-                        }
+                        promptNewTask();
                     }
                 }
             }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = todoTable.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 1 && SwingUtilities.isLeftMouseButton(e)
+                        && todoTable.columnAtPoint(e.getPoint()) == 1) {
+                    String link = textRenderer.linkAt(row, e.getPoint());
+                    if (link != null) {
+                        openLink(link);
+                    }
+                }
+            }
+        });
+        todoTable.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                boolean overLink = todoTable.columnAtPoint(e.getPoint()) == 1
+                        && textRenderer.linkAt(todoTable.rowAtPoint(e.getPoint()), e.getPoint()) != null;
+                todoTable.setCursor(overLink ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : null);
+            }
         });
     }
 
+    // Method to open a task's link in the browser, off the EDT as the browser may take a while
+    private void openLink(String link) {
+        if (!InlineMarkdown.isOpenableLink(link)) {
+            return; // Never rendered as a link
+        }
+        boolean mail = link.regionMatches(true, 0, "mailto:", 0, "mailto:".length());
+        Desktop.Action action = mail ? Desktop.Action.MAIL : Desktop.Action.BROWSE;
+        if (!Desktop.isDesktopSupported() || !Desktop.getDesktop().isSupported(action)) {
+            JOptionPane.showMessageDialog(this, "Opening links is not supported here.", "Open Link", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        java.net.URI uri;
+        try {
+            uri = new java.net.URI(link);
+        } catch (java.net.URISyntaxException e) {
+            JOptionPane.showMessageDialog(this, "Not a valid link: " + link, "Open Link", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        IoExecutor.run(() -> {
+            if (mail) {
+                Desktop.getDesktop().mail(uri);
+            } else {
+                Desktop.getDesktop().browse(uri);
+            }
+        }).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                IoExecutor.rootCause(error).printStackTrace();
+                JOptionPane.showMessageDialog(this, "Could not open " + link, "Open Link", JOptionPane.ERROR_MESSAGE);
+            }
+        }, IoExecutor.edt());
+    }
+
+    // Prompt user to enter a new task
+    public void promptNewTask() {
+        if (loadFailed) {
+            showReadOnlyMessage();
+            return;
+        }
+        String taskText = JOptionPane.showInputDialog(this, "Enter new task:", "Add Task", JOptionPane.PLAIN_MESSAGE);
+        if (taskText != null && !taskText.trim().isEmpty()) {
+            addNewTask(taskText.trim());
+        }
+    }
+
     // Method to show task context menu
     private void showTaskContextMenu(Component invoker, int x, int y, int row) {
         JPopupMenu taskMenu = new JPopupMenu();
@@ -381,46 +564,308 @@ public class TodoPanel extends JPanel {
 
         taskMenu.add(changeCheckboxColorItem);
         taskMenu.add(deleteTaskItem);
+        if (getSelectedRows().length > 1) {
+            JMenuItem deleteSelectedItem = new JMenuItem("Delete Selected");
+            deleteSelectedItem.addActionListener(e -> deleteSelectedRows());
+            taskMenu.add(deleteSelectedItem);
+        }
 
         taskMenu.show(invoker, x, y);
     }
 
     // Method to change checkbox color for a specific task
     private void changeTaskCheckboxColor(int row) {
-        Task task = tasks.get(row);
+        if (loadFailed) {
+            return;
+        }
+        Task task = store.get(row);
         Color currentColor = task.getCheckboxColor();
         Color selectedColor = JColorChooser.showDialog(this, "Select Checkbox Color", currentColor);
         if (selectedColor != null) {
-            task.setCheckboxColor(selectedColor);
-            todoTable.repaint();
+            store.setCheckboxColor(row, selectedColor);
+            model.fireTableRowsUpdated(row, row); // Repaints just that row in either view
             saveTasks();
         }
     }
 
     // Method to delete a specific task
     private void deleteTask(int row) {
-        tasks.remove(row);
-        model.removeRow(row);
+        if (loadFailed) {
+            return;
+        }
+        model.removeTask(row);
         saveTasks();
     }
 
     // Method to add a new task
-    private void addNewTask(String taskText) {
+    public void addNewTask(String taskText) {
+        if (loadFailed) {
+            showReadOnlyMessage();
+            return;
+        }
         Task newTask = new Task(false, taskText);
-        tasks.add(newTask);
-        model.insertRow(model.getRowCount(), new Object[]{newTask.status, newTask.task});
+        model.addTask(newTask);
         saveTasks();
     }
 
+    /**
+     * Applies tasks another process wrote to this tab's file. Local edits not
+     * yet on disk are merged in rather than dropped, and only the rows that
+     * differ are touched. The file's version becomes the base for the next
+     * save only when the screen shows exactly the file; otherwise a save
+     * merges the two on disk too. Ignored until the tab has loaded, its load
+     * reads them anyway.
+     */
+    public void applyExternalTasks(List<Task> tasks, long version) {
+        if (!loaded) {
+            return;
+        }
+        List<Task> shown = persistenceHandler.mergeExternal(snapshotTasks(), tasks);
+        model.syncTo(shown);
+        if (lastSave.isDone() && GsonPersistenceHandler.sameTasks(shown, tasks)) {
+            persistenceHandler.acceptExternal(tasks, version); // What we show now derives from this version
+        } else {
+            saveTasks(); // Replaces any queued snapshot; its write merges with the file, then both agree
+        }
+    }
+
+    /**
+     * Makes the row edits sync merged in, in one store batch, and saves if
+     * there were any. The tab must be loaded.
+     */
+    public void syncRows(List<TaskSequence.RowEdit> edits) {
+        if (edits.isEmpty()) {
+            return;
+        }
+        store.batch(() -> {
+            for (TaskSequence.RowEdit edit : edits) {
+                switch (edit.kind) {
+                    case INSERT:
+                        model.insertTask(edit.row, new Task(edit.task));
+                        break;
+                    case REMOVE:
+                        model.removeTask(edit.row);
+                        break;
+                    default:
+                        model.replaceTask(edit.row, edit.task);
+                        break;
+                }
+            }
+        });
+        saveTasks();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Applies several mutations as one store batch; the views hear of just the rows they touched. The caller saves
+    public void applyMutations(java.util.function.Consumer<TaskStore> mutations) {
+        TaskSnapshot before = store.snapshot();
+        store.batch(() -> mutations.accept(store));
+        model.fireChangesSince(before);
+    }
+
+    public TaskArchive getArchive() {
+        return archive;
+    }
+
+    public TaskHistory getHistory() {
+        return history;
+    }
+
+    // Runs on the thread that finished the save; a history failure never fails the save
+    private void recordHistory(List<Task> snapshot, boolean force) {
+        try {
+            history.record(snapshot, force);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the tasks with those of an earlier version. The current tasks
+     * are recorded as a version first, so the restore can itself be undone.
+     */
+    public CompletableFuture<Void> restoreVersion(TaskHistory.Version version) {
+        if (!loaded) {
+            return CompletableFuture.failedFuture(new IOException("The tab's saved tasks are not loaded"));
+        }
+        List<Task> current = snapshotTasks();
+        return IoExecutor.supply(() -> {
+            recordHistory(current, true);
+            return history.load(version);
+        }).thenAcceptAsync(tasks -> {
+            TaskSnapshot before = store.snapshot();
+            store.replaceAll(tasks);
+            model.fireChangesSince(before);
+            saveTasks();
+        }, IoExecutor.edt());
+    }
+
+    /**
+     * Moves tasks completed before the cutoff into the archive. The archive is
+     * written first, so a crash in between leaves a task in both places rather
+     * than in neither; a task edited meanwhile stays in the tab.
+     *
+     * @return completes on the EDT with the number of tasks moved
+     */
+    public CompletableFuture<Integer> archiveCompletedTasks(long cutoff) {
+        if (!loaded) {
+            return CompletableFuture.completedFuture(0);
+        }
+        Map<Task, Task> due = new IdentityHashMap<>(); // Live task to the copy being archived
+        for (Task task : store.tasks()) {
+            if (task.status && task.completedAt != 0 && task.completedAt < cutoff) {
+                due.put(task, new Task(task));
+            }
+        }
+        if (due.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        List<Task> archived = new ArrayList<>(due.values());
+        return IoExecutor.run(() -> archive.append(archived)).thenApplyAsync(ignored -> {
+            int[] removed = {0};
+            applyMutations(tasks -> removed[0] = tasks.removeIf(task -> {
+                Task copy = due.get(task);
+                return copy != null && GsonPersistenceHandler.sameTask(task, copy) && task.completedAt == copy.completedAt;
+            }));
+            if (removed[0] > 0) {
+                saveTasks();
+            }
+            return removed[0];
+        }, IoExecutor.edt());
+    }
+
     // Method to save tasks
     private void saveTasks() {
-        persistenceHandler.saveTasks(tasks);
+        if (!loaded) {
+            return; // The saved file has not been read yet, writing now would clobber it
+        }
+        saveTasksAsync();
     }
 
-    // Method to load tasks
+    // Writes a snapshot of the current tasks in the background, once the saved tasks are loaded.
+    // A successful write may also record a history version
+    public CompletableFuture<Void> saveTasksAsync() {
+        CompletableFuture<Void> write = loadedFuture.thenCompose(ignored -> {
+            List<Task> snapshot = snapshotTasks();
+            // Part of the queued write, so a snapshot replaced before it was written is not recorded either
+            return persistenceHandler.writeLane().submit(() -> {
+                persistenceHandler.writeTasks(snapshot);
+                recordHistory(snapshot, false);
+            });
+        });
+        write.exceptionally(error -> {
+            IoExecutor.rootCause(error).printStackTrace();
+            return null;
+        });
+        lastSave = write;
+        return write;
+    }
+
+    // Immutable view of the tasks, background threads never see later edits
+    private List<Task> snapshotTasks() {
+        return store.snapshot();
+    }
+
+    // Method to load tasks. A failed read leaves the tab unloaded and read only, never seeded
+    // with the welcome tasks, which the next save would merge into the real file; it is retried
     private void loadTasks() {
-        List<Task> loadedTasks = persistenceHandler.loadTasks();
-        if (loadedTasks != null && !loadedTasks.isEmpty()) {
+        persistenceHandler.loadTasksAsync().whenCompleteAsync((loadedTasks, error) -> {
+            if (error != null) {
+                loadFailed(IoExecutor.rootCause(error));
+                return;
+            }
+            clearLoadError();
+            // Tasks added while loading stay after the saved ones
+            List<Task> addedWhileLoading = new ArrayList<>(store.tasks());
+            List<Task> initialTasks = new ArrayList<>();
+            addLoadedTasks(initialTasks, loadedTasks);
+            boolean stamped = false; // Done before completion times were kept; the store stamps them now
+            for (Task task : initialTasks) {
+                stamped |= task.status && task.completedAt == 0;
+            }
+            initialTasks.addAll(addedWhileLoading);
+            TaskSnapshot before = store.snapshot();
+            store.replaceAll(initialTasks);
+            model.fireChangesSince(before);
+            loaded = true;
+            preloadTints();
+            if (stamped || !addedWhileLoading.isEmpty()) {
+                saveTasks(); // A stamp not saved would be made again next launch and never reach the archive cutoff
+            }
+            loadedFuture.complete(null);
+            firstLoadAttempt.complete(null);
+        }, IoExecutor.edt());
+    }
+
+    // Shows why the tasks could not be read and schedules another try, backing off up to a minute
+    private void loadFailed(Throwable cause) {
+        cause.printStackTrace();
+        loadFailed = true;
+        if (todoTable.isEditing()) {
+            todoTable.getCellEditor().cancelCellEditing();
+        }
+        if (listView != null) {
+            listView.cancelEditing();
+        }
+        String reason = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        if (loadErrorBar == null) {
+            loadErrorBar = new JPanel(new BorderLayout(8, 0));
+            loadErrorBar.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+            JButton retry = new JButton("Retry");
+            retry.addActionListener(e -> retryLoad());
+            loadErrorBar.add(new JLabel(), BorderLayout.CENTER);
+            loadErrorBar.add(retry, BorderLayout.EAST);
+            add(loadErrorBar, BorderLayout.NORTH);
+        }
+        ((JLabel) loadErrorBar.getComponent(0)).setText("<html>This tab's tasks could not be loaded, so it is read only"
+                + " until they are: " + escapeHtml(reason) + "</html>");
+        revalidate();
+        repaint();
+        if (loadRetryTimer == null) {
+            loadRetryTimer = new javax.swing.Timer(loadRetryMillis, e -> retryLoad());
+            loadRetryTimer.setRepeats(false);
+        }
+        loadRetryTimer.setInitialDelay(loadRetryMillis);
+        loadRetryTimer.restart();
+        loadRetryMillis = Math.min(loadRetryMillis * 2, MAX_LOAD_RETRY_MILLIS);
+        firstLoadAttempt.complete(null);
+    }
+
+    private void retryLoad() {
+        if (loadRetryTimer != null) {
+            loadRetryTimer.stop();
+        }
+        loadTasks();
+    }
+
+    private void clearLoadError() {
+        loadFailed = false;
+        loadRetryMillis = FIRST_LOAD_RETRY_MILLIS;
+        if (loadRetryTimer != null) {
+            loadRetryTimer.stop();
+        }
+        if (loadErrorBar != null) {
+            remove(loadErrorBar);
+            loadErrorBar = null;
+            revalidate();
+            repaint();
+        }
+    }
+
+    private void showReadOnlyMessage() {
+        JOptionPane.showMessageDialog(this, "This tab's tasks could not be loaded yet, so it cannot be changed.",
+                "Tab Not Loaded", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private void addLoadedTasks(List<Task> tasks, List<Task> loadedTasks) {
+        if (loadedTasks != null) { // Saved but empty, e.g. everything was archived, stays empty
             tasks.addAll(loadedTasks);
         } else {
             
@@ -468,7 +913,15 @@ public class TodoPanel extends JPanel {
             todoTable.getColumnModel().getColumn(0).setCellRenderer(todoTable.getDefaultRenderer(Boolean.class));
             todoTable.getColumnModel().getColumn(0).setCellEditor(todoTable.getDefaultEditor(Boolean.class));
         }
-        todoTable.repaint();
+        repaintCheckboxes();
+    }
+
+    // Method to repaint just the checkboxes of the visible rows, in whichever view is shown
+    private void repaintCheckboxes() {
+        tableRepainter.column(0);
+        if (listView != null) {
+            listView.repaintColumn(0);
+        }
     }
 
     // Custom checkbox renderer
@@ -491,13 +944,7 @@ public class TodoPanel extends JPanel {
             setSelected(Boolean.TRUE.equals(value));
             setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
 
-            Task task = tasks.get(row);
-            Color taskCheckboxColor = task.getCheckboxColor();
-            if (taskCheckboxColor == null) {
-                taskCheckboxColor = TodoPanel.this.checkboxColor; // Use tab's default if none
-            }
-
-            ImageIcon[] icons = getTintedIcons(taskCheckboxColor);
+            ImageIcon[] icons = getTaskIcons(store.get(row));
             setIcon(icons[0]); // Unchecked icon
             setSelectedIcon(icons[1]); // Checked icon
 
@@ -534,13 +981,7 @@ public class TodoPanel extends JPanel {
             checkBox.setSelected(Boolean.TRUE.equals(value));
             checkBox.setBackground(table.getBackground());
 
-            Task task = tasks.get(row);
-            Color taskCheckboxColor = task.getCheckboxColor();
-            if (taskCheckboxColor == null) {
-                taskCheckboxColor = TodoPanel.this.checkboxColor;
-            }
-
-            ImageIcon[] icons = getTintedIcons(taskCheckboxColor);
+            ImageIcon[] icons = getTaskIcons(store.get(row));
             checkBox.setIcon(icons[0]); // Unchecked icon
             checkBox.setSelectedIcon(icons[1]); // Checked icon
 
@@ -548,42 +989,59 @@ public class TodoPanel extends JPanel {
         }
     }
 
-    // Method to get tinted icons
+    // Method to get a task's icons, in the tab's checkbox color if it has none of its own
+    private ImageIcon[] getTaskIcons(Task task) {
+        Color taskCheckboxColor = task.getCheckboxColor();
+        if (taskCheckboxColor == null) {
+            taskCheckboxColor = checkboxColor;
+        }
+        return getTintedIcons(taskCheckboxColor);
+    }
+
+    // Method to get tinted icons. Only looks them up; a tint not made yet is made in the
+    // background while the base icons stand in, and the checkboxes repaint once it is ready
     private ImageIcon[] getTintedIcons(Color color) {
         if (color == null) {
-            color = isColorDark(currentThemeColor) ? Color.WHITE : Color.BLACK;
+            color = defaultCheckboxColor();
         }
 
         ImageIcon[] icons = checkboxIconCache.get(color);
         if (icons == null) {
-            ImageIcon tintedUnchecked = tintIcon(originalIconUnchecked, color);
-            ImageIcon tintedChecked = tintIcon(originalIconChecked, color);
-            icons = new ImageIcon[]{tintedUnchecked, tintedChecked};
+            Color tint = color;
+            Runnable whenMade = () -> {
+                checkboxIconCache.remove(tint);
+                repaintCheckboxes();
+            };
+            ImageIcon tintedUnchecked = IconCache.tinted(originalIconUnchecked, color, whenMade);
+            ImageIcon tintedChecked = IconCache.tinted(originalIconChecked, color, whenMade);
+            icons = new ImageIcon[]{
+                    tintedUnchecked != null ? tintedUnchecked : originalIconUnchecked,
+                    tintedChecked != null ? tintedChecked : originalIconChecked};
             checkboxIconCache.put(color, icons);
         }
         return icons;
     }
 
-    // Method to tint an icon
-    private ImageIcon tintIcon(ImageIcon originalIcon, Color color) {
-        BufferedImage img = new BufferedImage(
-                originalIcon.getIconWidth(),
-                originalIcon.getIconHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = img.createGraphics();
-
-        // Apply anti-aliasing to improve icon rendering quality
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-        g2d.drawImage(originalIcon.getImage(), 0, 0, null);
-        g2d.setComposite(AlphaComposite.SrcAtop);
-        g2d.setColor(color);
-        g2d.fillRect(0, 0, img.getWidth(), img.getHeight());
-        g2d.dispose();
+    private Color defaultCheckboxColor() {
+        return isColorDark(currentThemeColor) ? Color.WHITE : Color.BLACK;
+    }
 
-        return new ImageIcon(img);
+    // Method to start tinting the checkbox icons in every color the tab paints, off the EDT
+    private void preloadTints() {
+        Set<Color> colors = new HashSet<>();
+        colors.add(checkboxColor != null ? checkboxColor : defaultCheckboxColor());
+        TaskSnapshot tasks = store.snapshot();
+        ImageIcon unchecked = originalIconUnchecked;
+        ImageIcon checked = originalIconChecked;
+        IoExecutor.run(() -> {
+            Set<Integer> seen = new HashSet<>();
+            for (Task task : tasks) {
+                if (task.checkboxColorRGB != -1 && seen.add(task.checkboxColorRGB)) {
+                    colors.add(task.getCheckboxColor());
+                }
+            }
+            IconCache.preloadTints(colors, unchecked, checked);
+        });
     }
 
     // Method to check if a color is dark
@@ -608,6 +1066,41 @@ public class TodoPanel extends JPanel {
         return new Color(d, d, d);
     }
 
+    // Applies the theme now if the tab is showing, otherwise once it is next shown
+    public void setThemeColor(Color themeColor) {
+        if (isShowing()) {
+            applyThemeColor(themeColor);
+        } else {
+            pendingThemeColor = themeColor;
+        }
+    }
+
+    // Re-installs the look and feel now if the tab is showing, otherwise once it is next shown
+    public void lookAndFeelChanged() {
+        if (isShowing()) {
+            SwingUtilities.updateComponentTreeUI(this);
+            applyThemeColor(currentThemeColor);
+        } else {
+            pendingLookAndFeel = true;
+        }
+    }
+
+    // Catches up on theme changes made while the tab was hidden
+    private void applyPendingTheme() {
+        if (pendingLookAndFeel) {
+            pendingLookAndFeel = false;
+            SwingUtilities.updateComponentTreeUI(this);
+            if (pendingThemeColor == null) {
+                pendingThemeColor = currentThemeColor;
+            }
+        }
+        if (pendingThemeColor != null) {
+            Color themeColor = pendingThemeColor;
+            pendingThemeColor = null;
+            applyThemeColor(themeColor);
+        }
+    }
+
     // Method to apply theme color
     public void applyThemeColor(Color themeColor) {
         if (themeColor == null) {
@@ -617,14 +1110,15 @@ public class TodoPanel extends JPanel {
             }
         }
         this.currentThemeColor = themeColor;
+        pendingThemeColor = null;
 
-        // Reload icons based on theme
+        // Pick the base icons for the theme; their tints are kept in IconCache
+        ImageIcon previousChecked = originalIconChecked;
         loadIcons();
-        // Clear icon cache
-        checkboxIconCache.clear();
-
-        // Update renderer and editor
-        updateCheckboxRendererAndEditor();
+        if (originalIconChecked != previousChecked) {
+            checkboxIconCache.clear();
+        }
+        preloadTints();
 
         setBackground(themeColor);
         todoTable.setBackground(themeColor);
@@ -632,15 +1126,19 @@ public class TodoPanel extends JPanel {
         todoTable.setGridColor(themeColor.darker());
         todoTable.getTableHeader().setBackground(themeColor.darker());
         todoTable.getTableHeader().setForeground(getContrastingColor(themeColor));
+        if (listView != null) {
+            listView.setBackground(themeColor);
+            listView.setForeground(getContrastingColor(themeColor));
+            listView.setGridColor(themeColor.darker());
+        }
 
         // Update the scroll pane's viewport background
-        JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, todoTable);
         if (scrollPane != null) {
             scrollPane.getViewport().setBackground(themeColor);
         }
 
-        // Repaint the table
-        todoTable.repaint();
+        // Repaint the visible rows of the table; the list view did with its grid color
+        tableRepainter.all();
     }
 
     // Method to change checkbox color at tab level
@@ -648,11 +1146,9 @@ public class TodoPanel extends JPanel {
         Color selectedColor = JColorChooser.showDialog(this, "Select Checkbox Color", checkboxColor);
         if (selectedColor != null) {
             checkboxColor = selectedColor;
-            // Clear icon cache
-            checkboxIconCache.clear();
-            // Update renderer and editor
-            updateCheckboxRendererAndEditor();
-            todoTable.repaint();
+            preloadTints();
+            // Renderer and editor look the color up as they paint
+            repaintCheckboxes();
         }
     }
 
@@ -0,0 +1,183 @@
+package fancytodoapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ *
+ *  VersionedFile
+ *
+ *  Coordinates processes sharing a data file. Each file has a sidecar
+ *  "<file>.lock" whose lock guards the file and whose first eight bytes hold a
+ *  version counter, bumped by every write. Writers take the lock exclusively,
+ *  see the current version and can merge with what is on disk before the new
+ *  content is moved into place. Readers take it shared but only for a bounded
+ *  time; since writes are atomic moves an unlocked read still sees a whole file.
+ *  Moves go through DurableFiles, so a written version also survives a crash.
+ *
+ */
+public final class VersionedFile {
+
+    public static final long UNKNOWN_VERSION = -1;
+    private static final long READ_TIMEOUT_MILLIS = 250;
+    private static final long WRITE_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 10;
+
+    // FileChannel locks belong to the whole JVM, so threads of this process queue here first
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private VersionedFile() {
+    }
+
+    // Reads the file, which may not exist
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(Path file) throws IOException;
+    }
+
+    // Writes the new content to temp. May read file, which is stable while the lock is held
+    @FunctionalInterface
+    public interface Writer {
+        void write(long currentVersion, Path file, Path temp) throws IOException;
+    }
+
+    /**
+     *  Versioned
+     *
+     *  A value read from a file and the version it was read at.
+     */
+    public static final class Versioned<T> {
+        public final T value;
+        public final long version; // UNKNOWN_VERSION if the lock could not be had in time
+
+        public Versioned(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Reads under a shared lock, waiting at most READ_TIMEOUT_MILLIS for it.
+     * After that the file is read anyway and the version is unknown.
+     */
+    public static <T> Versioned<T> read(Path file, Reader<T> reader) throws IOException {
+        ReentrantLock local = localLock(file);
+        boolean haveLocal = tryLocal(local, READ_TIMEOUT_MILLIS);
+        try {
+            if (haveLocal) {
+                try (FileChannel channel = openLockFile(file)) {
+                    FileLock lock = acquire(channel, true, READ_TIMEOUT_MILLIS);
+                    if (lock != null) {
+                        try {
+                            return new Versioned<>(reader.read(file), readVersion(channel));
+                        } finally {
+                            lock.release();
+                        }
+                    }
+                }
+            }
+            return new Versioned<>(reader.read(file), UNKNOWN_VERSION);
+        } finally {
+            if (haveLocal) {
+                local.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the file under the exclusive lock and bumps its version.
+     *
+     * @return the new version
+     * @throws IOException if the lock is not free within WRITE_TIMEOUT_MILLIS
+     */
+    public static long write(Path file, Writer writer) throws IOException {
+        ReentrantLock local = localLock(file);
+        if (!tryLocal(local, WRITE_TIMEOUT_MILLIS)) {
+            throw new IOException("Timed out waiting to write " + file);
+        }
+        try (FileChannel channel = openLockFile(file)) {
+            FileLock lock = acquire(channel, false, WRITE_TIMEOUT_MILLIS);
+            if (lock == null) {
+                throw new IOException("Another process has held " + file + " for over " + WRITE_TIMEOUT_MILLIS + " ms");
+            }
+            try {
+                long version = readVersion(channel);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try {
+                    writer.write(version, file, temp);
+                    DurableFiles.commit(temp, file);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                long next = version + 1;
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, next);
+                channel.write(buffer, 0);
+                channel.force(false);
+                return next;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    private static ReentrantLock localLock(Path file) {
+        return LOCAL_LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), path -> new ReentrantLock());
+    }
+
+    private static boolean tryLocal(ReentrantLock local, long timeoutMillis) {
+        try {
+            return local.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static FileChannel openLockFile(Path file) throws IOException {
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        if (lockFile.getParent() != null) {
+            Files.createDirectories(lockFile.getParent());
+        }
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Polls tryLock so the wait is bounded, FileChannel.lock would wait forever
+    static FileLock acquire(FileChannel channel, boolean shared, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+            if (lock != null) {
+                return lock;
+            }
+            if (System.nanoTime() > deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private static long readVersion(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return 0; // New lock file
+            }
+        }
+        return buffer.getLong(0);
+    }
+}
@@ -0,0 +1,223 @@
+package fancytodoapp;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.util.Map;
+/**
+ *
+ *  WrappedTextRenderer
+ *
+ *  Renders the task column with long text wrapped over several lines and
+ *  its inline markdown styled, and keeps the table's row heights in step.
+ *  Lines come from TextLayoutCache, so a row is broken once per width
+ *  however often it is measured or painted.
+ *
+ *  Rows are never measured all at once. After an edit only the edited rows
+ *  are measured again; after a resize, a scroll or a reload, only the rows
+ *  in the viewport are. Rows out of view keep the height they had until
+ *  they scroll in, which keeps resizing a large tab as cheap as a small one.
+ *
+ */
+class WrappedTextRenderer extends JComponent implements TableCellRenderer {
+
+    private static final int TEXT_INSET = 4; // Left and right of the text
+    private static final int MAX_EDITED_ROWS = 64; // Larger updates are measured as they come into view
+
+    private final JTable table;
+    private final JViewport viewport;
+    private final int column;
+    private final int minRowHeight;
+    private final Border noFocusBorder = BorderFactory.createEmptyBorder(1, 1, 1, 1);
+
+    private TextLayoutCache.Wrapped wrapped; // Lines of the cell being painted
+    private int editedFirst = -1; // Rows updated since the last pass
+    private int editedLast = -1;
+    private boolean passQueued;
+
+    /**
+     * Renders the column of the table wrapped and keeps the row heights of
+     * the rows the viewport shows up to date. Rows are at least minRowHeight
+     * high; rows the table shows beyond its model's, like the "+" row, are
+     * left alone.
+     */
+    static WrappedTextRenderer install(JTable table, JViewport viewport, int column, int minRowHeight) {
+        WrappedTextRenderer renderer = new WrappedTextRenderer(table, viewport, column, minRowHeight);
+        table.getColumnModel().getColumn(column).setCellRenderer(renderer);
+        table.getModel().addTableModelListener(renderer::modelChanged);
+        viewport.addChangeListener(e -> renderer.queuePass()); // Scrolls and resizes
+        table.getColumnModel().addColumnModelListener(new TableColumnModelListener() {
+            @Override
+            public void columnMarginChanged(ChangeEvent e) {
+                renderer.queuePass(); // Column widths changed
+            }
+
+            @Override
+            public void columnAdded(TableColumnModelEvent e) {
+            }
+
+            @Override
+            public void columnRemoved(TableColumnModelEvent e) {
+            }
+
+            @Override
+            public void columnMoved(TableColumnModelEvent e) {
+            }
+
+            @Override
+            public void columnSelectionChanged(ListSelectionEvent e) {
+            }
+        });
+        return renderer;
+    }
+
+    private WrappedTextRenderer(JTable table, JViewport viewport, int column, int minRowHeight) {
+        this.table = table;
+        this.viewport = viewport;
+        this.column = column;
+        this.minRowHeight = minRowHeight;
+        setOpaque(true);
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        TextLayoutCache.clear(); // Links were colored for the old look and feel
+    }
+
+    // Link target under the point in the table, or null
+    String linkAt(int row, Point point) {
+        if (row < 0 || row >= table.getModel().getRowCount()) {
+            return null;
+        }
+        Object value = table.getModel().getValueAt(row, column);
+        if (value == null) {
+            return null;
+        }
+        Rectangle cell = table.getCellRect(row, column, false);
+        TextLayoutCache.Wrapped lines = layout(value.toString(), textWidth());
+        float top = Math.max((cell.height - lines.height) / 2f, 0);
+        return lines.linkAt(point.x - cell.x - TEXT_INSET, point.y - cell.y - top);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        setFont(table.getFont());
+        setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+        setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+        setBorder(hasFocus ? UIManager.getBorder("Table.focusCellHighlightBorder") : noFocusBorder);
+        wrapped = value == null ? null : layout(value.toString(), textWidth());
+        return this;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (wrapped == null) {
+                return;
+            }
+            Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (hints instanceof Map) {
+                g2.addRenderingHints((Map<?, ?>) hints);
+            }
+            g2.setColor(getForeground());
+            // A single line sits in the middle of the row as before, more lines start at the top
+            float top = Math.max((getHeight() - wrapped.height) / 2f, 0);
+            for (int i = 0; i < wrapped.lines.length; i++) {
+                if (wrapped.lines[i] != null) {
+                    wrapped.lines[i].draw(g2, TEXT_INSET, top + wrapped.baselines[i]);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private TextLayoutCache.Wrapped layout(String text, int width) {
+        FontRenderContext context = table.getFontMetrics(table.getFont()).getFontRenderContext();
+        return TextLayoutCache.layout(text, table.getFont(), context, width);
+    }
+
+    private int textWidth() {
+        return table.getColumnModel().getColumn(column).getWidth() - 2 * TEXT_INSET;
+    }
+
+    // Remembers which rows an edit touched; the table has not applied the event yet
+    private void modelChanged(TableModelEvent e) {
+        if (e.getType() == TableModelEvent.UPDATE && e.getFirstRow() >= 0 && e.getLastRow() != Integer.MAX_VALUE) {
+            editedFirst = editedFirst < 0 ? e.getFirstRow() : Math.min(editedFirst, e.getFirstRow());
+            editedLast = Math.max(editedLast, e.getLastRow());
+        }
+        queuePass();
+    }
+
+    // Coalesces everything that happened in this event into one pass after it
+    private void queuePass() {
+        if (!passQueued) {
+            passQueued = true;
+            SwingUtilities.invokeLater(this::measure);
+        }
+    }
+
+    private void measure() {
+        passQueued = false;
+        int first = editedFirst;
+        int last = editedLast;
+        editedFirst = -1;
+        editedLast = -1;
+        if (viewport.getView() != table || textWidth() <= 0) {
+            return; // Not shown or not laid out, measured once it is
+        }
+        if (first >= 0 && last - first < MAX_EDITED_ROWS) {
+            measureRows(first, last);
+        }
+        // Rows shrinking pull more rows into view, which then need measuring too
+        int passes = 0;
+        while (measureVisibleRows() && ++passes < 4) {
+            // Measure again
+        }
+    }
+
+    // Measures the rows in the viewport, true if any height changed
+    private boolean measureVisibleRows() {
+        Rectangle visible = viewport.getViewRect();
+        int first = table.rowAtPoint(new Point(0, visible.y));
+        if (first < 0) {
+            return false;
+        }
+        int last = table.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        if (last < 0) {
+            last = table.getRowCount() - 1;
+        }
+        return measureRows(first, last);
+    }
+
+    private boolean measureRows(int first, int last) {
+        int width = textWidth();
+        int rows = table.getModel().getRowCount(); // Without the table's "+" row
+        boolean changed = false;
+        for (int row = first; row <= Math.min(last, rows - 1); row++) {
+            Object value = table.getModel().getValueAt(row, column);
+            int height = minRowHeight;
+            if (value != null) {
+                height = Math.max(height, layout(value.toString(), width).height + 2 * TEXT_INSET);
+            }
+            if (table.getRowHeight(row) != height) {
+                table.setRowHeight(row, height);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,169 @@
+package fancytodoapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+/**
+ *
+ *  KvStoreTest
+ *
+ *  A torn last record is cut off by the next writer; a damaged record with
+ *  more after it is skipped, whether its payload or its length is hit, the
+ *  records after it still read, and the next writer rebuilds the file
+ *  instead of failing.
+ *
+ */
+public class KvStoreTest {
+
+    private Path dir;
+    private Path file;
+    private final List<Long> recordStarts = new ArrayList<>(); // Offset of each record written, in order
+    private final List<String> warnings = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("kvstore-test");
+        file = dir.resolve("test-" + System.nanoTime() + ".kv");
+        DataWarnings.setListener(warnings::add);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DataWarnings.setListener(message -> { });
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        for (Path kept : quarantined()) {
+            Files.delete(kept);
+        }
+    }
+
+    // Writes each key in a record of its own
+    private void putEach(String... keys) throws IOException {
+        KvStore store = new KvStore(file);
+        try {
+            for (String key : keys) {
+                recordStarts.add(Math.max(Files.size(file), 16));
+                store.write(transaction -> {
+                    transaction.put(key, ("value of " + key).getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private String get(KvStore store, String key) throws IOException {
+        byte[] value = store.read(transaction -> transaction.get(key));
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private void overwrite(long offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    private List<Path> quarantined() throws IOException {
+        List<Path> kept = new ArrayList<>();
+        if (Files.isDirectory(RecordFile.QUARANTINE_DIR)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(RecordFile.QUARANTINE_DIR, file.getFileName() + ".*")) {
+                entries.forEach(kept::add);
+            }
+        }
+        return kept;
+    }
+
+    @Test
+    public void tornTailIsCutOffByTheNextWriter() throws IOException {
+        putEach("a", "b");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        KvStore store = new KvStore(file);
+        try {
+            assertEquals("value of a", get(store, "a"));
+            assertNull(get(store, "b"));
+            store.write(transaction -> {
+                transaction.put("c", "value of c".getBytes(StandardCharsets.UTF_8));
+                return null;
+            });
+        } finally {
+            store.close();
+        }
+
+        KvStore reopened = new KvStore(file);
+        try {
+            assertEquals("value of a", get(reopened, "a"));
+            assertNull(get(reopened, "b"));
+            assertEquals("value of c", get(reopened, "c"));
+        } finally {
+            reopened.close();
+        }
+        assertEquals(1, quarantined().size());
+        assertTrue("a torn tail is a crash, not damage", warnings.isEmpty());
+    }
+
+    @Test
+    public void damagedPayloadIsSkipped() throws IOException {
+        putEach("a", "b", "c");
+        overwrite(recordStarts.get(1) + 12, new byte[]{(byte) 0xFF});
+        assertDamagedRecordSkipped();
+    }
+
+    @Test
+    public void damagedLengthIsSkippedBySearchingForTheNextRecord() throws IOException {
+        putEach("a", "b", "c");
+        overwrite(recordStarts.get(1), ByteBuffer.allocate(4).putInt(5).array());
+        assertDamagedRecordSkipped();
+    }
+
+    // Record b is damaged: a and c still read, the user hears of it once, and writing rebuilds the file
+    private void assertDamagedRecordSkipped() throws IOException {
+        KvStore store = new KvStore(file);
+        try {
+            assertEquals("value of a", get(store, "a"));
+            assertNull(get(store, "b"));
+            assertEquals("value of c", get(store, "c"));
+            store.write(transaction -> {
+                transaction.put("d", "value of d".getBytes(StandardCharsets.UTF_8));
+                return null;
+            });
+            assertEquals("value of d", get(store, "d"));
+        } finally {
+            store.close();
+        }
+        assertEquals(1, warnings.size());
+        assertEquals(1, quarantined().size());
+
+        warnings.clear();
+        KvStore reopened = new KvStore(file);
+        try {
+            assertEquals("value of a", get(reopened, "a"));
+            assertEquals("value of c", get(reopened, "c"));
+            assertEquals("value of d", get(reopened, "d"));
+        } finally {
+            reopened.close();
+        }
+        assertTrue("the rebuilt file is whole", warnings.isEmpty());
+    }
+}
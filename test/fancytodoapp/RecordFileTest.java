@@ -0,0 +1,105 @@
+package fancytodoapp;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+/**
+ *
+ *  RecordFileTest
+ *
+ *  A damaged record costs only itself, and a file cut short, even to
+ *  nothing, is told apart from one that holds fewer records.
+ *
+ */
+public class RecordFileTest {
+
+    private final Gson gson = new Gson();
+
+    private byte[] write(boolean finish, String... texts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RecordFile.RecordWriter writer = new RecordFile.RecordWriter(bytes, Migrations.TASKS, gson)) {
+            for (String text : texts) {
+                writer.write(new Task(false, text));
+            }
+            if (finish) {
+                writer.finish();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private RecordFile.Damage read(byte[] file, List<String> texts) throws IOException {
+        return RecordFile.read(new ByteArrayInputStream(file), Migrations.TASKS, Task.class, gson, task -> texts.add(task.task));
+    }
+
+    @Test
+    public void wholeFileReadsWithoutDamage() throws IOException {
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(write(true, "one", "two", "three"), texts);
+        assertFalse(damage.any());
+        assertEquals(Arrays.asList("one", "two", "three"), texts);
+    }
+
+    @Test
+    public void damagedRecordIsSkippedAndTheRestLoads() throws IOException {
+        byte[] file = write(true, "one", "two", "three");
+        String content = new String(file, StandardCharsets.UTF_8);
+        int at = content.indexOf("two");
+        file[at] = 'T'; // The record no longer matches its checksum
+
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(file, texts);
+        assertEquals(Arrays.asList("one", "three"), texts);
+        assertEquals(1, damage.records.size());
+        assertTrue(damage.records.get(0).contains("Two"));
+        assertFalse(damage.unreadableTail);
+    }
+
+    @Test
+    public void fileCutShortHasAnUnreadableTail() throws IOException {
+        byte[] whole = write(true, "one", "two");
+        String content = new String(whole, StandardCharsets.UTF_8);
+        byte[] cut = Arrays.copyOf(whole, content.indexOf("two") + 2);
+
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(cut, texts);
+        assertEquals(Arrays.asList("one"), texts);
+        assertTrue(damage.unreadableTail);
+    }
+
+    @Test
+    public void fileWithoutItsEndRecordHasAnUnreadableTail() throws IOException {
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(write(false, "one", "two"), texts);
+        assertEquals(Arrays.asList("one", "two"), texts);
+        assertTrue(damage.unreadableTail);
+        assertTrue(damage.records.isEmpty());
+    }
+
+    @Test
+    public void emptyFileHasAnUnreadableTail() throws IOException {
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(new byte[0], texts);
+        assertTrue(texts.isEmpty());
+        assertTrue(damage.unreadableTail);
+    }
+
+    @Test
+    public void emptyListStillReadsWhole() throws IOException {
+        List<String> texts = new ArrayList<>();
+        RecordFile.Damage damage = read(write(true), texts);
+        assertTrue(texts.isEmpty());
+        assertFalse(damage.any());
+    }
+}
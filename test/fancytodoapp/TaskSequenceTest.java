@@ -0,0 +1,202 @@
+package fancytodoapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+/**
+ *
+ *  TaskSequenceTest
+ *
+ *  Replicas of a TaskSequence end up with the same list whatever order,
+ *  and however often, they receive each other's ops, and the rows a tab
+ *  shows follow only the elements the ops touched.
+ *
+ */
+public class TaskSequenceTest {
+
+    private static final String TAB = "Main";
+
+    // A tab on one node: the rows it shows and the sequence behind them
+    private static final class Replica {
+        final String node;
+        final TaskSequence sequence = new TaskSequence();
+        final long[] clock = {0};
+        List<Task> shown = new ArrayList<>();
+
+        Replica(String node) {
+            this.node = node;
+        }
+
+        // Turns the rows as edited into ops, the way SyncEngine.reconcile does
+        List<SyncOp> edit(List<Task> rows) {
+            TaskSequence.RowDiff diff = TaskSequence.diffRows(shown, rows);
+            List<SyncOp> ops = sequence.applyEdits(TAB, diff, rows, clock, node);
+            shown = new ArrayList<>(rows);
+            return ops;
+        }
+
+        void receive(List<SyncOp> ops) {
+            List<SyncOp> waiting = new ArrayList<>();
+            for (SyncOp op : ops) {
+                clock[0] = Math.max(clock[0], op.c);
+                if (!sequence.apply(op)) {
+                    waiting.add(op);
+                }
+            }
+            boolean progress = !waiting.isEmpty();
+            while (progress) {
+                progress = waiting.removeIf(sequence::apply);
+            }
+            assertTrue("ops left without their element: " + waiting, waiting.isEmpty());
+            for (TaskSequence.RowEdit edit : sequence.showTouched()) {
+                switch (edit.kind) {
+                    case INSERT:
+                        shown.add(edit.row, edit.task);
+                        break;
+                    case REMOVE:
+                        shown.remove(edit.row);
+                        break;
+                    default:
+                        shown.set(edit.row, edit.task);
+                        break;
+                }
+            }
+        }
+    }
+
+    private static List<Task> tasks(String... texts) {
+        List<Task> tasks = new ArrayList<>();
+        for (String text : texts) {
+            tasks.add(new Task(false, text));
+        }
+        return tasks;
+    }
+
+    private static List<String> texts(List<Task> tasks) {
+        List<String> texts = new ArrayList<>();
+        for (Task task : tasks) {
+            texts.add((task.status ? "[x] " : "") + task.task);
+        }
+        return texts;
+    }
+
+    private static List<Task> with(List<Task> tasks, int index, Task task) {
+        List<Task> copy = new ArrayList<>(tasks);
+        copy.set(index, task);
+        return copy;
+    }
+
+    @Test
+    public void reorderedOpsConverge() {
+        Replica a = new Replica("a");
+        Replica b = new Replica("b");
+        List<SyncOp> start = a.edit(tasks("one", "two", "three"));
+        b.receive(start);
+
+        // Both edit the same list before hearing of each other
+        List<SyncOp> opsA = a.edit(tasks("one", "from a", "two", "three"));
+        opsA.addAll(a.edit(with(a.shown, 3, new Task(true, "three"))));
+        List<SyncOp> opsB = b.edit(tasks("one", "three"));
+        opsB.addAll(b.edit(tasks("from b", "one", "three")));
+        opsB.addAll(b.edit(tasks("from b", "one", "three, again")));
+
+        List<SyncOp> all = new ArrayList<>(start);
+        all.addAll(opsA);
+        all.addAll(opsB);
+        List<String> expected = null;
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            List<SyncOp> shuffled = new ArrayList<>(all);
+            Collections.shuffle(shuffled, random);
+            Replica fresh = new Replica("c");
+            fresh.receive(shuffled);
+            if (expected == null) {
+                expected = texts(fresh.shown);
+            }
+            assertEquals(expected, texts(fresh.shown));
+        }
+        a.receive(opsB);
+        b.receive(opsA);
+        assertEquals(expected, texts(a.shown));
+        assertEquals(expected, texts(b.shown));
+        assertEquals(Arrays.asList("from b", "one", "from a", "[x] three, again"), expected);
+    }
+
+    @Test
+    public void applyingOpsAgainChangesNothing() {
+        Replica a = new Replica("a");
+        List<SyncOp> ops = a.edit(tasks("one", "two"));
+        ops.addAll(a.edit(with(a.shown, 0, new Task(true, "one"))));
+        Replica b = new Replica("b");
+        b.receive(ops);
+        b.receive(ops);
+        assertEquals(Arrays.asList("[x] one", "two"), texts(b.shown));
+        b.receive(ops);
+        assertTrue(b.sequence.showTouched().isEmpty());
+    }
+
+    @Test
+    public void concurrentInsertsAfterTheSameElementPutTheNewerFirst() {
+        Replica a = new Replica("a");
+        Replica b = new Replica("b");
+        b.receive(a.edit(tasks("top")));
+        List<SyncOp> opsA = a.edit(tasks("top", "a"));
+        b.clock[0] += 5; // b has seen more ops, so its insert is newer
+        List<SyncOp> opsB = b.edit(tasks("top", "b"));
+        a.receive(opsB);
+        b.receive(opsA);
+        assertEquals(Arrays.asList("top", "b", "a"), texts(a.shown));
+        assertEquals(texts(a.shown), texts(b.shown));
+    }
+
+    @Test
+    public void showTouchedEditsOnlyTheRowsOpsTouched() {
+        Replica a = new Replica("a");
+        Replica b = new Replica("b");
+        b.receive(a.edit(tasks("one", "two", "three", "four")));
+        b.sequence.showTouched();
+
+        List<SyncOp> ops = a.edit(with(a.shown, 2, new Task(true, "three")));
+        b.sequence.apply(ops.get(0));
+        List<TaskSequence.RowEdit> edits = b.sequence.showTouched();
+        assertEquals(1, edits.size());
+        assertEquals(TaskSequence.RowEdit.Kind.UPDATE, edits.get(0).kind);
+        assertEquals(2, edits.get(0).row);
+        assertTrue(edits.get(0).task.status);
+    }
+
+    @Test
+    public void compactRebuildsTheSameList() {
+        Replica a = new Replica("a");
+        a.edit(tasks("one", "two", "three"));
+        a.edit(tasks("one", "three", "four"));
+        a.edit(with(a.shown, 1, new Task(true, "three")));
+
+        TaskSequence rebuilt = new TaskSequence();
+        for (SyncOp op : a.sequence.compact(TAB)) {
+            assertTrue(rebuilt.apply(op));
+        }
+        assertEquals(texts(a.sequence.showAll()), texts(rebuilt.showAll()));
+        assertEquals(Arrays.asList("one", "[x] three", "four"), texts(rebuilt.showAll()));
+    }
+
+    @Test
+    public void opBeforeItsElementWaits() {
+        Replica a = new Replica("a");
+        List<SyncOp> insert = a.edit(tasks("one"));
+        List<SyncOp> check = a.edit(with(a.shown, 0, new Task(true, "one")));
+        TaskSequence b = new TaskSequence();
+        assertFalse(b.apply(check.get(0)));
+        assertTrue(b.apply(insert.get(0)));
+        assertTrue(b.apply(check.get(0)));
+        assertEquals(Arrays.asList("[x] one"), texts(b.showAll()));
+    }
+}
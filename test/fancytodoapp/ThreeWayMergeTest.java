@@ -0,0 +1,80 @@
+package fancytodoapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+/**
+ *
+ *  ThreeWayMergeTest
+ *
+ *  Merges against a known base, and against none, as when a damaged or
+ *  missing file left nothing to compare with: then nothing counts as
+ *  deleted, both sides' items are kept and an item on both sides takes ours.
+ *
+ */
+public class ThreeWayMergeTest {
+
+    private static final Function<Task, String> TEXT = task -> task.task;
+    private static final BiPredicate<Task, Task> SAME = (a, b) -> a.status == b.status;
+
+    private static List<Task> tasks(String... texts) {
+        List<Task> tasks = new ArrayList<>();
+        for (String text : texts) {
+            boolean done = text.startsWith("[x] ");
+            tasks.add(new Task(done, done ? text.substring(4) : text));
+        }
+        return tasks;
+    }
+
+    private static List<String> texts(List<Task> tasks) {
+        List<String> texts = new ArrayList<>();
+        for (Task task : tasks) {
+            texts.add((task.status ? "[x] " : "") + task.task);
+        }
+        return texts;
+    }
+
+    private static List<String> merge(List<Task> base, List<Task> ours, List<Task> theirs) {
+        return texts(ThreeWayMerge.merge(base, ours, theirs, TEXT, SAME));
+    }
+
+    @Test
+    public void nullBaseKeepsTheItemsOfBothSides() {
+        assertEquals(Arrays.asList("a", "b", "c"), merge(null, tasks("a", "b"), tasks("b", "c")));
+    }
+
+    @Test
+    public void nullBaseTakesOursForAnItemOnBothSides() {
+        assertEquals(Arrays.asList("[x] b", "c"), merge(null, tasks("[x] b"), tasks("b", "c")));
+    }
+
+    @Test
+    public void nullBaseWithAnEmptySideGivesTheOther() {
+        assertEquals(Arrays.asList("a", "b"), merge(null, tasks(), tasks("a", "b")));
+        assertEquals(Arrays.asList("a", "b"), merge(null, tasks("a", "b"), tasks()));
+    }
+
+    @Test
+    public void emptyBaseMergesLikeNullBase() {
+        assertEquals(merge(null, tasks("a", "b"), tasks("b", "c")), merge(tasks(), tasks("a", "b"), tasks("b", "c")));
+    }
+
+    @Test
+    public void deletionWinsUnlessTheOtherSideEdited() {
+        List<Task> base = tasks("a", "b", "c");
+        assertEquals(Arrays.asList("a", "c"), merge(base, tasks("a", "c"), tasks("a", "b", "c")));
+        assertEquals(Arrays.asList("a", "[x] b", "c"), merge(base, tasks("a", "c"), tasks("a", "[x] b", "c")));
+    }
+
+    @Test
+    public void duplicateTextsPairUpInOrder() {
+        List<Task> base = tasks("a", "a");
+        assertEquals(Arrays.asList("a", "[x] a"), merge(base, tasks("a", "[x] a"), tasks("a", "a")));
+    }
+}